@@ -0,0 +1,123 @@
+/*********************************************************************************
+ *                                                                               *
+ * The MIT License (MIT)                                                         *
+ *                                                                               *
+ * Copyright (c) 2015-2021 aoju.org and other contributors.                      *
+ *                                                                               *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy  *
+ * of this software and associated documentation files (the "Software"), to deal *
+ * in the Software without restriction, including without limitation the rights  *
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell     *
+ * copies of the Software, and to permit persons to whom the Software is         *
+ * furnished to do so, subject to the following conditions:                      *
+ *                                                                               *
+ * The above copyright notice and this permission notice shall be included in    *
+ * all copies or substantial portions of the Software.                           *
+ *                                                                               *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR    *
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,      *
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE   *
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER        *
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, *
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN     *
+ * THE SOFTWARE.                                                                 *
+ *                                                                               *
+ ********************************************************************************/
+package org.aoju.lancia;
+
+import org.aoju.lancia.worker.CDPSession;
+import org.aoju.lancia.worker.Connection;
+import org.aoju.lancia.worker.LoopbackTransport;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link Builder}中的热点：IO.read流的拼接和evaluate表达式的拼装
+ *
+ * @author Kimi Liu
+ * @version 1.2.8
+ * @since JDK 1.8+
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BuilderBenchmark {
+
+    private static final String ATTACHED = "{\"method\":\"Target.attachedToTarget\",\"params\":{\"sessionId\":\"S1\","
+            + "\"targetInfo\":{\"targetId\":\"T1\",\"type\":\"page\",\"title\":\"\",\"url\":\"about:blank\",\"attached\":true},"
+            + "\"waitingForDebugger\":false}}";
+    /**
+     * 每次IO.read返回的原始字节数
+     */
+    private static final int CHUNK_SIZE = 1024 * 1024;
+
+    /**
+     * 整个PDF的字节数
+     */
+    @Param({"1048576", "16777216"})
+    public int size;
+
+    private Connection connection;
+    private CDPSession session;
+    private File file;
+    private Map<String, Object> argument;
+
+    @Setup
+    public void setup() throws IOException {
+        byte[] chunk = new byte[CHUNK_SIZE];
+        new Random(42).nextBytes(chunk);
+        String data = Base64.getEncoder().encodeToString(chunk);
+        String more = "{\"base64Encoded\":true,\"data\":\"" + data + "\",\"eof\":false}";
+        String last = "{\"base64Encoded\":true,\"data\":\"" + data + "\",\"eof\":true}";
+        int chunks = Math.max(1, size / CHUNK_SIZE);
+        int[] read = new int[1];
+        this.connection = new Connection("loopback", new LoopbackTransport(method -> {
+            if (!"IO.read".equals(method)) {
+                return "{}";
+            }
+            if (++read[0] < chunks) {
+                return more;
+            }
+            read[0] = 0;
+            return last;
+        }), 0);
+        this.connection.onMessage(ATTACHED);
+        this.session = this.connection.session("S1");
+        this.file = File.createTempFile("lancia-benchmark", ".pdf");
+        this.file.deleteOnExit();
+        this.argument = new HashMap<>();
+        this.argument.put("selector", "#content > .item");
+        this.argument.put("limit", 20);
+        this.argument.put("visible", true);
+    }
+
+    @TearDown
+    public void tearDown() {
+        this.connection.dispose();
+        this.file.delete();
+    }
+
+    @Benchmark
+    public Object printToBytes() throws IOException {
+        return Builder.readProtocolStream(this.session, "stream-1", null, false);
+    }
+
+    @Benchmark
+    public Object printToFile() throws IOException {
+        return Builder.readProtocolStream(this.session, "stream-1", this.file.getPath(), false);
+    }
+
+    @Benchmark
+    public String evaluationString() {
+        return Builder.evaluationString("(options, name, count) => document.querySelectorAll(options.selector).length",
+                Variables.PageEvaluateType.FUNCTION, this.argument, "lancia", 3);
+    }
+
+}
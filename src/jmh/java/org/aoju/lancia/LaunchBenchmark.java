@@ -0,0 +1,102 @@
+/*********************************************************************************
+ *                                                                               *
+ * The MIT License (MIT)                                                         *
+ *                                                                               *
+ * Copyright (c) 2015-2021 aoju.org and other contributors.                      *
+ *                                                                               *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy  *
+ * of this software and associated documentation files (the "Software"), to deal *
+ * in the Software without restriction, including without limitation the rights  *
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell     *
+ * copies of the Software, and to permit persons to whom the Software is         *
+ * furnished to do so, subject to the following conditions:                      *
+ *                                                                               *
+ * The above copyright notice and this permission notice shall be included in    *
+ * all copies or substantial portions of the Software.                           *
+ *                                                                               *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR    *
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,      *
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE   *
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER        *
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, *
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN     *
+ * THE SOFTWARE.                                                                 *
+ *                                                                               *
+ ********************************************************************************/
+package org.aoju.lancia;
+
+import org.aoju.lancia.option.LaunchBuilder;
+import org.aoju.lancia.option.LaunchOption;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 浏览器冷启动：启动、打开页面并执行一次脚本的耗时，对比空白目录和从模板复制或硬链接用户目录
+ * 需要本机安装Chrome，可以用-Dlancia.executablePath指定
+ *
+ * @author Kimi Liu
+ * @version 1.2.8
+ * @since JDK 1.8+
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 10)
+@Fork(1)
+public class LaunchBenchmark {
+
+    /**
+     * NONE 不使用模板，COPY 复制模板，LINK 硬链接模板
+     */
+    @Param({"NONE", "COPY", "LINK"})
+    public String seed;
+
+    private Path template;
+
+    private LaunchOption options;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException, InterruptedException {
+        String executablePath = System.getProperty("lancia.executablePath");
+        template = Files.createTempDirectory("lancia_template_");
+        // 启动一次生成带首次运行状态和缓存的用户目录作为模板
+        LaunchBuilder builder = new LaunchBuilder().headless(true).userDataDir(template.toString());
+        if (executablePath != null) {
+            builder.executablePath(executablePath);
+        }
+        Browser browser = Puppeteer.launch(builder.build());
+        browser.newPage().goTo("about:blank");
+        browser.close();
+
+        builder = new LaunchBuilder().headless(true);
+        if (executablePath != null) {
+            builder.executablePath(executablePath);
+        }
+        if (!"NONE".equals(seed)) {
+            builder.profileTemplate(template.toString(), Variables.ProfileSeed.valueOf(seed));
+        }
+        options = builder.build();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Builder.deleteDirectory(template.toString());
+    }
+
+    @Benchmark
+    public Object launch() throws IOException {
+        Browser browser = Puppeteer.launch(options);
+        try {
+            Page page = browser.newPage();
+            return page.evaluate("() => 1 + 1");
+        } finally {
+            browser.close();
+        }
+    }
+
+}
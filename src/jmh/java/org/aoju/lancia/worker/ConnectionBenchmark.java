@@ -0,0 +1,104 @@
+/*********************************************************************************
+ *                                                                               *
+ * The MIT License (MIT)                                                         *
+ *                                                                               *
+ * Copyright (c) 2015-2021 aoju.org and other contributors.                      *
+ *                                                                               *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy  *
+ * of this software and associated documentation files (the "Software"), to deal *
+ * in the Software without restriction, including without limitation the rights  *
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell     *
+ * copies of the Software, and to permit persons to whom the Software is         *
+ * furnished to do so, subject to the following conditions:                      *
+ *                                                                               *
+ * The above copyright notice and this permission notice shall be included in    *
+ * all copies or substantial portions of the Software.                           *
+ *                                                                               *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR    *
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,      *
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE   *
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER        *
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, *
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN     *
+ * THE SOFTWARE.                                                                 *
+ *                                                                               *
+ ********************************************************************************/
+package org.aoju.lancia.worker;
+
+import com.alibaba.fastjson.JSONObject;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link Connection#onMessage(String)}的分发，包括浏览器级别和会话级别的命令往返
+ *
+ * @author Kimi Liu
+ * @version 1.2.8
+ * @since JDK 1.8+
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ConnectionBenchmark {
+
+    private static final String RESULT = "{\"result\":{\"type\":\"string\",\"value\":\"ok\"}}";
+    private static final String ATTACHED = "{\"method\":\"Target.attachedToTarget\",\"params\":{\"sessionId\":\"S1\","
+            + "\"targetInfo\":{\"targetId\":\"T1\",\"type\":\"page\",\"title\":\"\",\"url\":\"about:blank\",\"attached\":true},"
+            + "\"waitingForDebugger\":false}}";
+    private static final String EVENT = "{\"method\":\"Network.dataReceived\",\"params\":{\"requestId\":\"1000.1\","
+            + "\"timestamp\":1234.5,\"dataLength\":1024,\"encodedDataLength\":512}}";
+    private static final String SESSION_EVENT = "{\"method\":\"Network.dataReceived\",\"sessionId\":\"S1\",\"params\":{\"requestId\":\"1000.1\","
+            + "\"timestamp\":1234.5,\"dataLength\":1024,\"encodedDataLength\":512}}";
+
+    private Connection connection;
+    private CDPSession session;
+    private Map<String, Object> params;
+
+    @Setup
+    public void setup() {
+        this.connection = new Connection("loopback", new LoopbackTransport(method -> RESULT), 0);
+        this.connection.onMessage(ATTACHED);
+        this.session = this.connection.session("S1");
+        this.params = new HashMap<>();
+        this.params.put("expression", "document.title");
+        this.params.put("returnByValue", true);
+    }
+
+    @TearDown
+    public void tearDown() {
+        this.connection.dispose();
+    }
+
+    /**
+     * 序列化、发送、扫描响应信封并完成future
+     */
+    @Benchmark
+    public JSONObject roundTrip() {
+        return this.connection.send("Runtime.evaluate", this.params, true);
+    }
+
+    @Benchmark
+    public JSONObject sessionRoundTrip() {
+        return this.session.send("Runtime.evaluate", this.params, true);
+    }
+
+    /**
+     * 没有监听器的事件只扫描信封，不解析消息体
+     */
+    @Benchmark
+    public void unobservedEvent() {
+        this.connection.onMessage(EVENT);
+    }
+
+    @Benchmark
+    public void unobservedSessionEvent() {
+        this.connection.onMessage(SESSION_EVENT);
+    }
+
+}
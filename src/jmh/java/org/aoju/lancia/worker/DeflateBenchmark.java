@@ -0,0 +1,112 @@
+/*********************************************************************************
+ *                                                                               *
+ * The MIT License (MIT)                                                         *
+ *                                                                               *
+ * Copyright (c) 2015-2021 aoju.org and other contributors.                      *
+ *                                                                               *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy  *
+ * of this software and associated documentation files (the "Software"), to deal *
+ * in the Software without restriction, including without limitation the rights  *
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell     *
+ * copies of the Software, and to permit persons to whom the Software is         *
+ * furnished to do so, subject to the following conditions:                      *
+ *                                                                               *
+ * The above copyright notice and this permission notice shall be included in    *
+ * all copies or substantial portions of the Software.                           *
+ *                                                                               *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR    *
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,      *
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE   *
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER        *
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, *
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN     *
+ * THE SOFTWARE.                                                                 *
+ *                                                                               *
+ ********************************************************************************/
+package org.aoju.lancia.worker;
+
+import org.aoju.bus.core.lang.Charset;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * permessage-deflate的压缩收益和CPU开销，rawBytes/wireBytes是压缩前后的字节数
+ *
+ * @author Kimi Liu
+ * @version 1.2.8
+ * @since JDK 1.8+
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DeflateBenchmark {
+
+    @Param({"1024", "65536", "1048576"})
+    public int size;
+
+    private PerMessageDeflate deflate;
+    private byte[] payload;
+    private byte[] compressed;
+
+    /**
+     * 形如DOM.getDocument结果的JSON，固定种子保证每次运行内容一致
+     */
+    static byte[] document(int size) {
+        Random random = new Random(42);
+        StringBuilder builder = new StringBuilder(size + 256).append("{\"id\":1,\"result\":{\"root\":{\"children\":[");
+        int nodeId = 1;
+        while (builder.length() < size) {
+            builder.append("{\"nodeId\":").append(nodeId++)
+                    .append(",\"backendNodeId\":").append(random.nextInt(100000))
+                    .append(",\"nodeType\":1,\"nodeName\":\"DIV\",\"localName\":\"div\",\"nodeValue\":\"\",")
+                    .append("\"attributes\":[\"class\",\"item-").append(Integer.toHexString(random.nextInt())).append("\"]},");
+        }
+        builder.setLength(size - 4);
+        builder.append("]}}}");
+        return builder.toString().getBytes(Charset.UTF_8);
+    }
+
+    @Setup
+    public void setup() {
+        this.deflate = PerMessageDeflate.accept("permessage-deflate; server_no_context_takeover");
+        this.payload = document(size);
+        this.compressed = this.deflate.deflate(this.payload);
+    }
+
+    @Benchmark
+    public byte[] deflate(Bytes bytes) {
+        byte[] result = this.deflate.deflate(this.payload);
+        bytes.rawBytes += this.payload.length;
+        bytes.wireBytes += result == null ? this.payload.length : result.length;
+        return result;
+    }
+
+    @Benchmark
+    public String inflate() {
+        return this.deflate.inflate(this.compressed, 0, this.compressed.length, Integer.MAX_VALUE);
+    }
+
+    /**
+     * 每次迭代累计的压缩前后字节数
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Bytes {
+
+        public long rawBytes;
+        public long wireBytes;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            this.rawBytes = 0;
+            this.wireBytes = 0;
+        }
+
+    }
+
+}
@@ -0,0 +1,112 @@
+/*********************************************************************************
+ *                                                                               *
+ * The MIT License (MIT)                                                         *
+ *                                                                               *
+ * Copyright (c) 2015-2021 aoju.org and other contributors.                      *
+ *                                                                               *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy  *
+ * of this software and associated documentation files (the "Software"), to deal *
+ * in the Software without restriction, including without limitation the rights  *
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell     *
+ * copies of the Software, and to permit persons to whom the Software is         *
+ * furnished to do so, subject to the following conditions:                      *
+ *                                                                               *
+ * The above copyright notice and this permission notice shall be included in    *
+ * all copies or substantial portions of the Software.                           *
+ *                                                                               *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR    *
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,      *
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE   *
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER        *
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, *
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN     *
+ * THE SOFTWARE.                                                                 *
+ *                                                                               *
+ ********************************************************************************/
+package org.aoju.lancia.worker;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONObject;
+import org.aoju.lancia.nimble.page.LifecycleEventPayload;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link EventEmitter#emit(String, Object)}把事件转换为监听器声明的类型并分发
+ *
+ * @author Kimi Liu
+ * @version 1.2.8
+ * @since JDK 1.8+
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EventEmitterBenchmark {
+
+    private static final String METHOD = "Page.lifecycleEvent";
+
+    @Param({"1", "4"})
+    public int listeners;
+
+    private EventEmitter typed;
+    private EventEmitter mixed;
+    private JSONObject params;
+    private Blackhole blackhole;
+
+    @Setup
+    public void setup() {
+        this.params = JSON.parseObject("{\"frameId\":\"8B0A2C1F\",\"loaderId\":\"4E1D7A90\",\"name\":\"DOMContentLoaded\",\"timestamp\":1234}");
+        this.typed = new EventEmitter();
+        this.mixed = new EventEmitter();
+        for (int i = 0; i < this.listeners; i++) {
+            this.typed.addListener(METHOD, typedListener());
+            this.mixed.addListener(METHOD, i % 2 == 0 ? typedListener() : jsonListener());
+        }
+    }
+
+    private BrowserListener<LifecycleEventPayload> typedListener() {
+        BrowserListener<LifecycleEventPayload> listener = new BrowserListener<LifecycleEventPayload>() {
+            @Override
+            public void onBrowserEvent(LifecycleEventPayload event) {
+                blackhole.consume(event);
+            }
+        };
+        listener.setMethod(METHOD);
+        return listener;
+    }
+
+    private BrowserListener<JSONObject> jsonListener() {
+        BrowserListener<JSONObject> listener = new BrowserListener<JSONObject>() {
+            @Override
+            public void onBrowserEvent(JSONObject event) {
+                blackhole.consume(event);
+            }
+        };
+        listener.setMethod(METHOD);
+        return listener;
+    }
+
+    /**
+     * 所有监听器同一个类型，只转换一次
+     */
+    @Benchmark
+    public void typed(Blackhole blackhole) {
+        this.blackhole = blackhole;
+        this.typed.emit(METHOD, this.params);
+    }
+
+    /**
+     * 类型化监听器和JSONObject监听器混合
+     */
+    @Benchmark
+    public void mixed(Blackhole blackhole) {
+        this.blackhole = blackhole;
+        this.mixed.emit(METHOD, this.params);
+    }
+
+}
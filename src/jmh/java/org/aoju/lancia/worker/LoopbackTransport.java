@@ -0,0 +1,74 @@
+/*********************************************************************************
+ *                                                                               *
+ * The MIT License (MIT)                                                         *
+ *                                                                               *
+ * Copyright (c) 2015-2021 aoju.org and other contributors.                      *
+ *                                                                               *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy  *
+ * of this software and associated documentation files (the "Software"), to deal *
+ * in the Software without restriction, including without limitation the rights  *
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell     *
+ * copies of the Software, and to permit persons to whom the Software is         *
+ * furnished to do so, subject to the following conditions:                      *
+ *                                                                               *
+ * The above copyright notice and this permission notice shall be included in    *
+ * all copies or substantial portions of the Software.                           *
+ *                                                                               *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR    *
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,      *
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE   *
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER        *
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, *
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN     *
+ * THE SOFTWARE.                                                                 *
+ *                                                                               *
+ ********************************************************************************/
+package org.aoju.lancia.worker;
+
+import org.aoju.bus.core.lang.Charset;
+
+import java.util.function.Function;
+import java.util.function.Consumer;
+
+/**
+ * 基准测试使用的回环传输，在发送线程中按方法名直接应答，不需要浏览器
+ *
+ * @author Kimi Liu
+ * @version 1.2.8
+ * @since JDK 1.8+
+ */
+public class LoopbackTransport implements Transport {
+
+    /**
+     * 方法名到result的JSON文本
+     */
+    private final Function<String, String> responder;
+    private Consumer<String> consumer;
+
+    public LoopbackTransport(Function<String, String> responder) {
+        this.responder = responder;
+    }
+
+    @Override
+    public void send(String message) {
+        Envelope envelope = Envelope.scan(message);
+        StringBuilder response = new StringBuilder(64)
+                .append("{\"id\":").append(envelope.getId());
+        if (envelope.getSessionId() != null) {
+            response.append(",\"sessionId\":\"").append(envelope.getSessionId()).append('"');
+        }
+        response.append(",\"result\":").append(this.responder.apply(envelope.getMethod())).append('}');
+        this.consumer.accept(response.toString());
+    }
+
+    @Override
+    public void send(byte[] message) {
+        send(new String(message, Charset.UTF_8));
+    }
+
+    @Override
+    public void addConsumer(Consumer<String> consumer) {
+        this.consumer = consumer;
+    }
+
+}
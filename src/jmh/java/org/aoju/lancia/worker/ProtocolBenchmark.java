@@ -0,0 +1,146 @@
+/*********************************************************************************
+ *                                                                               *
+ * The MIT License (MIT)                                                         *
+ *                                                                               *
+ * Copyright (c) 2015-2021 aoju.org and other contributors.                      *
+ *                                                                               *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy  *
+ * of this software and associated documentation files (the "Software"), to deal *
+ * in the Software without restriction, including without limitation the rights  *
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell     *
+ * copies of the Software, and to permit persons to whom the Software is         *
+ * furnished to do so, subject to the following conditions:                      *
+ *                                                                               *
+ * The above copyright notice and this permission notice shall be included in    *
+ * all copies or substantial portions of the Software.                           *
+ *                                                                               *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR    *
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,      *
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE   *
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER        *
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, *
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN     *
+ * THE SOFTWARE.                                                                 *
+ *                                                                               *
+ ********************************************************************************/
+package org.aoju.lancia.worker;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * websocket帧编解码，配合-prof gc观察每条消息的分配
+ *
+ * @author Kimi Liu
+ * @version 1.2.8
+ * @since JDK 1.8+
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ProtocolBenchmark {
+
+    /**
+     * 每次从socket读到的字节数
+     */
+    private static final int READ_SIZE = 16 * 1024;
+
+    @Param({"1024", "65536", "8388608"})
+    public int size;
+
+    private SocketTransport.Protocol protocol;
+    private byte[] payload;
+    private byte[] frame;
+    private Blackhole blackhole;
+    private SocketTransport.Protocol.Handler handler;
+
+    /**
+     * 构造服务端发出的不带掩码的文本帧
+     */
+    static byte[] frame(byte[] payload) {
+        int header = payload.length < 126 ? 2 : payload.length < 65536 ? 4 : 10;
+        ByteBuffer buffer = ByteBuffer.allocate(header + payload.length);
+        buffer.put((byte) (0x80 | SocketTransport.Protocol.OPCODE_TEXT));
+        if (header == 2) {
+            buffer.put((byte) payload.length);
+        } else if (header == 4) {
+            buffer.put((byte) 126).putShort((short) payload.length);
+        } else {
+            buffer.put((byte) 127).putLong(payload.length);
+        }
+        return buffer.put(payload).array();
+    }
+
+    /**
+     * 形如CDP响应的ASCII消息
+     */
+    static byte[] message(int size) {
+        byte[] payload = new byte[size];
+        Arrays.fill(payload, (byte) 'x');
+        byte[] prefix = "{\"id\":1,\"result\":{\"data\":\"".getBytes();
+        System.arraycopy(prefix, 0, payload, 0, Math.min(prefix.length, size));
+        if (size > prefix.length + 3) {
+            payload[size - 3] = '"';
+            payload[size - 2] = '}';
+            payload[size - 1] = '}';
+        }
+        return payload;
+    }
+
+    @Setup
+    public void setup() {
+        this.protocol = new SocketTransport.Protocol();
+        this.payload = message(size);
+        this.frame = frame(payload);
+        this.handler = new SocketTransport.Protocol.Handler() {
+            @Override
+            public void onMessage(String message) {
+                ProtocolBenchmark.this.blackhole.consume(message);
+            }
+
+            @Override
+            public void onPing(ByteBuffer payload) {
+            }
+
+            @Override
+            public void onClose(int code, String reason) {
+            }
+        };
+    }
+
+    /**
+     * createText原地加掩码，反复编码同一个数组不影响耗时
+     */
+    @Benchmark
+    public ByteBuffer[] encode() {
+        return protocol.createText(payload);
+    }
+
+    /**
+     * 整帧在一次读取中到达
+     */
+    @Benchmark
+    public void decode(Blackhole blackhole) {
+        this.blackhole = blackhole;
+        protocol.decode(ByteBuffer.wrap(frame), handler);
+    }
+
+    /**
+     * 帧按socket读取的大小分多次到达，走拼接缓冲区
+     */
+    @Benchmark
+    public void decodeChunked(Blackhole blackhole) {
+        this.blackhole = blackhole;
+        for (int offset = 0; offset < frame.length; offset += READ_SIZE) {
+            protocol.decode(ByteBuffer.wrap(frame, offset, Math.min(READ_SIZE, frame.length - offset)), handler);
+        }
+    }
+
+}
@@ -31,7 +31,9 @@ import org.aoju.bus.core.lang.Normal;
 import org.aoju.bus.core.lang.exception.InstrumentException;
 import org.aoju.bus.core.toolkit.CollKit;
 import org.aoju.bus.core.toolkit.StringKit;
+import org.aoju.lancia.kernel.browser.AdmissionLimiter;
 import org.aoju.lancia.kernel.browser.Context;
+import org.aoju.lancia.kernel.browser.ContextPool;
 import org.aoju.lancia.kernel.page.Target;
 import org.aoju.lancia.kernel.page.TargetInfo;
 import org.aoju.lancia.kernel.page.TaskQueue;
@@ -46,7 +48,11 @@ import org.aoju.lancia.worker.EventEmitter;
 import org.aoju.lancia.worker.EventHandler;
 
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.function.Function;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
@@ -76,6 +82,10 @@ public class Browser extends EventEmitter {
      * 当前浏览器内的所有页面，也包括浏览器自己，{@link Page}和 {@link Browser} 都属于target
      */
     private final Map<String, Target> targets;
+    /**
+     * 等待Target.targetCreated事件的target，Target.createTarget的响应可能先于事件队列中的targetCreated到达
+     */
+    private final Map<String, CompletableFuture<Target>> pendingTargets = new ConcurrentHashMap<>();
     /**
      * 默认浏览器上下文
      */
@@ -90,6 +100,14 @@ public class Browser extends EventEmitter {
     private final TaskQueue<String> screenshotTaskQueue;
 
     private final Function<Object, Object> closeCallback;
+    /**
+     * 新建页面开启的协议域
+     */
+    private Variables.PageProfile pageProfile = Variables.PageProfile.FULL;
+    /**
+     * 新建页面的准入控制，为空时不限制
+     */
+    private volatile AdmissionLimiter admissionLimiter;
 
     public Browser(Connection connection, List<String> contextIds, boolean ignoreHTTPSErrors,
                    Viewport defaultViewport, Process process, Function<Object, Object> closeCallback) {
@@ -176,9 +194,17 @@ public class Browser extends EventEmitter {
     }
 
     private void targetDestroyed(TargetDestroyedPayload event) {
+        CompletableFuture<Target> pending = this.pendingTargets.remove(event.getTargetId());
+        if (pending != null) {
+            pending.complete(null);
+        }
         Target target = this.targets.remove(event.getTargetId());
         target.initializedCallback(false);
         target.closedCallback();
+        AdmissionLimiter limiter = this.admissionLimiter;
+        if (limiter != null) {
+            limiter.release(target);
+        }
         if (target.waitInitializedPromise()) {
             this.emit(Variables.Event.BROWSER_TARGETDESTROYED.getName(), target);
             target.browserContext().emit(Variables.Event.BROWSER_TARGETDESTROYED.getName(), target);
@@ -222,6 +248,18 @@ public class Browser extends EventEmitter {
         return context;
     }
 
+    /**
+     * 创建隐身上下文池，归还的上下文经过清理后复用，避免每次任务都创建和销毁上下文
+     *
+     * @param minIdle 保持的最少空闲上下文数量
+     * @param maxSize 上下文的最大数量
+     * @param maxUses 上下文的最多使用次数，0表示不限制
+     * @return 上下文池
+     */
+    public ContextPool createContextPool(int minIdle, int maxSize, int maxUses) {
+        return new ContextPool(this, minIdle, maxSize, maxUses);
+    }
+
     public void disposeContext(String contextId) {
         Map<String, Object> params = new HashMap<>();
         params.put("browserContextId", contextId);
@@ -247,6 +285,10 @@ public class Browser extends EventEmitter {
             throw new RuntimeException("Target should not exist befor targetCreated");
         }
         this.targets.put(targetInfo.getTargetId(), target);
+        CompletableFuture<Target> pending = this.pendingTargets.remove(targetInfo.getTargetId());
+        if (pending != null) {
+            pending.complete(target);
+        }
         if (target.waitInitializedPromise()) {
             this.emit(Variables.Event.BROWSER_TARGETCREATED.getName(), target);
             context.emit(Variables.Event.BROWSERCONTEXT_TARGETCREATED.getName(), target);
@@ -311,6 +353,16 @@ public class Browser extends EventEmitter {
         return version.getString("product");
     }
 
+    /**
+     * 异步获取浏览器版本，可用于探测浏览器是否仍有响应
+     *
+     * @param timeout 超时时间(毫秒)，小于等于0表示不超时
+     * @return 浏览器版本
+     */
+    public CompletableFuture<String> versionAsync(int timeout) {
+        return this.connection.sendAsync("Browser.getVersion", null, timeout).thenApply(version -> version.getString("product"));
+    }
+
     public String userAgent() {
         JSONObject version = this.getVersion();
         return version.getString("userAgent");
@@ -360,21 +412,67 @@ public class Browser extends EventEmitter {
      * @return 新建页面
      */
     public Page createPageInContext(String contextId) {
+        return this.createPageInContext(contextId, true);
+    }
+
+    /**
+     * 在当前浏览器上下文新建一个页面
+     *
+     * @param contextId 上下文id 如果为空，则使用默认上下文
+     * @param admission 是否经过准入控制并占用名额到页面关闭；页面池的页面为false，在租借时占用名额
+     * @return 新建页面
+     */
+    public Page createPageInContext(String contextId, boolean admission) {
         Map<String, Object> params = new HashMap<>();
         params.put("url", "about:blank");
         if (StringKit.isNotEmpty(contextId)) {
             params.put("browserContextId", contextId);
         }
-        JSONObject recevie = this.connection.send("Target.createTarget", params, true);
-        if (recevie != null) {
-            Target target = this.targets.get(recevie.getString(Variables.RECV_MESSAGE_TARFETINFO_TARGETID_PROPERTY));
-            Assert.isTrue(target.waitInitializedPromise(), "Failed to create target for page");
-            return target.page();
-        } else {
-            throw new RuntimeException("can't create new page: ");
+        AdmissionLimiter limiter = admission ? this.admissionLimiter : null;
+        long start = limiter == null ? 0 : limiter.acquire();
+        try {
+            JSONObject recevie = this.connection.send("Target.createTarget", params, true);
+            if (recevie != null) {
+                Target target = this.waitForTargetCreated(recevie.getString(Variables.RECV_MESSAGE_TARFETINFO_TARGETID_PROPERTY), Variables.DEFAULT_TIMEOUT);
+                Assert.isTrue(target != null && target.waitInitializedPromise(), "Failed to create target for page");
+                Page page = target.page();
+                if (limiter != null) {
+                    limiter.admit(target, start);
+                    limiter = null;
+                }
+                return page;
+            } else {
+                throw new RuntimeException("can't create new page: ");
+            }
+        } finally {
+            if (limiter != null) {
+                limiter.reject();
+            }
         }
     }
 
+    /**
+     * 开启自适应准入控制，同时进行的任务数超过上限时newPage和页面池的租借排队等待
+     *
+     * @param initialLimit   初始并发上限
+     * @param maxLimit       并发上限的上限
+     * @param sampleInterval 浏览器资源采样间隔(毫秒)，0表示只按页面耗时调整
+     * @return 准入控制
+     */
+    public AdmissionLimiter enableAdmissionControl(int initialLimit, int maxLimit, long sampleInterval) {
+        AdmissionLimiter limiter = new AdmissionLimiter(this, initialLimit, maxLimit, sampleInterval);
+        AdmissionLimiter previous = this.admissionLimiter;
+        this.admissionLimiter = limiter;
+        if (previous != null) {
+            previous.close();
+        }
+        return limiter;
+    }
+
+    public AdmissionLimiter getAdmissionLimiter() {
+        return admissionLimiter;
+    }
+
     /**
      * 监听浏览器事件disconnected
      * 浏览器一共有四种事件
@@ -423,6 +521,39 @@ public class Browser extends EventEmitter {
         return this.targets;
     }
 
+    /**
+     * 等待Target.createTarget返回的target被注册
+     * 命令响应在读线程上完成，而targetCreated事件在连接的事件队列中分发，两者的先后顺序不确定
+     * 不能在连接的事件队列线程中调用，否则会等待自身
+     *
+     * @param targetId target id
+     * @param timeout  超时时间，单位毫秒
+     * @return target，超时或target在注册前被销毁时返回null
+     */
+    public Target waitForTargetCreated(String targetId, int timeout) {
+        Target target = this.targets.get(targetId);
+        if (target != null) {
+            return target;
+        }
+        CompletableFuture<Target> pending = this.pendingTargets.computeIfAbsent(targetId, k -> new CompletableFuture<>());
+        // 注册等待之后再检查一次，避免事件在两次检查之间到达
+        target = this.targets.get(targetId);
+        if (target != null) {
+            this.pendingTargets.remove(targetId, pending);
+            return target;
+        }
+        try {
+            return pending.get(timeout, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InstrumentException("Interrupted while waiting for target " + targetId);
+        } catch (ExecutionException | TimeoutException e) {
+            return null;
+        } finally {
+            this.pendingTargets.remove(targetId, pending);
+        }
+    }
+
     public Map<String, Context> contexts() {
         return contexts;
     }
@@ -443,4 +574,12 @@ public class Browser extends EventEmitter {
         return viewport;
     }
 
+    public Variables.PageProfile getPageProfile() {
+        return pageProfile;
+    }
+
+    public void setPageProfile(Variables.PageProfile pageProfile) {
+        this.pageProfile = pageProfile;
+    }
+
 }
@@ -39,10 +39,16 @@ import org.aoju.lancia.kernel.page.QuerySelector;
 import org.aoju.lancia.nimble.runtime.CallFrame;
 import org.aoju.lancia.nimble.runtime.ExceptionDetails;
 import org.aoju.lancia.nimble.runtime.RemoteObject;
+import org.aoju.lancia.worker.BoundedExecutor;
 import org.aoju.lancia.worker.BrowserListener;
 import org.aoju.lancia.worker.CDPSession;
+import org.aoju.lancia.worker.Connection;
 import org.aoju.lancia.worker.EventEmitter;
+import org.aoju.lancia.worker.JmxMetricsRegistry;
 import org.aoju.lancia.worker.ListenerWrapper;
+import org.aoju.lancia.worker.MetricsRegistry;
+import org.aoju.lancia.worker.ResponseSink;
+import org.aoju.lancia.worker.Threads;
 
 import java.io.*;
 import java.math.BigInteger;
@@ -52,9 +58,14 @@ import java.nio.ByteBuffer;
 import java.nio.channels.Channels;
 import java.nio.channels.FileChannel;
 import java.nio.channels.ReadableByteChannel;
+import java.nio.file.FileVisitResult;
 import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.nio.file.attribute.PosixFilePermission;
 import java.text.MessageFormat;
 import java.util.*;
@@ -88,9 +99,28 @@ public class Builder {
     private static final String FAIL_RESULT = "-1";
     private static final Map<String, QueryHandler> CUSTOM_QUERY_HANDLER = new HashMap<>();
     /**
-     * 单线程，一个浏览器只能有一个trcing 任务
+     * 预置用户目录时可以硬链接的目录，其中是扩展和组件按版本安装的文件，浏览器更新时写入新的版本目录而不原地修改；
+     * Cookies、History、Web Data、LevelDB等数据库会被原地改写，硬链接会改动模板，一律复制
      */
-    private static ExecutorService COMMON_EXECUTOR = null;
+    private static final Set<String> LINKABLE_DIRECTORIES = new HashSet<>(Arrays.asList(
+            "Extensions", "Dictionaries", "WidevineCdm", "ZxcvbnData", "hyphen-data", "pnacl",
+            "FileTypePolicies", "OriginTrials", "SSLErrorAssistant", "MEIPreload", "Subresource Filter"));
+    /**
+     * 按用途划分的内置执行服务
+     */
+    private static final Map<Variables.ExecutorType, ExecutorService> EXECUTORS = new ConcurrentHashMap<>();
+    /**
+     * 分发协议事件的线程池，每个会话同一时刻最多占用一个线程
+     */
+    private static ExecutorService EVENT_EXECUTOR = null;
+    /**
+     * 删除临时用户目录的线程，单线程即可，避免与浏览器启动争抢磁盘
+     */
+    private static ExecutorService PROFILE_CLEANER = null;
+    /**
+     * 新建连接默认使用的指标采集
+     */
+    private static volatile MetricsRegistry METRICS_REGISTRY = null;
 
     public static String createProtocolError(JSONObject node) {
         JSONObject methodNode = node.getJSONObject(Variables.RECV_MESSAGE_METHOD_PROPERTY);
@@ -203,7 +233,7 @@ public class Builder {
      */
     public static final Object readProtocolStream(CDPSession client, String handler, String path, boolean isSync) throws IOException {
         if (isSync) {
-            return commonExecutor().submit(() -> {
+            return client.executor(Variables.ExecutorType.STREAM).submit(() -> {
                 try {
                     printPDF(client, handler, path);
                 } catch (IOException e) {
@@ -215,6 +245,24 @@ public class Builder {
         }
     }
 
+    /**
+     * 从协议读取二进制流并写入输出流，每块数据按base64Encoded解码后在STREAM执行器中写出
+     *
+     * @param client  客户端
+     * @param handler 流的句柄
+     * @param output  输出流，由调用方关闭
+     */
+    public static final void readProtocolStream(CDPSession client, String handler, OutputStream output) {
+        Map<String, Object> params = new HashMap<>();
+        params.put("handle", handler);
+        Boolean eof;
+        do {
+            JSONObject response = client.send("IO.read", params, new ResponseSink(Variables.RECV_MESSAGE_STREAM_DATA_PROPERTY, output));
+            eof = response.getBoolean(Variables.RECV_MESSAGE_STREAM_EOF_PROPERTY);
+        } while (eof != null && !eof);
+        client.send("IO.close", params, true);
+    }
+
     private static byte[] printPDF(CDPSession client, String handler, String path) throws IOException {
         boolean eof = false;
         File file = null;
@@ -420,26 +468,110 @@ public class Builder {
     }
 
     /**
-     * 通用执行者
+     * 通用执行者，已经按用途拆分，等同于{@link Variables.ExecutorType#LISTENER}
      *
      * @return 执行服务
+     * @deprecated 使用{@link #executor(Variables.ExecutorType)}
      */
+    @Deprecated
     public static final ExecutorService commonExecutor() {
-        if (COMMON_EXECUTOR == null) {
+        return executor(Variables.ExecutorType.LISTENER);
+    }
+
+    /**
+     * 指定用途的内置执行服务，没有通过{@link #setExecutor(Variables.ExecutorType, ExecutorService)}替换时
+     * 第一次使用时创建有界队列的{@link BoundedExecutor}；连接上注入的执行服务见{@link Connection#executor(Variables.ExecutorType)}
+     *
+     * @param type 用途
+     * @return 执行服务
+     */
+    public static final ExecutorService executor(Variables.ExecutorType type) {
+        return EXECUTORS.computeIfAbsent(type, Builder::createExecutor);
+    }
+
+    /**
+     * 替换指定用途的内置执行服务，原来的执行服务不会被关闭
+     *
+     * @param type     用途
+     * @param executor 执行服务，为null时恢复为默认创建的
+     */
+    public static void setExecutor(Variables.ExecutorType type, ExecutorService executor) {
+        if (executor == null) {
+            EXECUTORS.remove(type);
+        } else {
+            EXECUTORS.put(type, executor);
+        }
+    }
+
+    /**
+     * 线程数、队列容量和处理策略可以通过系统属性设置，名称见{@link Variables#EXECUTOR_THREAD_NUM}等
+     * 用户事件的线程数兼容{@link Variables#COMMONT_THREAD_POOL_NUM}；JDK 21+上使用虚拟线程，默认线程数更多
+     */
+    private static ExecutorService createExecutor(Variables.ExecutorType type) {
+        String suffix = "_" + type.name().toLowerCase();
+        int processors = Math.max(1, Runtime.getRuntime().availableProcessors());
+        boolean virtual = Threads.isVirtual();
+        int threads;
+        switch (type) {
+            case LISTENER:
+                threads = Integer.getInteger(Variables.COMMONT_THREAD_POOL_NUM, virtual ? 256 : processors);
+                break;
+            case STREAM:
+                threads = virtual ? 64 : Math.max(2, processors / 2);
+                break;
+            default:
+                threads = Math.max(2, processors);
+                break;
+        }
+        threads = Integer.getInteger(Variables.EXECUTOR_THREAD_NUM + suffix, threads);
+        int queueSize = Integer.getInteger(Variables.EXECUTOR_QUEUE_SIZE + suffix, 1024);
+        Variables.OverflowPolicy policy = Variables.OverflowPolicy.valueOf(
+                System.getProperty(Variables.EXECUTOR_POLICY + suffix, Variables.OverflowPolicy.BLOCK.name()).toUpperCase());
+        String prefix = type.name().toLowerCase() + "-pool-";
+        ThreadFactory factory = Threads.virtualFactory(prefix);
+        return new BoundedExecutor(type.name().toLowerCase(), threads, queueSize, policy, factory != null ? factory : new CommonThreadFactory(prefix));
+    }
+
+    /**
+     * 分发协议事件的线程池，事件处理器可能阻塞等待其他消息，所以线程按需创建，空闲后回收；JDK 21+上使用虚拟线程
+     *
+     * @return 执行服务
+     */
+    public static final ExecutorService eventExecutor() {
+        if (EVENT_EXECUTOR == null) {
             synchronized (Builder.class) {
-                if (COMMON_EXECUTOR == null) {
-                    String customNum = System.getProperty(Variables.COMMONT_THREAD_POOL_NUM);
-                    int threadNum = 0;
-                    if (StringKit.isNotEmpty(customNum)) {
-                        threadNum = Integer.parseInt(customNum);
-                    } else {
-                        threadNum = Math.max(1, Runtime.getRuntime().availableProcessors());
-                    }
-                    COMMON_EXECUTOR = new ThreadPoolExecutor(threadNum, threadNum, 30, TimeUnit.SECONDS, new LinkedBlockingDeque<>(), new CommonThreadFactory());
+                if (EVENT_EXECUTOR == null) {
+                    ExecutorService virtual = Threads.virtualExecutor("event-virtual-");
+                    EVENT_EXECUTOR = virtual != null ? virtual : new ThreadPoolExecutor(0, Integer.MAX_VALUE, 60, TimeUnit.SECONDS, new SynchronousQueue<>(), new CommonThreadFactory("event-pool-"));
                 }
             }
         }
-        return COMMON_EXECUTOR;
+        return EVENT_EXECUTOR;
+    }
+
+    /**
+     * 新建连接默认使用的指标采集，设置了{@link Variables#METRICS_JMX}时注册JMX MBean，否则不采集
+     *
+     * @return 指标采集
+     */
+    public static final MetricsRegistry metricsRegistry() {
+        if (METRICS_REGISTRY == null) {
+            synchronized (Builder.class) {
+                if (METRICS_REGISTRY == null) {
+                    METRICS_REGISTRY = Boolean.getBoolean(Variables.METRICS_JMX) ? JmxMetricsRegistry.register() : MetricsRegistry.NONE;
+                }
+            }
+        }
+        return METRICS_REGISTRY;
+    }
+
+    /**
+     * 替换新建连接默认使用的指标采集，已经建立的连接不受影响
+     *
+     * @param registry 指标采集
+     */
+    public static void setMetricsRegistry(MetricsRegistry registry) {
+        METRICS_REGISTRY = registry == null ? MetricsRegistry.NONE : registry;
     }
 
     /**
@@ -651,6 +783,131 @@ public class Builder {
         }
     }
 
+    /**
+     * 用模板目录预置用户目录，浏览器启动时不必从头创建配置文件
+     * 使用硬链接时只链接{@link #LINKABLE_DIRECTORIES}中不会被原地修改的文件，其余文件以及文件系统不支持或跨设备的文件都复制
+     *
+     * @param template 模板目录
+     * @param target   用户目录
+     * @param link     是否硬链接只读的文件
+     * @throws IOException 异常
+     */
+    public static final void copyDirectory(String template, String target, boolean link) throws IOException {
+        Path source = Paths.get(template);
+        Path destination = Paths.get(target);
+        Files.walkFileTree(source, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                Files.createDirectories(destination.resolve(source.relativize(dir).toString()));
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                // 浏览器的SingletonLock等进程锁是符号链接，不能带到新的用户目录
+                if (attrs.isSymbolicLink()) {
+                    return FileVisitResult.CONTINUE;
+                }
+                Path relative = source.relativize(file);
+                Path to = destination.resolve(relative.toString());
+                if (link && isLinkable(relative)) {
+                    try {
+                        Files.createLink(to, file);
+                        return FileVisitResult.CONTINUE;
+                    } catch (IOException | UnsupportedOperationException e) {
+                        Logger.trace("link {} failed, fall back to copy: {}", file, e.getMessage());
+                    }
+                }
+                Files.copy(file, to, StandardCopyOption.COPY_ATTRIBUTES);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    private static boolean isLinkable(Path relative) {
+        for (int i = 0; i < relative.getNameCount() - 1; i++) {
+            if (LINKABLE_DIRECTORIES.contains(relative.getName(i).toString())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 递归删除目录
+     *
+     * @param path 要删除的目录
+     * @throws IOException 异常
+     */
+    public static final void deleteDirectory(String path) throws IOException {
+        Path root = Paths.get(path);
+        if (!Files.exists(root)) {
+            return;
+        }
+        Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                Files.deleteIfExists(file);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException e) throws IOException {
+                if (e instanceof NoSuchFileException) {
+                    return FileVisitResult.CONTINUE;
+                }
+                throw e;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(Path dir, IOException e) throws IOException {
+                if (e != null && !(e instanceof NoSuchFileException)) {
+                    throw e;
+                }
+                Files.deleteIfExists(dir);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    /**
+     * 在后台线程中删除目录，先等待进程退出释放文件，删除失败时重试
+     *
+     * @param path    要删除的目录
+     * @param process 占用目录的进程，可以为null
+     * @return 删除任务
+     */
+    public static final Future<?> deleteDirectoryAsync(String path, Process process) {
+        if (PROFILE_CLEANER == null) {
+            synchronized (Builder.class) {
+                if (PROFILE_CLEANER == null) {
+                    PROFILE_CLEANER = Executors.newSingleThreadExecutor(new CommonThreadFactory("profile-cleaner-"));
+                }
+            }
+        }
+        return PROFILE_CLEANER.submit(() -> {
+            try {
+                if (process != null) {
+                    process.waitFor(10000, TimeUnit.MILLISECONDS);
+                }
+                for (int i = 1; ; i++) {
+                    try {
+                        deleteDirectory(path);
+                        return;
+                    } catch (IOException e) {
+                        if (i >= RETRY_TIMES) {
+                            Logger.error("delete directory " + path + " error", e);
+                            return;
+                        }
+                        Thread.sleep(200L * i);
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+    }
+
     /**
      * 创建一个文件，如果该文件上的有些文件夹路径不存在，会自动创建文件夹。
      *
@@ -686,11 +943,11 @@ public class Builder {
         private final AtomicInteger threadNumber = new AtomicInteger(1);
         private final String namePrefix;
 
-        CommonThreadFactory() {
+        CommonThreadFactory(String prefix) {
             SecurityManager s = System.getSecurityManager();
             group = (s != null) ? s.getThreadGroup() :
                     Thread.currentThread().getThreadGroup();
-            namePrefix = "common-pool-" + poolNumber.getAndIncrement() + "-thread-";
+            namePrefix = prefix + poolNumber.getAndIncrement() + "-thread-";
         }
 
         public Thread newThread(Runnable r) {
@@ -25,6 +25,7 @@
  ********************************************************************************/
 package org.aoju.lancia;
 
+import org.aoju.bus.core.lang.exception.InstrumentException;
 import org.aoju.lancia.kernel.Standard;
 import org.aoju.lancia.option.BrowserOption;
 import org.aoju.lancia.option.ChromeOption;
@@ -32,7 +33,12 @@ import org.aoju.lancia.option.LaunchOption;
 import org.aoju.lancia.worker.Transport;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * 启动器(浏览器)
@@ -47,6 +53,53 @@ public interface Launcher {
 
     Browser launch(LaunchOption options) throws IOException;
 
+    /**
+     * 并发启动多个浏览器，任何一个启动失败时关闭其余已经启动的浏览器
+     *
+     * @param count   浏览器数量
+     * @param options 启动参数
+     * @return 浏览器
+     * @throws IOException 启动浏览器的异常
+     */
+    default List<Browser> launchAll(int count, LaunchOption options) throws IOException {
+        ExecutorService executor = Executors.newFixedThreadPool(count, r -> {
+            Thread thread = new Thread(r, "browser-launcher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            List<Future<Browser>> futures = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                futures.add(executor.submit(() -> this.launch(options)));
+            }
+            List<Browser> browsers = new ArrayList<>(count);
+            Throwable error = null;
+            for (Future<Browser> future : futures) {
+                try {
+                    browsers.add(future.get());
+                } catch (ExecutionException e) {
+                    error = error == null ? e.getCause() : error;
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    error = error == null ? e : error;
+                }
+            }
+            if (error == null) {
+                return browsers;
+            }
+            browsers.forEach(Browser::close);
+            if (error instanceof IOException) {
+                throw (IOException) error;
+            }
+            if (error instanceof RuntimeException) {
+                throw (RuntimeException) error;
+            }
+            throw new InstrumentException(error);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
     List<String> defaultArgs(ChromeOption options);
 
     String resolveExecutablePath(String chromeExecutable) throws IOException;
@@ -34,6 +34,7 @@ import org.aoju.bus.core.lang.Normal;
 import org.aoju.bus.core.lang.exception.InstrumentException;
 import org.aoju.bus.core.toolkit.CollKit;
 import org.aoju.bus.core.toolkit.StringKit;
+import org.aoju.bus.logger.Logger;
 import org.aoju.lancia.kernel.browser.Context;
 import org.aoju.lancia.kernel.page.TaskQueue;
 import org.aoju.lancia.kernel.page.*;
@@ -54,6 +55,7 @@ import java.beans.IntrospectionException;
 import java.beans.Introspector;
 import java.beans.PropertyDescriptor;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.lang.reflect.InvocationTargetException;
 import java.nio.file.Files;
 import java.nio.file.Paths;
@@ -94,6 +96,7 @@ public class Page extends EventEmitter {
     private final Accessibility accessibility;
     private final FrameManager frameManager;
     private final EmulationManager emulationManager;
+    private final DomainManager domainManager;
     private final Tracing tracing;
     private final Map<String, Function<List<?>, Object>> pageBindings;
     private final Coverage coverage;
@@ -104,8 +107,13 @@ public class Page extends EventEmitter {
     private Viewport viewport;
 
     public Page(CDPSession client, Target target, boolean ignoreHTTPSErrors, TaskQueue<String> screenshotTaskQueue) {
+        this(client, target, ignoreHTTPSErrors, screenshotTaskQueue, Variables.PageProfile.FULL);
+    }
+
+    public Page(CDPSession client, Target target, boolean ignoreHTTPSErrors, TaskQueue<String> screenshotTaskQueue, Variables.PageProfile profile) {
         super();
         this.closed = false;
+        this.domainManager = new DomainManager(client, profile);
         this.client = client;
         this.target = target;
         this.keyboard = new Keyboard(client);
@@ -114,6 +122,7 @@ public class Page extends EventEmitter {
         this.touchscreen = new Touchscreen(client, keyboard);
         this.accessibility = new Accessibility(client);
         this.frameManager = new FrameManager(client, this, ignoreHTTPSErrors, timeout);
+        this.frameManager.getNetworkManager().setDomainManager(this.domainManager);
         this.emulationManager = new EmulationManager(client);
         this.tracing = new Tracing(client);
         this.pageBindings = new HashMap<>();
@@ -376,7 +385,24 @@ public class Page extends EventEmitter {
      * @throws InterruptedException 线程打断异常
      */
     public static Page create(CDPSession client, Target target, boolean ignoreHTTPSErrors, Viewport viewport, TaskQueue<String> screenshotTaskQueue) throws ExecutionException, InterruptedException {
-        Page page = new Page(client, target, ignoreHTTPSErrors, screenshotTaskQueue);
+        return create(client, target, ignoreHTTPSErrors, viewport, screenshotTaskQueue, Variables.PageProfile.FULL);
+    }
+
+    /**
+     * 创建一个page对象
+     *
+     * @param client              与页面通讯的客户端
+     * @param target              目标
+     * @param ignoreHTTPSErrors   是否忽略https错误
+     * @param viewport            视图
+     * @param screenshotTaskQueue 截图队列
+     * @param profile             页面开启的协议域
+     * @return 页面实例
+     * @throws ExecutionException   并发异常
+     * @throws InterruptedException 线程打断异常
+     */
+    public static Page create(CDPSession client, Target target, boolean ignoreHTTPSErrors, Viewport viewport, TaskQueue<String> screenshotTaskQueue, Variables.PageProfile profile) throws ExecutionException, InterruptedException {
+        Page page = new Page(client, target, ignoreHTTPSErrors, screenshotTaskQueue, profile);
         page.initialize();
         if (viewport != null) {
             page.setViewport(viewport);
@@ -705,6 +731,31 @@ public class Page extends EventEmitter {
         }
     }
 
+    /**
+     * 重置页面以便复用：移除页面上注册的监听器，恢复请求头、认证与请求拦截等网络设置，
+     * 按需清除当前源的存储(包括该源的cookie)，最后导航到about:blank
+     * 不会清除上下文中其他源的cookie，它们可能属于同一上下文中的其他页面；需要完整隔离时为页面使用单独的隐身上下文
+     * 注意 通过evaluateOnNewDocument与exposeFunction注入的脚本不会被移除
+     *
+     * @param clearStorage 是否清除当前源的存储
+     * @throws InterruptedException 异常
+     */
+    public void reset(boolean clearStorage) throws InterruptedException {
+        this.removeAllListeners();
+        this.frameManager.getNetworkManager().reset();
+        if (clearStorage) {
+            String url = this.url();
+            if (url != null && (url.startsWith("http://") || url.startsWith("https://"))) {
+                int path = url.indexOf('/', url.indexOf("//") + 2);
+                Map<String, Object> params = new HashMap<>();
+                params.put("origin", path < 0 ? url : url.substring(0, path));
+                params.put("storageTypes", "all");
+                this.client.send("Storage.clearDataForOrigin", params, true);
+            }
+        }
+        this.goTo("about:blank", true);
+    }
+
     /**
      * 截图
      * 备注 在OS X上 截图需要至少1/6秒。查看讨论：https://crbug.com/741689。
@@ -714,6 +765,41 @@ public class Page extends EventEmitter {
      * @throws IOException 异常
      */
     public String screenshot(ScreenshotOption options) throws IOException {
+        return (String) this.screenshotTaskQueue.postTask((type, op) -> {
+            try {
+                return screenshotTask(type, op, null);
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            } catch (ExecutionException e) {
+                throw new RuntimeException(e);
+            }
+        }, screenshotType(options), options);
+    }
+
+    /**
+     * 屏幕截图并直接写入输出流，图片数据在接收时解码写出，不生成base64字符串
+     *
+     * @param options 截图选项，其中的path只用于推断图片类型
+     * @param output  输出流，由调用方关闭
+     * @throws IOException 异常
+     */
+    public void screenshot(ScreenshotOption options, OutputStream output) throws IOException {
+        this.screenshotTaskQueue.postTask((type, op) -> {
+            try {
+                return screenshotTask(type, op, output);
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            } catch (ExecutionException e) {
+                throw new RuntimeException(e);
+            }
+        }, screenshotType(options), options);
+    }
+
+    private String screenshotType(ScreenshotOption options) throws IOException {
         String screenshotType = null;
         // options.type takes precedence over inferring the type from options.path
         // because it may be a 0-length file with no extension created beforehand (i.e. as a temp file).
@@ -742,18 +828,7 @@ public class Page extends EventEmitter {
             Assert.isTrue(options.getClip().getWidth() != 0, "Expected options.clip.width not to be 0.");
             Assert.isTrue(options.getClip().getHeight() != 0, "Expected options.clip.height not to be 0.");
         }
-
-        return (String) this.screenshotTaskQueue.postTask((type, op) -> {
-            try {
-                return screenshotTask(type, op);
-            } catch (IOException e) {
-                throw new RuntimeException(e);
-            } catch (InterruptedException e) {
-                throw new RuntimeException(e);
-            } catch (ExecutionException e) {
-                throw new RuntimeException(e);
-            }
-        }, screenshotType, options);
+        return screenshotType;
     }
 
     /**
@@ -884,10 +959,12 @@ public class Page extends EventEmitter {
             deleteCookieParameters.add(new DeleteCookie(cookie.getName(), cookie.getUrl(), cookie.getDomain(), cookie.getPath()));
         }
 
-        this.deleteCookie(deleteCookieParameters);
+        Batch batch = this.client.batch();
+        this.deleteCookie(deleteCookieParameters, batch);
         Map<String, Object> params = new HashMap<>();
         params.put("cookies", cookies);
-        this.client.send("Network.setCookies", params, true);
+        batch.add("Network.setCookies", params);
+        batch.send();
     }
 
     /**
@@ -1089,12 +1166,18 @@ public class Page extends EventEmitter {
      * @throws InvocationTargetException 异常
      */
     public void deleteCookie(List<DeleteCookie> cookies) throws IllegalAccessException, IntrospectionException, InvocationTargetException {
+        Batch batch = this.client.batch();
+        this.deleteCookie(cookies, batch);
+        batch.send();
+    }
+
+    private void deleteCookie(List<DeleteCookie> cookies, Batch batch) throws IllegalAccessException, IntrospectionException, InvocationTargetException {
         String pageURL = this.url();
         for (DeleteCookie cookie : cookies) {
             if (StringKit.isEmpty(cookie.getUrl()) && pageURL.startsWith("http"))
                 cookie.setUrl(pageURL);
             Map<String, Object> params = getProperties(cookie);
-            this.client.send("Network.deleteCookies", params, true);
+            batch.add("Network.deleteCookies", params);
         }
     }
 
@@ -1108,8 +1191,12 @@ public class Page extends EventEmitter {
      * @throws ExecutionException   并发异常
      */
     public void emulate(Device options) throws ExecutionException, InterruptedException {
-        this.setViewport(options.getViewport());
-        this.setUserAgent(options.getUserAgent());
+        Batch batch = this.client.batch();
+        boolean needsReload = this.emulationManager.emulateViewport(options.getViewport(), batch);
+        this.frameManager.getNetworkManager().setUserAgent(options.getUserAgent(), batch);
+        batch.send();
+        this.viewport = options.getViewport();
+        if (needsReload) this.reload(null);
     }
 
     /**
@@ -1246,7 +1333,7 @@ public class Page extends EventEmitter {
             return;
         }
 
-        CompletionService completionService = new ExecutorCompletionService(Builder.commonExecutor());
+        CompletionService completionService = new ExecutorCompletionService(this.client.executor(Variables.ExecutorType.MAINTENANCE));
         frames.forEach(frame -> completionService.submit(() -> frame.evaluate(expression, null)));
         for (int i = 0; i < frames.size(); i++) {
             completionService.take().get();
@@ -1340,7 +1427,13 @@ public class Page extends EventEmitter {
      * @throws InvocationTargetException 异常
      */
     public Metrics metrics() throws IllegalAccessException, IntrospectionException, InvocationTargetException {
-        JSONObject responseNode = this.client.send("Performance.getMetrics", null, true);
+        JSONObject responseNode;
+        this.domainManager.acquire(DomainManager.PERFORMANCE);
+        try {
+            responseNode = this.client.send("Performance.getMetrics", null, true);
+        } finally {
+            this.domainManager.release(DomainManager.PERFORMANCE);
+        }
         List<Metric> metrics = new ArrayList<>();
         List<JSONObject> list = responseNode.getObject("metrics", new TypeReference<List<JSONObject>>() {
         });
@@ -1372,6 +1465,22 @@ public class Page extends EventEmitter {
      * @throws IOException 异常
      */
     public byte[] pdf(PDFOption options) throws IOException {
+        String handle = this.printToPDF(options);
+        return (byte[]) Builder.readProtocolStream(this.client, handle, options.getPath(), false);
+    }
+
+    /**
+     * 生成当前页面的pdf格式并直接写入输出流，数据分块解码写出，不在内存中保留整个文件
+     * <strong>注意 目前仅支持无头模式的 Chrome</strong>
+     *
+     * @param options 选项，其中的path会被忽略
+     * @param output  输出流，由调用方关闭
+     */
+    public void pdf(PDFOption options, OutputStream output) {
+        Builder.readProtocolStream(this.client, this.printToPDF(options), output);
+    }
+
+    private String printToPDF(PDFOption options) {
         double paperWidth = 8.5;
         double paperHeight = 11;
 
@@ -1430,7 +1539,7 @@ public class Page extends EventEmitter {
         if (result != null) {
             String handle = result.getString(Variables.RECV_MESSAGE_STREAM_PROPERTY);
             Assert.isTrue(handle != null, "Page.printToPDF result has no stream handle. Please check your chrome version. result=" + result.toString());
-            return (byte[]) Builder.readProtocolStream(this.client, handle, options.getPath(), false);
+            return handle;
         }
         throw new InstrumentException("Page.printToPDF no response");
     }
@@ -1621,7 +1730,7 @@ public class Page extends EventEmitter {
         if (timeout <= 0)
             timeout = this.timeout.timeout();
         int finalTimeout = timeout;
-        return Builder.commonExecutor().submit(() -> {
+        return this.client.executor(Variables.ExecutorType.LISTENER).submit(() -> {
             if (CollKit.isEmpty(this.fileChooserInterceptors)) {
                 Map<String, Object> params = new HashMap<>();
                 params.put("enabled", true);
@@ -1736,12 +1845,14 @@ public class Page extends EventEmitter {
             return false;
         };
         BrowserListener<Object> listener = null;
+        this.domainManager.acquire(DomainManager.NETWORK);
         try {
             listener = sessionClosePromise();
             return (Request) Builder.waitForEvent(this.frameManager.getNetworkManager(), Variables.Event.NETWORK_MANAGER_REQUEST.getName(), predi, timeout, "Wait for request timeout");
         } finally {
             if (listener != null)
                 this.client.removeListener(Variables.Event.CDPSESSION_DISCONNECTED.getName(), listener);
+            this.domainManager.release(DomainManager.NETWORK);
         }
     }
 
@@ -1804,12 +1915,14 @@ public class Page extends EventEmitter {
             return false;
         };
         BrowserListener<Object> listener = null;
+        this.domainManager.acquire(DomainManager.NETWORK);
         try {
             listener = sessionClosePromise();
             return (Response) Builder.waitForEvent(this.frameManager.getNetworkManager(), Variables.Event.NETWORK_MANAGER_RESPONSE.getName(), predi, timeout, "Wait for response timeout");
         } finally {
             if (listener != null)
                 this.client.removeListener(Variables.Event.CDPSESSION_DISCONNECTED.getName(), listener);
+            this.domainManager.release(DomainManager.NETWORK);
         }
     }
 
@@ -1945,16 +2058,62 @@ public class Page extends EventEmitter {
         return client;
     }
 
+    @Override
+    protected ExecutorService listenerExecutor() {
+        return this.client.executor(Variables.ExecutorType.LISTENER);
+    }
+
     protected void initialize() {
-        frameManager.initialize();
+        // frame树之后的初始化命令互不依赖，连续写出后只等待一次
+        Batch batch = this.client.batch();
+        frameManager.initialize(batch);
         Map<String, Object> params = new HashMap<>();
         params.put("autoAttach", true);
         params.put("waitForDebuggerOnStart", false);
         params.put("flatten", true);
-        this.client.send("Target.setAutoAttach", params, false);
-        params.clear();
-        this.client.send("Performance.enable", params, false);
-        this.client.send("Log.enable", params, true);
+        batch.add("Target.setAutoAttach", params);
+        this.domainManager.initialize(batch);
+        batch.send();
+    }
+
+    @Override
+    protected void listenerAdded(String method) {
+        String domain = domainOf(method);
+        if (domain == null || this.domainManager == null) {
+            return;
+        }
+        try {
+            this.domainManager.acquire(domain);
+        } catch (RuntimeException e) {
+            Logger.error("enable {} for {} fail:", domain, method, e);
+        }
+    }
+
+    @Override
+    protected void listenerRemoved(String method) {
+        String domain = domainOf(method);
+        if (domain != null && this.domainManager != null) {
+            this.domainManager.release(domain);
+        }
+    }
+
+    /**
+     * 页面事件依赖的协议域
+     *
+     * @param method 页面事件名称
+     * @return 协议域，不依赖可选协议域时为null
+     */
+    private static String domainOf(String method) {
+        if (Variables.Event.PAGE_REQUEST.getName().equals(method)
+                || Variables.Event.PAGE_RESPONSE.getName().equals(method)
+                || Variables.Event.PAGE_REQUESTFAILED.getName().equals(method)
+                || Variables.Event.PAGE_REQUESTFINISHED.getName().equals(method)) {
+            return DomainManager.NETWORK;
+        }
+        if (Variables.Event.PAGE_METRICS.getName().equals(method)) {
+            return DomainManager.PERFORMANCE;
+        }
+        return null;
     }
 
     private Map<String, Object> getProperties(DeleteCookie cookie) throws IntrospectionException, InvocationTargetException, IllegalAccessException {
@@ -2060,7 +2219,7 @@ public class Page extends EventEmitter {
         return this.getMainFrame().url();
     }
 
-    private String screenshotTask(String format, ScreenshotOption options) throws IOException, ExecutionException, InterruptedException {
+    private String screenshotTask(String format, ScreenshotOption options, OutputStream output) throws IOException, ExecutionException, InterruptedException {
         Map<String, Object> params = new HashMap<>();
         params.put("targetId", this.target.getTargetId());
         this.client.send("Target.activateTarget", params, true);
@@ -2095,12 +2254,17 @@ public class Page extends EventEmitter {
         params.put("format", format);
         params.put("quality", options.getQuality());
         params.put("clip", clip);
-        JSONObject result = this.client.send("Page.captureScreenshot", params, true);
+        JSONObject result = output == null
+                ? this.client.send("Page.captureScreenshot", params, true)
+                : this.client.send("Page.captureScreenshot", params, new ResponseSink("data", output));
         if (shouldSetDefaultBackground) {
             this.client.send("Emulation.setDefaultBackgroundColorOverride", null, true);
         }
         if (options.getFullPage() && this.viewport != null)
             this.setViewport(this.viewport);
+        if (output != null) {
+            return null;
+        }
         String data = result.getString("data");
 //            byte[] buffer = decoder.decodeBuffer(data);
         byte[] buffer = Base64.getDecoder().decode(data);
@@ -2130,7 +2294,7 @@ public class Page extends EventEmitter {
     }
 
     private void onFileChooser(FileChooserPayload event) {
-        Builder.commonExecutor().submit(() -> {
+        this.client.executor(Variables.ExecutorType.LISTENER).submit(() -> {
             if (CollKit.isEmpty(this.fileChooserInterceptors))
                 return;
             Frame frame = this.frameManager.frame(event.getFrameId());
@@ -89,6 +89,23 @@ public class Puppeteer {
         return Puppeteer.rawLaunch(options, new Puppeteer());
     }
 
+    /**
+     * 并发启动多个浏览器
+     *
+     * @param count   浏览器数量
+     * @param options 启动参数
+     * @return 浏览器
+     * @throws IOException 异常
+     */
+    public static List<Browser> launchAll(int count, LaunchOption options) throws IOException {
+        Puppeteer puppeteer = new Puppeteer();
+        if (StringKit.isNotBlank(options.getProduct())) {
+            puppeteer.setProductName(options.getProduct());
+        }
+        adapterLauncher(puppeteer);
+        return puppeteer.getLauncher().launchAll(count, options);
+    }
+
     private static Browser rawLaunch() throws IOException {
         return Puppeteer.rawLaunch(true);
     }
@@ -177,6 +177,67 @@ public class Variables {
      * 内置线程池的数量
      */
     public static final String COMMONT_THREAD_POOL_NUM = "common_thread_number";
+    /**
+     * NIO传输的selector线程数量
+     */
+    public static final String SELECTOR_THREAD_NUM = "selector_thread_number";
+    /**
+     * 设置为true时websocket连接使用{@link org.aoju.lancia.worker.NioTransport}
+     */
+    public static final String TRANSPORT_NIO = "transport_nio";
+    /**
+     * 每个会话的事件队列容量，超过后丢弃新事件，不设置或小于等于0表示不限制
+     */
+    public static final String EVENT_QUEUE_SIZE = "event_queue_size";
+    /**
+     * 设置为true时websocket握手协商permessage-deflate压缩(RFC 7692)
+     */
+    public static final String WEBSOCKET_DEFLATE = "websocket_deflate";
+    /**
+     * 发送的消息达到该字节数才压缩，默认1024
+     */
+    public static final String WEBSOCKET_DEFLATE_THRESHOLD = "websocket_deflate_threshold";
+    /**
+     * 压缩级别，默认1(最快)
+     */
+    public static final String WEBSOCKET_DEFLATE_LEVEL = "websocket_deflate_level";
+    /**
+     * 设置为false时要求浏览器每条消息独立压缩(server_no_context_takeover)，默认true
+     */
+    public static final String WEBSOCKET_DEFLATE_CONTEXT_TAKEOVER = "websocket_deflate_context_takeover";
+    /**
+     * 录制文件路径，设置后把收发的CDP消息录制到该文件，每个连接在文件名后加上序号(cdp.jsonl录制为cdp-1.jsonl、cdp-2.jsonl)，
+     * 可以用{@link org.aoju.lancia.worker.ReplayTransport}回放
+     */
+    public static final String TRANSPORT_RECORD = "transport_record";
+    /**
+     * 设置为true时采集协议指标并注册为JMX MBean(org.aoju.lancia:type=ProtocolMetrics)
+     */
+    public static final String METRICS_JMX = "metrics_jmx";
+    /**
+     * 每个连接待写出消息的字节数上限，不设置或小于等于0表示不限制
+     */
+    public static final String OUTBOUND_QUEUE_BYTES = "outbound_queue_bytes";
+    /**
+     * 待写出消息超过上限时的处理策略，取值见{@link OverflowPolicy}，默认BLOCK
+     */
+    public static final String OUTBOUND_QUEUE_POLICY = "outbound_queue_policy";
+    /**
+     * 在JDK 21+上设置为false时不使用虚拟线程，事件分发和回调仍然使用平台线程池
+     */
+    public static final String VIRTUAL_THREADS = "virtual_threads";
+    /**
+     * 内置执行服务的线程数量，后面加上"_"和{@link ExecutorType}的小写名称，如executor_thread_number_stream
+     */
+    public static final String EXECUTOR_THREAD_NUM = "executor_thread_number";
+    /**
+     * 内置执行服务的队列容量，后面加上"_"和{@link ExecutorType}的小写名称，默认1024
+     */
+    public static final String EXECUTOR_QUEUE_SIZE = "executor_queue_size";
+    /**
+     * 内置执行服务队列满了之后的处理策略，后面加上"_"和{@link ExecutorType}的小写名称，取值见{@link OverflowPolicy}，默认BLOCK
+     */
+    public static final String EXECUTOR_POLICY = "executor_policy";
 
     /**
      * 要监听的事件的名字枚举类
@@ -325,6 +386,90 @@ public class Variables {
 
     }
 
+    /**
+     * 有界队列满了之后的处理策略
+     */
+    public enum OverflowPolicy {
+        /**
+         * 阻塞发送线程直到有空间，超过默认超时时间后抛出异常
+         */
+        BLOCK,
+        /**
+         * 立即抛出异常，等待响应的命令会立即失败
+         */
+        FAIL,
+        /**
+         * 丢弃新的消息并记录日志，等待响应的命令立即失败
+         */
+        SHED
+    }
+
+    /**
+     * 内置执行服务的用途，不同用途的任务互不影响
+     */
+    public enum ExecutorType {
+        /**
+         * 用户的事件处理器，以及对话框、文件选择、非阻塞点击等用户发起的异步操作
+         */
+        LISTENER,
+        /**
+         * 协议流的读取，包括PDF和tracing的IO.read，以及覆盖率收集时获取的源码
+         */
+        STREAM,
+        /**
+         * 后台维护任务，如上下文变化后重跑等待任务、在所有frame中执行脚本
+         */
+        MAINTENANCE
+    }
+
+    /**
+     * 页面开启的协议域
+     */
+    public enum PageProfile {
+        /**
+         * 页面创建时就开启Network、Log和Performance
+         */
+        FULL,
+        /**
+         * 只开启渲染需要的Page和Runtime，其他协议域在有监听器或功能需要时才开启，适合只做渲染(pdf、截图)的场景
+         * console事件来自始终开启的Runtime，不会开启Log，浏览器自身的日志(Log.entryAdded)只在FULL模式下上报
+         */
+        MINIMAL
+    }
+
+    /**
+     * 用模板预置用户目录的方式
+     */
+    public enum ProfileSeed {
+        /**
+         * 复制模板中的文件
+         */
+        COPY,
+        /**
+         * 硬链接模板中扩展、组件等按版本安装的只读文件，其余会被浏览器原地修改的文件(如Cookies等数据库)仍然复制，
+         * 文件系统不支持硬链接时全部复制
+         */
+        LINK
+    }
+
+    /**
+     * 渲染任务的优先级，排在前面的优先级高
+     */
+    public enum JobPriority {
+        /**
+         * 有用户在等待结果的请求
+         */
+        INTERACTIVE,
+        /**
+         * 普通任务
+         */
+        NORMAL,
+        /**
+         * 批量补数等后台任务，只在没有更高优先级的任务时执行
+         */
+        BULK
+    }
+
     public enum DialogType {
 
         Alert("alert"),
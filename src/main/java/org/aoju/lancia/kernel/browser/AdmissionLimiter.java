@@ -0,0 +1,511 @@
+/*********************************************************************************
+ *                                                                               *
+ * The MIT License (MIT)                                                         *
+ *                                                                               *
+ * Copyright (c) 2015-2021 aoju.org and other contributors.                      *
+ *                                                                               *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy  *
+ * of this software and associated documentation files (the "Software"), to deal *
+ * in the Software without restriction, including without limitation the rights  *
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell     *
+ * copies of the Software, and to permit persons to whom the Software is         *
+ * furnished to do so, subject to the following conditions:                      *
+ *                                                                               *
+ * The above copyright notice and this permission notice shall be included in    *
+ * all copies or substantial portions of the Software.                           *
+ *                                                                               *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR    *
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,      *
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE   *
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER        *
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, *
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN     *
+ * THE SOFTWARE.                                                                 *
+ *                                                                               *
+ ********************************************************************************/
+package org.aoju.lancia.kernel.browser;
+
+import com.alibaba.fastjson.JSONArray;
+import com.alibaba.fastjson.JSONObject;
+import org.aoju.bus.core.lang.exception.InstrumentException;
+import org.aoju.bus.logger.Logger;
+import org.aoju.lancia.Browser;
+import org.aoju.lancia.Builder;
+import org.aoju.lancia.Page;
+import org.aoju.lancia.Variables;
+import org.aoju.lancia.kernel.page.Target;
+import org.aoju.lancia.worker.BrowserListener;
+import org.aoju.lancia.worker.ListenerWrapper;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 页面并发的自适应准入控制
+ * 限制同一个浏览器同时进行的任务数，超出的任务排队等待：
+ * 直接newPage的页面从创建到关闭算一个任务；{@link PagePool}中的页面从租借到归还算一个任务，常驻的空闲页面不占用名额
+ * 上限按梯度算法调整：任务耗时接近长期平均时增加上限，明显变慢时按比例降低，
+ * 浏览器进程的CPU占用或页面堆内存超过阈值、页面崩溃时乘性减小
+ *
+ * @author Kimi Liu
+ * @version 1.2.8
+ * @since JDK 1.8+
+ */
+public class AdmissionLimiter implements AutoCloseable {
+
+    /**
+     * 长期耗时的平滑窗口
+     */
+    private static final int LONG_WINDOW = 100;
+
+    /**
+     * 短期耗时的平滑窗口
+     */
+    private static final int SHORT_WINDOW = 10;
+
+    private final Browser browser;
+
+    private final ReentrantLock lock = new ReentrantLock(true);
+
+    private final Condition admitted = lock.newCondition();
+
+    /**
+     * 直接newPage准入的页面和准入时间，页面关闭时归还名额
+     */
+    private final Map<Target, Long> pages = new IdentityHashMap<>();
+
+    /**
+     * 页面崩溃监听，监听浏览器连接上的Target.targetCrashed，不占用页面自身的事件
+     */
+    private final ListenerWrapper<JSONObject> crashListener;
+
+    private final ScheduledExecutorService sampler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "admission-sampler");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * 上一次采样时各进程累计的CPU时间(秒)
+     */
+    private Map<Object, Double> cpuTimes = new HashMap<>();
+
+    private long sampledAt;
+
+    private double limit;
+
+    private double longRtt;
+
+    private double shortRtt;
+
+    private int inFlight;
+
+    private int queued;
+
+    private volatile boolean closed;
+
+    /**
+     * 并发上限的下限
+     */
+    private volatile int minLimit = 1;
+
+    /**
+     * 并发上限的上限
+     */
+    private volatile int maxLimit;
+
+    /**
+     * 等待准入的最长时间(毫秒)，0表示一直等待
+     */
+    private volatile long acquireTimeout = Variables.DEFAULT_TIMEOUT;
+
+    /**
+     * 短期耗时超过长期耗时的容忍倍数，超过后开始降低上限
+     */
+    private volatile double tolerance = 1.5;
+
+    /**
+     * 过载时上限的缩减比例
+     */
+    private volatile double backoff = 0.75;
+
+    /**
+     * 浏览器全部进程的CPU占用率阈值，按本机CPU核数计算，0表示不检查
+     */
+    private volatile double cpuThreshold = 0.9;
+
+    /**
+     * 已准入页面的JS堆内存之和的阈值(字节)，0表示不检查
+     */
+    private volatile long maxHeapSize;
+
+    /**
+     * 创建准入控制，并按采样间隔检查浏览器的资源占用
+     *
+     * @param browser        浏览器
+     * @param initialLimit   初始并发上限
+     * @param maxLimit       并发上限的上限
+     * @param sampleInterval 资源采样间隔(毫秒)，0表示不采样
+     */
+    public AdmissionLimiter(Browser browser, int initialLimit, int maxLimit, long sampleInterval) {
+        if (initialLimit <= 0 || maxLimit < initialLimit || sampleInterval < 0) {
+            throw new IllegalArgumentException("Invalid admission limit: initial " + initialLimit + ", max " + maxLimit + ", interval " + sampleInterval);
+        }
+        this.browser = browser;
+        this.limit = initialLimit;
+        this.maxLimit = maxLimit;
+        if (sampleInterval > 0) {
+            this.sampler.scheduleWithFixedDelay(this::sample, sampleInterval, sampleInterval, TimeUnit.MILLISECONDS);
+        }
+        BrowserListener<JSONObject> crashedLis = new BrowserListener<JSONObject>() {
+            @Override
+            public void onBrowserEvent(JSONObject event) {
+                AdmissionLimiter limiter = (AdmissionLimiter) this.getTarget();
+                limiter.overload("page crashed");
+            }
+        };
+        crashedLis.setMethod("Target.targetCrashed");
+        crashedLis.setTarget(this);
+        this.crashListener = Builder.addEventListener(browser.defaultBrowserContext().getConnection(), crashedLis.getMethod(), crashedLis);
+        browser.onDisconnected(event -> this.close());
+    }
+
+    /**
+     * 任务开始，等待一个并发名额，超时抛出异常
+     *
+     * @return 准入时间，任务结束时交给{@link #release(long)}计算耗时
+     */
+    public long acquire() {
+        long nanos = TimeUnit.MILLISECONDS.toNanos(acquireTimeout);
+        boolean forever = nanos <= 0;
+        lock.lock();
+        try {
+            queued++;
+            try {
+                while (inFlight >= (int) limit) {
+                    if (closed) {
+                        throw new InstrumentException("Admission limiter is closed");
+                    }
+                    if (forever) {
+                        admitted.await();
+                    } else if (nanos <= 0) {
+                        throw new InstrumentException("Waiting for page admission failed: timeout " + acquireTimeout + "ms exceeded, limit " + (int) limit);
+                    } else {
+                        nanos = admitted.awaitNanos(nanos);
+                    }
+                }
+            } finally {
+                queued--;
+            }
+            inFlight++;
+            return System.nanoTime();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InstrumentException(e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 任务结束，归还名额并以任务的耗时调整上限
+     *
+     * @param start {@link #acquire()}返回的准入时间
+     */
+    public void release(long start) {
+        lock.lock();
+        try {
+            inFlight--;
+            update(System.nanoTime() - start);
+            admitted.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 任务没有开始(例如等待页面池超时)，归还名额，不计入耗时也不降低上限
+     */
+    public void cancel() {
+        lock.lock();
+        try {
+            inFlight--;
+            admitted.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 直接newPage创建的页面，名额在页面关闭时归还
+     *
+     * @param target 页面对应的目标
+     * @param start  准入时间
+     */
+    public void admit(Target target, long start) {
+        lock.lock();
+        try {
+            pages.put(target, start);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 页面创建失败，归还名额并按过载处理
+     */
+    public void reject() {
+        lock.lock();
+        try {
+            inFlight--;
+            decrease();
+            admitted.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 直接newPage创建的页面关闭，归还名额并以页面从创建到关闭的耗时调整上限
+     *
+     * @param target 页面对应的目标
+     */
+    public void release(Target target) {
+        Long start;
+        lock.lock();
+        try {
+            start = pages.remove(target);
+        } finally {
+            lock.unlock();
+        }
+        if (start != null) {
+            this.release(start.longValue());
+        }
+    }
+
+    /**
+     * 停止采样，唤醒全部等待者
+     */
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            closed = true;
+            admitted.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        Builder.removeEventListeners(Collections.singletonList(crashListener));
+        sampler.shutdownNow();
+    }
+
+    public int getLimit() {
+        lock.lock();
+        try {
+            return (int) limit;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getInFlight() {
+        lock.lock();
+        try {
+            return inFlight;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getQueued() {
+        lock.lock();
+        try {
+            return queued;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getMinLimit() {
+        return minLimit;
+    }
+
+    public void setMinLimit(int minLimit) {
+        this.minLimit = minLimit;
+    }
+
+    public int getMaxLimit() {
+        return maxLimit;
+    }
+
+    public void setMaxLimit(int maxLimit) {
+        this.maxLimit = maxLimit;
+    }
+
+    public long getAcquireTimeout() {
+        return acquireTimeout;
+    }
+
+    public void setAcquireTimeout(long acquireTimeout) {
+        this.acquireTimeout = acquireTimeout;
+    }
+
+    public double getTolerance() {
+        return tolerance;
+    }
+
+    public void setTolerance(double tolerance) {
+        this.tolerance = tolerance;
+    }
+
+    public double getBackoff() {
+        return backoff;
+    }
+
+    public void setBackoff(double backoff) {
+        this.backoff = backoff;
+    }
+
+    public double getCpuThreshold() {
+        return cpuThreshold;
+    }
+
+    public void setCpuThreshold(double cpuThreshold) {
+        this.cpuThreshold = cpuThreshold;
+    }
+
+    public long getMaxHeapSize() {
+        return maxHeapSize;
+    }
+
+    public void setMaxHeapSize(long maxHeapSize) {
+        this.maxHeapSize = maxHeapSize;
+    }
+
+    /**
+     * 梯度调整：短期耗时没有超出容忍倍数时增加sqrt(limit)，超出时按比例缩小，
+     * 并发没有用到一半时不增加，避免空闲时上限无限增长
+     */
+    private void update(long rtt) {
+        if (longRtt == 0) {
+            longRtt = shortRtt = rtt;
+        } else {
+            longRtt += (rtt - longRtt) / LONG_WINDOW;
+            shortRtt += (rtt - shortRtt) / SHORT_WINDOW;
+        }
+        // 持续变慢时长期耗时追赶短期耗时，负载下降后能恢复
+        if (longRtt / shortRtt > 2) {
+            longRtt *= 0.95;
+        }
+        double gradient = Math.max(0.5, Math.min(1.0, tolerance * longRtt / shortRtt));
+        double target = limit * gradient + Math.sqrt(limit);
+        if (target > limit && inFlight < limit / 2) {
+            return;
+        }
+        limit = Math.max(minLimit, Math.min(maxLimit, limit * 0.8 + target * 0.2));
+    }
+
+    private void decrease() {
+        limit = Math.max(minLimit, limit * backoff);
+    }
+
+    private void overload(String reason) {
+        lock.lock();
+        try {
+            decrease();
+            Logger.debug("Browser overloaded ({}), page limit {}", reason, (int) limit);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 采样浏览器各进程的CPU占用和已准入页面的堆内存
+     */
+    private void sample() {
+        try {
+            if (cpuThreshold > 0) {
+                double usage = this.cpuUsage();
+                if (usage > cpuThreshold) {
+                    this.overload("cpu " + Math.round(usage * 100) + "%");
+                }
+            }
+            if (maxHeapSize > 0) {
+                long heap = this.heapSize();
+                if (heap > maxHeapSize) {
+                    this.overload("heap " + heap);
+                }
+            }
+        } catch (RuntimeException e) {
+            if (!closed) {
+                Logger.warn("Sample browser resource usage error: {}", e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * 两次采样间浏览器全部进程的CPU占用率，第一次采样返回0
+     */
+    private double cpuUsage() {
+        JSONObject result = browser.defaultBrowserContext().getConnection().send("SystemInfo.getProcessInfo", null, true);
+        long now = System.nanoTime();
+        Map<Object, Double> current = new HashMap<>();
+        double used = 0;
+        JSONArray processes = result == null ? null : result.getJSONArray("processInfo");
+        if (processes != null) {
+            for (int i = 0; i < processes.size(); i++) {
+                JSONObject process = processes.getJSONObject(i);
+                double cpuTime = process.getDoubleValue("cpuTime");
+                Double last = cpuTimes.get(process.get("id"));
+                if (last != null && cpuTime >= last) {
+                    used += cpuTime - last;
+                }
+                current.put(process.get("id"), cpuTime);
+            }
+        }
+        long elapsed = now - sampledAt;
+        boolean first = sampledAt == 0;
+        cpuTimes = current;
+        sampledAt = now;
+        if (first || elapsed <= 0) {
+            return 0;
+        }
+        return used / (elapsed / 1e9) / Runtime.getRuntime().availableProcessors();
+    }
+
+    /**
+     * 已准入页面的JS堆内存之和
+     */
+    private long heapSize() {
+        List<Target> targets;
+        lock.lock();
+        try {
+            targets = new ArrayList<>(pages.keySet());
+        } finally {
+            lock.unlock();
+        }
+        long heap = 0;
+        for (Target target : targets) {
+            Page page = target.page();
+            if (page == null || page.isClosed()) {
+                continue;
+            }
+            try {
+                heap += page.metrics().getJSHeapUsedSize();
+            } catch (Exception e) {
+                Logger.debug("Get page metrics error: {}", e.getMessage());
+            }
+        }
+        return heap;
+    }
+
+}
@@ -0,0 +1,457 @@
+/*********************************************************************************
+ *                                                                               *
+ * The MIT License (MIT)                                                         *
+ *                                                                               *
+ * Copyright (c) 2015-2021 aoju.org and other contributors.                      *
+ *                                                                               *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy  *
+ * of this software and associated documentation files (the "Software"), to deal *
+ * in the Software without restriction, including without limitation the rights  *
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell     *
+ * copies of the Software, and to permit persons to whom the Software is         *
+ * furnished to do so, subject to the following conditions:                      *
+ *                                                                               *
+ * The above copyright notice and this permission notice shall be included in    *
+ * all copies or substantial portions of the Software.                           *
+ *                                                                               *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR    *
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,      *
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE   *
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER        *
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, *
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN     *
+ * THE SOFTWARE.                                                                 *
+ *                                                                               *
+ ********************************************************************************/
+package org.aoju.lancia.kernel.browser;
+
+import org.aoju.bus.core.lang.exception.InstrumentException;
+import org.aoju.bus.logger.Logger;
+import org.aoju.lancia.Browser;
+import org.aoju.lancia.Launcher;
+import org.aoju.lancia.launch.ChromeLauncher;
+import org.aoju.lancia.option.PoolOption;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 浏览器池
+ * 租借时优先取出空闲的浏览器，浏览器累计页面数或存活时间超过限制、断开连接时回收，
+ * 后台线程定期检查空闲浏览器的健康状况，并预热补足浏览器，请求路径上不必等待浏览器冷启动
+ *
+ * @author Kimi Liu
+ * @version 1.2.8
+ * @since JDK 1.8+
+ */
+public class BrowserPool implements AutoCloseable {
+
+    private final PoolOption options;
+
+    private final Launcher launcher;
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private final Condition available = lock.newCondition();
+
+    /**
+     * 空闲的浏览器，后进先出，让最近使用过的浏览器保持活跃
+     */
+    private final Deque<Entry> idle = new ArrayDeque<>();
+
+    /**
+     * 池中所有的浏览器，包括空闲和已租出的
+     */
+    private final Map<Browser, Entry> entries = new IdentityHashMap<>();
+
+    /**
+     * 后台维护线程，负责预热、健康检查与关闭回收的浏览器
+     */
+    private final ScheduledExecutorService maintainer = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "browser-pool");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * 浏览器总数，包括正在启动的
+     */
+    private int total;
+
+    private volatile boolean closed;
+
+    public BrowserPool(PoolOption options) {
+        this(options, new ChromeLauncher());
+    }
+
+    public BrowserPool(PoolOption options, Launcher launcher) {
+        if (options.getMaxSize() <= 0 || options.getMinSize() < 0 || options.getMinSize() > options.getMaxSize()) {
+            throw new IllegalArgumentException("Invalid pool size: min " + options.getMinSize() + ", max " + options.getMaxSize());
+        }
+        this.options = options;
+        this.launcher = launcher;
+        this.maintainer.execute(this::warm);
+        if (options.getHealthCheckInterval() > 0) {
+            this.maintainer.scheduleWithFixedDelay(this::check, options.getHealthCheckInterval(), options.getHealthCheckInterval(), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * 租借一个浏览器，最长等待{@link PoolOption#getLeaseTimeout()}
+     *
+     * @return 浏览器
+     * @throws IOException 启动浏览器的异常
+     */
+    public Browser lease() throws IOException {
+        return this.lease(options.getLeaseTimeout());
+    }
+
+    /**
+     * 租借一个浏览器，没有空闲的浏览器并且未达上限时在当前线程启动新的浏览器
+     *
+     * @param timeout 最长等待时间(毫秒)，0表示一直等待
+     * @return 浏览器
+     * @throws IOException 启动浏览器的异常
+     */
+    public Browser lease(long timeout) throws IOException {
+        long nanos = TimeUnit.MILLISECONDS.toNanos(timeout);
+        lock.lock();
+        try {
+            while (true) {
+                if (closed) {
+                    throw new InstrumentException("Browser pool is closed");
+                }
+                Entry entry;
+                while ((entry = idle.pollFirst()) != null) {
+                    if (entry.isReusable()) {
+                        entry.leased = true;
+                        return entry.browser;
+                    }
+                    retire(entry);
+                }
+                if (total < options.getMaxSize()) {
+                    total++;
+                    break;
+                }
+                if (timeout <= 0) {
+                    available.await();
+                } else {
+                    if (nanos <= 0) {
+                        throw new InstrumentException("Wait browser from pool for " + timeout + " MILLISECONDS timeout");
+                    }
+                    nanos = available.awaitNanos(nanos);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InstrumentException(e);
+        } finally {
+            lock.unlock();
+        }
+        Browser browser = launch(true);
+        schedule(this::warm);
+        return browser;
+    }
+
+    /**
+     * 归还租借的浏览器，达到回收条件的浏览器会被关闭
+     *
+     * @param browser 浏览器
+     */
+    public void release(Browser browser) {
+        lock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            Entry entry = entries.get(browser);
+            if (entry == null || !entry.leased) {
+                throw new InstrumentException("Browser is not leased from this pool");
+            }
+            entry.leased = false;
+            if (entry.isReusable()) {
+                idle.addFirst(entry);
+                available.signal();
+            } else {
+                retire(entry);
+            }
+        } finally {
+            lock.unlock();
+        }
+        schedule(this::warm);
+    }
+
+    /**
+     * 归还一个已经不可用的浏览器，浏览器会被直接关闭
+     *
+     * @param browser 浏览器
+     */
+    public void invalidate(Browser browser) {
+        lock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            Entry entry = entries.get(browser);
+            if (entry == null || !entry.leased) {
+                throw new InstrumentException("Browser is not leased from this pool");
+            }
+            entry.leased = false;
+            retire(entry);
+        } finally {
+            lock.unlock();
+        }
+        schedule(this::warm);
+    }
+
+    /**
+     * 关闭浏览器池以及池中所有的浏览器，包括尚未归还的，之后的归还会被忽略
+     */
+    @Override
+    public void close() {
+        List<Browser> browsers;
+        lock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            browsers = new ArrayList<>(entries.keySet());
+            entries.clear();
+            idle.clear();
+            total = 0;
+            available.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        maintainer.shutdown();
+        browsers.forEach(BrowserPool::closeQuietly);
+    }
+
+    /**
+     * @return 池中浏览器的数量，包括正在启动的
+     */
+    public int getSize() {
+        lock.lock();
+        try {
+            return total;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return 空闲浏览器的数量
+     */
+    public int getIdle() {
+        lock.lock();
+        try {
+            return idle.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return 已租出浏览器的数量
+     */
+    public int getLeased() {
+        lock.lock();
+        try {
+            return (int) entries.values().stream().filter(entry -> entry.leased).count();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 启动一个浏览器，调用前已经占用了{@link #total}的名额
+     *
+     * @param leased 是否直接租出
+     * @return 浏览器
+     * @throws IOException 启动浏览器的异常
+     */
+    private Browser launch(boolean leased) throws IOException {
+        Browser browser;
+        try {
+            browser = launcher.launch(options);
+        } catch (IOException | RuntimeException e) {
+            lock.lock();
+            try {
+                if (!closed) {
+                    total--;
+                    available.signal();
+                }
+            } finally {
+                lock.unlock();
+            }
+            throw e;
+        }
+        Entry entry = new Entry(browser);
+        browser.onTargetcreated(target -> {
+            if ("page".equals(target.type())) {
+                entry.pages.incrementAndGet();
+            }
+        });
+        browser.onDisconnected(event -> onDisconnected(entry));
+        lock.lock();
+        try {
+            if (!closed) {
+                entry.leased = leased;
+                entries.put(browser, entry);
+                if (!leased) {
+                    idle.addFirst(entry);
+                    available.signal();
+                }
+                return browser;
+            }
+        } finally {
+            lock.unlock();
+        }
+        closeQuietly(browser);
+        throw new InstrumentException("Browser pool is closed");
+    }
+
+    /**
+     * 预热浏览器，保持至少{@link PoolOption#getMinSize()}个浏览器，
+     * 所有浏览器都已租出时再多准备一个空闲的浏览器，总数不超过上限
+     */
+    private void warm() {
+        while (true) {
+            lock.lock();
+            try {
+                boolean need = total < options.getMinSize() || (idle.isEmpty() && total < options.getMaxSize() && total > 0);
+                if (closed || !need) {
+                    return;
+                }
+                total++;
+            } finally {
+                lock.unlock();
+            }
+            try {
+                launch(false);
+            } catch (IOException | RuntimeException e) {
+                // 启动失败时等待下一次健康检查再重试，避免连续失败占满维护线程
+                Logger.error("Warm up browser error", e);
+                return;
+            }
+        }
+    }
+
+    /**
+     * 检查空闲浏览器是否仍有响应，回收无响应或已到期的浏览器，然后补足浏览器
+     */
+    private void check() {
+        List<Entry> snapshot;
+        lock.lock();
+        try {
+            snapshot = new ArrayList<>(idle);
+        } finally {
+            lock.unlock();
+        }
+        for (Entry entry : snapshot) {
+            boolean healthy = entry.isReusable();
+            if (healthy) {
+                try {
+                    entry.browser.versionAsync(options.getHealthCheckTimeout()).get();
+                } catch (Exception e) {
+                    Logger.warn("Browser failed health check: {}", e.getMessage());
+                    healthy = false;
+                }
+            }
+            if (!healthy) {
+                lock.lock();
+                try {
+                    if (idle.remove(entry)) {
+                        retire(entry);
+                    }
+                } finally {
+                    lock.unlock();
+                }
+            }
+        }
+        warm();
+    }
+
+    private void onDisconnected(Entry entry) {
+        lock.lock();
+        try {
+            // 租出的浏览器在归还时回收
+            if (idle.remove(entry)) {
+                retire(entry);
+            }
+        } finally {
+            lock.unlock();
+        }
+        schedule(this::warm);
+    }
+
+    /**
+     * 把浏览器移出池并在后台关闭，需要持有锁
+     */
+    private void retire(Entry entry) {
+        if (entries.remove(entry.browser) == null) {
+            return;
+        }
+        total--;
+        available.signal();
+        Browser browser = entry.browser;
+        schedule(() -> closeQuietly(browser));
+    }
+
+    private void schedule(Runnable task) {
+        if (!closed) {
+            try {
+                maintainer.execute(task);
+            } catch (RejectedExecutionException e) {
+                // 池已关闭
+            }
+        }
+    }
+
+    private static void closeQuietly(Browser browser) {
+        try {
+            browser.close();
+        } catch (RuntimeException e) {
+            Logger.warn("Close browser error: {}", e.getMessage());
+        }
+    }
+
+    private class Entry {
+
+        private final Browser browser;
+
+        private final long created = System.currentTimeMillis();
+
+        /**
+         * 浏览器中累计创建的页面数量
+         */
+        private final AtomicInteger pages = new AtomicInteger();
+
+        private boolean leased;
+
+        private Entry(Browser browser) {
+            this.browser = browser;
+        }
+
+        private boolean isReusable() {
+            return browser.isConnected()
+                    && (options.getMaxPages() <= 0 || pages.get() < options.getMaxPages())
+                    && (options.getMaxAge() <= 0 || System.currentTimeMillis() - created < options.getMaxAge());
+        }
+
+    }
+
+}
@@ -25,6 +25,7 @@
  ********************************************************************************/
 package org.aoju.lancia.kernel.browser;
 
+import com.alibaba.fastjson.JSONObject;
 import org.aoju.bus.core.lang.Assert;
 import org.aoju.bus.core.toolkit.StringKit;
 import org.aoju.lancia.Browser;
@@ -32,10 +33,12 @@ import org.aoju.lancia.Page;
 import org.aoju.lancia.Variables;
 import org.aoju.lancia.kernel.page.Target;
 import org.aoju.lancia.option.ChromeOption;
+import org.aoju.lancia.worker.CDPSession;
 import org.aoju.lancia.worker.Connection;
 import org.aoju.lancia.worker.EventEmitter;
 import org.aoju.lancia.worker.EventHandler;
 
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -124,6 +127,63 @@ public class Context extends EventEmitter {
         this.connection.send("Browser.resetPermissions", params, true);
     }
 
+    /**
+     * 清除上下文中的cookie以及给定源的存储
+     * Storage.clearDataForOrigin没有上下文参数，需要通过上下文中页面的会话发送，
+     * 上下文中没有页面时临时创建一个空白目标
+     *
+     * @param origins 需要清除存储的源，形如https://example.com
+     */
+    public void clearStorage(Collection<String> origins) {
+        Map<String, Object> params = new HashMap<>();
+        if (this.isIncognito()) {
+            params.put("browserContextId", this.id);
+        }
+        this.connection.send("Storage.clearCookies", params, true);
+        if (origins.isEmpty()) {
+            return;
+        }
+        Target target = this.targets().stream().filter(item -> "page".equals(item.type())).findFirst().orElse(null);
+        String temporary = null;
+        if (target == null) {
+            params.put("url", "about:blank");
+            JSONObject result = this.connection.send("Target.createTarget", params, true);
+            temporary = result.getString(Variables.RECV_MESSAGE_TARFETINFO_TARGETID_PROPERTY);
+            target = this.browser.waitForTargetCreated(temporary, Variables.DEFAULT_TIMEOUT);
+            Assert.isTrue(target != null, "Failed to create target for clearing storage");
+        }
+        CDPSession session = target.createCDPSession();
+        try {
+            for (String origin : origins) {
+                Map<String, Object> clear = new HashMap<>();
+                clear.put("origin", origin);
+                clear.put("storageTypes", "all");
+                session.send("Storage.clearDataForOrigin", clear, true);
+            }
+        } finally {
+            session.detach();
+            if (temporary != null) {
+                Map<String, Object> close = new HashMap<>();
+                close.put("targetId", temporary);
+                this.connection.send("Target.closeTarget", close, true);
+            }
+        }
+    }
+
+    /**
+     * 取出网址的源，形如https://example.com，不是http(s)的网址返回null
+     *
+     * @param url 网址
+     * @return 源
+     */
+    static String originOf(String url) {
+        if (url == null || !(url.startsWith("http://") || url.startsWith("https://"))) {
+            return null;
+        }
+        int path = url.indexOf('/', url.indexOf("//") + 2);
+        return path < 0 ? url : url.substring(0, path);
+    }
+
     public void close() {
         Assert.isTrue(StringKit.isNotEmpty(this.id), "Non-incognito profiles cannot be closed!");
         this.browser.disposeContext(this.id);
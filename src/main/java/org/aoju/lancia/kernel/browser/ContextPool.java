@@ -0,0 +1,140 @@
+/*********************************************************************************
+ *                                                                               *
+ * The MIT License (MIT)                                                         *
+ *                                                                               *
+ * Copyright (c) 2015-2021 aoju.org and other contributors.                      *
+ *                                                                               *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy  *
+ * of this software and associated documentation files (the "Software"), to deal *
+ * in the Software without restriction, including without limitation the rights  *
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell     *
+ * copies of the Software, and to permit persons to whom the Software is         *
+ * furnished to do so, subject to the following conditions:                      *
+ *                                                                               *
+ * The above copyright notice and this permission notice shall be included in    *
+ * all copies or substantial portions of the Software.                           *
+ *                                                                               *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR    *
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,      *
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE   *
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER        *
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, *
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN     *
+ * THE SOFTWARE.                                                                 *
+ *                                                                               *
+ ********************************************************************************/
+package org.aoju.lancia.kernel.browser;
+
+import org.aoju.bus.logger.Logger;
+import org.aoju.lancia.Browser;
+import org.aoju.lancia.kernel.page.Target;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 隐身上下文池
+ * 预先创建隐身上下文，租借时直接取出；归还的上下文在后台线程中关闭全部页面，
+ * 清除cookie、访问过的源的存储以及权限设置后再次进入空闲队列，使用次数达到上限后销毁
+ *
+ * @author Kimi Liu
+ * @version 1.2.8
+ * @since JDK 1.8+
+ */
+public class ContextPool extends ResourcePool<Context> {
+
+    private final Browser browser;
+
+    /**
+     * 上下文的最多使用次数，0表示不限制
+     */
+    private final int maxUses;
+
+    private final Map<Context, Entry> entries = new ConcurrentHashMap<>();
+
+    public ContextPool(Browser browser, int minIdle, int maxSize, int maxUses) {
+        super("Context", minIdle, maxSize);
+        if (maxUses < 0) {
+            throw new IllegalArgumentException("Invalid max uses: " + maxUses);
+        }
+        this.browser = browser;
+        this.maxUses = maxUses;
+        this.warmUp();
+    }
+
+    @Override
+    protected Context create() {
+        Entry entry = new Entry(browser.createIncognitoBrowserContext());
+        entries.put(entry.context, entry);
+        return entry.context;
+    }
+
+    /**
+     * 先关闭页面，避免页面在清理之后再写入存储，然后清除cookie、存储与权限
+     */
+    @Override
+    protected boolean recycle(Context context) throws InterruptedException {
+        Entry entry = entries.get(context);
+        if (entry == null) {
+            return false;
+        }
+        entry.uses++;
+        if (maxUses > 0 && entry.uses >= maxUses) {
+            return false;
+        }
+        for (Target target : context.targets()) {
+            entry.record(target);
+            if ("page".equals(target.type())) {
+                Map<String, Object> params = new HashMap<>();
+                params.put("targetId", target.getTargetId());
+                context.getConnection().send("Target.closeTarget", params, true);
+                target.WaiforisClosedPromise();
+            }
+        }
+        context.clearStorage(entry.origins);
+        context.clearPermissionOverrides();
+        entry.origins.clear();
+        return true;
+    }
+
+    @Override
+    protected void dispose(Context context) {
+        entries.remove(context);
+        try {
+            if (context.browser().isConnected()) {
+                context.close();
+            }
+        } catch (RuntimeException e) {
+            Logger.warn("Dispose context error: {}", e.getMessage());
+        }
+    }
+
+    private static class Entry {
+
+        private final Context context;
+
+        /**
+         * 本次租借期间访问过的源，归还时清除它们的存储
+         */
+        private final Set<String> origins = ConcurrentHashMap.newKeySet();
+
+        private int uses;
+
+        private Entry(Context context) {
+            this.context = context;
+            context.onTargetcreated(this::record);
+            context.onTargetchanged(this::record);
+        }
+
+        private void record(Target target) {
+            String origin = Context.originOf(target.url());
+            if (origin != null) {
+                origins.add(origin);
+            }
+        }
+
+    }
+
+}
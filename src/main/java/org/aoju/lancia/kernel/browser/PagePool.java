@@ -0,0 +1,278 @@
+/*********************************************************************************
+ *                                                                               *
+ * The MIT License (MIT)                                                         *
+ *                                                                               *
+ * Copyright (c) 2015-2021 aoju.org and other contributors.                      *
+ *                                                                               *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy  *
+ * of this software and associated documentation files (the "Software"), to deal *
+ * in the Software without restriction, including without limitation the rights  *
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell     *
+ * copies of the Software, and to permit persons to whom the Software is         *
+ * furnished to do so, subject to the following conditions:                      *
+ *                                                                               *
+ * The above copyright notice and this permission notice shall be included in    *
+ * all copies or substantial portions of the Software.                           *
+ *                                                                               *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR    *
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,      *
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE   *
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER        *
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, *
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN     *
+ * THE SOFTWARE.                                                                 *
+ *                                                                               *
+ ********************************************************************************/
+package org.aoju.lancia.kernel.browser;
+
+import org.aoju.bus.logger.Logger;
+import org.aoju.lancia.Browser;
+import org.aoju.lancia.Page;
+import org.aoju.lancia.kernel.page.Target;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 页面池
+ * 预先创建并初始化好页面，租借时直接取出空闲页面；归还的页面各自在后台线程中重置后再次进入空闲队列，
+ * 重置失败或已关闭的页面会被丢弃，由单独的预热线程补足
+ * 浏览器开启了准入控制时，租借到归还算一个任务，租借时占用名额，空闲的页面不占用
+ * 隔离的页面池为每个页面创建单独的隐身上下文，归还时清除该上下文的全部cookie、访问过的源的存储以及权限设置，
+ * 一次租借设置的cookie不会留给之后的租借，也不会影响其他页面
+ *
+ * @author Kimi Liu
+ * @version 1.2.8
+ * @since JDK 1.8+
+ */
+public class PagePool extends ResourcePool<Page> {
+
+    private final Browser browser;
+
+    /**
+     * 页面所在的上下文，隔离的页面池为null
+     */
+    private final Context context;
+
+    /**
+     * 隔离的页面池中每个页面独占的上下文
+     */
+    private final Map<Page, Sandbox> sandboxes = new ConcurrentHashMap<>();
+
+    /**
+     * 已租出的页面在租借时占用的准入名额，没有准入控制时不记录
+     */
+    private final Map<Page, Admission> admissions = new ConcurrentHashMap<>();
+
+    /**
+     * 归还时是否清除当前源的存储
+     */
+    private volatile boolean clearStorage;
+
+    public PagePool(Browser browser, int minIdle, int maxSize) {
+        this(browser.defaultBrowserContext(), minIdle, maxSize);
+    }
+
+    public PagePool(Context context, int minIdle, int maxSize) {
+        this(context.getBrowser(), context, minIdle, maxSize);
+    }
+
+    /**
+     * @param browser  浏览器
+     * @param minIdle  保持的最少空闲页面数量
+     * @param maxSize  页面的最大数量
+     * @param isolated 是否为每个页面创建单独的隐身上下文，为false时页面创建在默认上下文中
+     */
+    public PagePool(Browser browser, int minIdle, int maxSize, boolean isolated) {
+        this(browser, isolated ? null : browser.defaultBrowserContext(), minIdle, maxSize);
+    }
+
+    private PagePool(Browser browser, Context context, int minIdle, int maxSize) {
+        super("Page", minIdle, maxSize);
+        this.browser = browser;
+        this.context = context;
+        this.warmUp();
+    }
+
+    /**
+     * 租借一个页面，没有空闲页面并且未达上限时在当前线程创建新的页面
+     *
+     * @param timeout 最长等待时间(毫秒)，0表示一直等待
+     * @return 页面
+     */
+    @Override
+    public Page lease(long timeout) {
+        AdmissionLimiter limiter = browser.getAdmissionLimiter();
+        if (limiter == null) {
+            return super.lease(timeout);
+        }
+        Admission admission = new Admission(limiter, limiter.acquire());
+        Page page;
+        try {
+            page = super.lease(timeout);
+        } catch (RuntimeException e) {
+            limiter.cancel();
+            throw e;
+        }
+        admissions.put(page, admission);
+        // 与close并发时名额可能没有被close看到
+        if (isClosed() && admissions.remove(page) != null) {
+            limiter.cancel();
+        }
+        return page;
+    }
+
+    /**
+     * 归还租借的页面，页面在后台重置后才能再次被租借
+     *
+     * @param page 页面
+     */
+    @Override
+    public void release(Page page) {
+        Admission admission = admissions.remove(page);
+        super.release(page);
+        if (admission != null) {
+            admission.limiter.release(admission.start);
+        }
+    }
+
+    /**
+     * 关闭页面池以及池中所有的页面，包括尚未归还的，之后的归还会被忽略
+     */
+    @Override
+    public void close() {
+        super.close();
+        for (Page page : admissions.keySet()) {
+            Admission admission = admissions.remove(page);
+            if (admission != null) {
+                admission.limiter.cancel();
+            }
+        }
+    }
+
+    public boolean isIsolated() {
+        return context == null;
+    }
+
+    public boolean getClearStorage() {
+        return clearStorage;
+    }
+
+    /**
+     * 归还时是否清除当前源的存储，见{@link Page#reset(boolean)}；隔离的页面池总是清除整个上下文
+     *
+     * @param clearStorage 是否清除
+     */
+    public void setClearStorage(boolean clearStorage) {
+        this.clearStorage = clearStorage;
+    }
+
+    /**
+     * 页面不经过准入控制，名额在租借时占用
+     */
+    @Override
+    protected Page create() {
+        if (context != null) {
+            return browser.createPageInContext(context.getId(), false);
+        }
+        Sandbox sandbox = new Sandbox(browser.createIncognitoBrowserContext());
+        try {
+            Page page = browser.createPageInContext(sandbox.context.getId(), false);
+            sandboxes.put(page, sandbox);
+            return page;
+        } catch (RuntimeException e) {
+            sandbox.close();
+            throw e;
+        }
+    }
+
+    /**
+     * 先把页面导航到about:blank，避免清理之后再写入存储，隔离的页面再清除整个上下文的cookie、存储与权限
+     */
+    @Override
+    protected boolean recycle(Page page) throws InterruptedException {
+        Sandbox sandbox = sandboxes.get(page);
+        if (sandbox == null) {
+            page.reset(clearStorage);
+            return true;
+        }
+        page.reset(false);
+        sandbox.context.clearStorage(sandbox.origins);
+        sandbox.context.clearPermissionOverrides();
+        sandbox.origins.clear();
+        return true;
+    }
+
+    @Override
+    protected boolean isValid(Page page) {
+        return !page.isClosed();
+    }
+
+    @Override
+    protected void dispose(Page page) {
+        try {
+            if (!page.isClosed()) {
+                page.close();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (RuntimeException e) {
+            Logger.warn("Close page error: {}", e.getMessage());
+        }
+        Sandbox sandbox = sandboxes.remove(page);
+        if (sandbox != null) {
+            sandbox.close();
+        }
+    }
+
+    /**
+     * 隔离的页面独占的隐身上下文，以及页面访问过的源
+     */
+    private static class Sandbox {
+
+        private final Context context;
+
+        private final Set<String> origins = ConcurrentHashMap.newKeySet();
+
+        Sandbox(Context context) {
+            this.context = context;
+            context.onTargetchanged(this::record);
+        }
+
+        private void record(Target target) {
+            String origin = Context.originOf(target.url());
+            if (origin != null) {
+                origins.add(origin);
+            }
+        }
+
+        private void close() {
+            try {
+                if (context.browser().isConnected()) {
+                    context.close();
+                }
+            } catch (RuntimeException e) {
+                Logger.warn("Dispose context error: {}", e.getMessage());
+            }
+        }
+
+    }
+
+    /**
+     * 租借占用的准入名额
+     */
+    private static class Admission {
+
+        private final AdmissionLimiter limiter;
+
+        private final long start;
+
+        Admission(AdmissionLimiter limiter, long start) {
+            this.limiter = limiter;
+            this.start = start;
+        }
+
+    }
+
+}
@@ -0,0 +1,487 @@
+/*********************************************************************************
+ *                                                                               *
+ * The MIT License (MIT)                                                         *
+ *                                                                               *
+ * Copyright (c) 2015-2021 aoju.org and other contributors.                      *
+ *                                                                               *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy  *
+ * of this software and associated documentation files (the "Software"), to deal *
+ * in the Software without restriction, including without limitation the rights  *
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell     *
+ * copies of the Software, and to permit persons to whom the Software is         *
+ * furnished to do so, subject to the following conditions:                      *
+ *                                                                               *
+ * The above copyright notice and this permission notice shall be included in    *
+ * all copies or substantial portions of the Software.                           *
+ *                                                                               *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR    *
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,      *
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE   *
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER        *
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, *
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN     *
+ * THE SOFTWARE.                                                                 *
+ *                                                                               *
+ ********************************************************************************/
+package org.aoju.lancia.kernel.browser;
+
+import org.aoju.bus.core.lang.exception.InstrumentException;
+import org.aoju.bus.logger.Logger;
+import org.aoju.lancia.Builder;
+import org.aoju.lancia.Page;
+import org.aoju.lancia.Variables;
+import org.aoju.lancia.worker.MetricsRegistry;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+/**
+ * 渲染任务调度
+ * 任务按优先级分类，高优先级有任务时低优先级不会开始；同一优先级内各租户按累计执行时间公平分享，
+ * 任务开始时先按平均执行时间计入租户，结束后按实际执行时间修正，排空的租户保留累计值直到落后于该优先级的虚拟时间；
+ * 租户内按截止时间从早到晚执行(EDF)；预计无法在截止时间前开始的任务提交时直接拒绝，
+ * 排队到截止时间仍未开始的任务也会被拒绝，拒绝的任务以{@link RejectedExecutionException}结束
+ * 每个工作线程从页面池租借页面执行任务，工作线程数不应超过页面池的上限
+ *
+ * @author Kimi Liu
+ * @version 1.2.8
+ * @since JDK 1.8+
+ */
+public class RenderScheduler implements AutoCloseable {
+
+    /**
+     * 执行时间的平滑窗口
+     */
+    private static final int WINDOW = 20;
+
+    private final PagePool pool;
+
+    private final int workers;
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private final Condition ready = lock.newCondition();
+
+    /**
+     * 各优先级中有排队任务、执行中任务或者累计执行时间领先于虚拟时间的租户
+     */
+    private final Map<Variables.JobPriority, Map<String, Tenant>> classes = new EnumMap<>(Variables.JobPriority.class);
+
+    /**
+     * 各优先级的虚拟时间，即最近开始的任务所属租户开始前的累计执行时间，
+     * 重新有任务的租户从不少于虚拟时间开始，不能用空闲期间攒下的份额抢占
+     */
+    private final double[] virtualTime = new double[Variables.JobPriority.values().length];
+
+    /**
+     * 各优先级任务的平均执行时间(纳秒)，用于估计开始时间
+     */
+    private final double[] meanRun = new double[Variables.JobPriority.values().length];
+
+    private final int[] queued = new int[Variables.JobPriority.values().length];
+
+    private final ExecutorService executor;
+
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "render-deadline");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final AtomicLong sequence = new AtomicLong();
+
+    private final MetricsRegistry metrics = Builder.metricsRegistry();
+
+    private int running;
+
+    private volatile boolean closed;
+
+    /**
+     * @param pool    页面池
+     * @param workers 同时执行的任务数
+     */
+    public RenderScheduler(PagePool pool, int workers) {
+        if (workers <= 0) {
+            throw new IllegalArgumentException("Invalid workers: " + workers);
+        }
+        this.pool = pool;
+        this.workers = workers;
+        for (Variables.JobPriority priority : Variables.JobPriority.values()) {
+            this.classes.put(priority, new LinkedHashMap<>());
+        }
+        AtomicInteger index = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(workers, r -> {
+            Thread thread = new Thread(r, "render-worker-" + index.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        for (int i = 0; i < workers; i++) {
+            this.executor.execute(this::work);
+        }
+    }
+
+    /**
+     * 提交没有截止时间的任务
+     *
+     * @param tenant   租户
+     * @param priority 优先级
+     * @param task     任务，参数为租借的页面，任务结束后页面归还页面池
+     * @param <T>      结果类型
+     * @return 任务结果
+     */
+    public <T> CompletableFuture<T> submit(String tenant, Variables.JobPriority priority, Function<Page, T> task) {
+        return this.submit(tenant, priority, 0, task);
+    }
+
+    /**
+     * 提交任务
+     *
+     * @param tenant   租户
+     * @param priority 优先级
+     * @param deadline 截止时间，距现在的毫秒数，0表示没有截止时间
+     * @param task     任务，参数为租借的页面，任务结束后页面归还页面池
+     * @param <T>      结果类型
+     * @return 任务结果，无法在截止时间前开始时以{@link RejectedExecutionException}结束
+     */
+    public <T> CompletableFuture<T> submit(String tenant, Variables.JobPriority priority, long deadline, Function<Page, T> task) {
+        long now = System.nanoTime();
+        Job<T> job = new Job<>(tenant, priority, deadline > 0 ? now + TimeUnit.MILLISECONDS.toNanos(deadline) : Long.MAX_VALUE,
+                now, sequence.incrementAndGet(), task);
+        lock.lock();
+        try {
+            if (closed) {
+                throw new InstrumentException("Render scheduler is closed");
+            }
+            if (deadline > 0 && now + this.estimateWait(priority) > job.deadline) {
+                this.reject(job);
+                return job.future;
+            }
+            Map<String, Tenant> tenants = classes.get(priority);
+            Tenant entry = tenants.get(tenant);
+            if (entry == null) {
+                entry = new Tenant(tenant, virtualTime[priority.ordinal()]);
+                tenants.put(tenant, entry);
+            } else if (entry.jobs.isEmpty()) {
+                entry.served = Math.max(entry.served, virtualTime[priority.ordinal()]);
+            }
+            entry.jobs.add(job);
+            queued[priority.ordinal()]++;
+            ready.signal();
+        } finally {
+            lock.unlock();
+        }
+        if (deadline > 0) {
+            job.expiry = timer.schedule(() -> this.expire(job), deadline, TimeUnit.MILLISECONDS);
+        }
+        return job.future;
+    }
+
+    /**
+     * 不再接收任务，排队的任务以异常结束，执行中的任务继续执行到结束
+     */
+    @Override
+    public void close() {
+        List<Job<?>> pending = new ArrayList<>();
+        lock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            for (Map<String, Tenant> tenants : classes.values()) {
+                for (Tenant tenant : tenants.values()) {
+                    pending.addAll(tenant.jobs);
+                }
+                tenants.clear();
+            }
+            Arrays.fill(queued, 0);
+            ready.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        for (Job<?> job : pending) {
+            job.future.completeExceptionally(new InstrumentException("Render scheduler is closed"));
+        }
+        executor.shutdown();
+        timer.shutdownNow();
+    }
+
+    /**
+     * @return 排队的任务数
+     */
+    public int getQueued() {
+        lock.lock();
+        try {
+            int total = 0;
+            for (int count : queued) {
+                total += count;
+            }
+            return total;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @param priority 优先级
+     * @return 该优先级排队的任务数
+     */
+    public int getQueued(Variables.JobPriority priority) {
+        lock.lock();
+        try {
+            return queued[priority.ordinal()];
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return 执行中的任务数
+     */
+    public int getRunning() {
+        lock.lock();
+        try {
+            return running;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 估计新任务的等待时间：没有空闲的工作线程时，同级及更高优先级的排队任务按平均执行时间分摊到各工作线程
+     */
+    private long estimateWait(Variables.JobPriority priority) {
+        int ahead = 0;
+        double work = 0;
+        for (int i = 0; i <= priority.ordinal(); i++) {
+            ahead += queued[i];
+            work += queued[i] * meanRun[i];
+        }
+        if (running + ahead < workers) {
+            return 0;
+        }
+        // 正在执行的任务平均还需要一半的执行时间
+        work += running * meanRun[priority.ordinal()] / 2;
+        return (long) (work / workers);
+    }
+
+    private void work() {
+        while (true) {
+            Job<?> job = this.take();
+            if (job == null) {
+                return;
+            }
+            this.run(job);
+        }
+    }
+
+    /**
+     * 取出下一个任务：最高的非空优先级中累计执行时间最少的租户，租户内截止时间最早的任务
+     * 开始时按该优先级的平均执行时间计入租户，积压很深的租户不能在任务结束前占满所有空闲的工作线程
+     */
+    private Job<?> take() {
+        lock.lock();
+        try {
+            scan:
+            while (true) {
+                if (closed) {
+                    return null;
+                }
+                for (Map.Entry<Variables.JobPriority, Map<String, Tenant>> entry : classes.entrySet()) {
+                    Tenant next = null;
+                    for (Tenant tenant : entry.getValue().values()) {
+                        if (tenant.jobs.isEmpty()) {
+                            continue;
+                        }
+                        if (next == null || tenant.served < next.served
+                                || tenant.served == next.served && tenant.jobs.peek().compareTo(next.jobs.peek()) < 0) {
+                            next = tenant;
+                        }
+                    }
+                    if (next == null) {
+                        continue;
+                    }
+                    int index = entry.getKey().ordinal();
+                    Job<?> job = next.jobs.poll();
+                    queued[index]--;
+                    if (job.deadline != Long.MAX_VALUE && System.nanoTime() >= job.deadline) {
+                        this.prune(entry.getKey());
+                        this.reject(job);
+                        // 过期的作业不占用调度，从最高优先级重新挑选
+                        continue scan;
+                    }
+                    virtualTime[index] = Math.max(virtualTime[index], next.served);
+                    // 还没有平均执行时间时计1纳秒，同样能让积压的租户轮流开始
+                    job.charged = Math.max(1, meanRun[index]);
+                    next.served += job.charged;
+                    next.running++;
+                    running++;
+                    return job;
+                }
+                ready.await();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private <T> void run(Job<T> job) {
+        if (job.expiry != null) {
+            job.expiry.cancel(false);
+        }
+        long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            Page page = pool.lease();
+            try {
+                job.future.complete(job.task.apply(page));
+                failed = false;
+            } finally {
+                pool.release(page);
+            }
+        } catch (Throwable e) {
+            job.future.completeExceptionally(e);
+        } finally {
+            long end = System.nanoTime();
+            lock.lock();
+            try {
+                running--;
+                int index = job.priority.ordinal();
+                meanRun[index] = meanRun[index] == 0 ? end - start : meanRun[index] + (end - start - meanRun[index]) / WINDOW;
+                // 执行中的租户不会被移除，按实际执行时间修正开始时的估计
+                Tenant tenant = classes.get(job.priority).get(job.tenant);
+                if (tenant != null) {
+                    tenant.served += end - start - job.charged;
+                    tenant.running--;
+                    this.prune(job.priority);
+                }
+            } finally {
+                lock.unlock();
+            }
+            metrics.jobCompleted(job.priority.name(), start - job.submitted, end - start, failed);
+        }
+    }
+
+    /**
+     * 到截止时间仍在排队的任务被拒绝
+     */
+    private void expire(Job<?> job) {
+        lock.lock();
+        try {
+            Map<String, Tenant> tenants = classes.get(job.priority);
+            Tenant tenant = tenants.get(job.tenant);
+            if (tenant == null || !tenant.jobs.remove(job)) {
+                return;
+            }
+            queued[job.priority.ordinal()]--;
+            this.prune(job.priority);
+        } finally {
+            lock.unlock();
+        }
+        this.reject(job);
+    }
+
+    /**
+     * 移除没有任务、并且累计执行时间不领先于虚拟时间的租户，它们重新加入时同样从虚拟时间开始
+     */
+    private void prune(Variables.JobPriority priority) {
+        double now = virtualTime[priority.ordinal()];
+        classes.get(priority).values().removeIf(tenant -> tenant.jobs.isEmpty() && tenant.running == 0 && tenant.served <= now);
+    }
+
+    private void reject(Job<?> job) {
+        metrics.jobRejected(job.priority.name());
+        Logger.debug("Reject {} job of tenant {}: cannot start before deadline", job.priority, job.tenant);
+        job.future.completeExceptionally(new RejectedExecutionException("Job of tenant " + job.tenant + " cannot start before its deadline"));
+    }
+
+    /**
+     * 租户在一个优先级中的排队任务
+     */
+    private static class Tenant {
+
+        private final String name;
+
+        /**
+         * 按截止时间排序的任务
+         */
+        private final PriorityQueue<Job<?>> jobs = new PriorityQueue<>();
+
+        /**
+         * 累计执行时间(纳秒)，包括执行中任务的估计值
+         */
+        private double served;
+
+        /**
+         * 执行中的任务数
+         */
+        private int running;
+
+        Tenant(String name, double served) {
+            this.name = name;
+            this.served = served;
+        }
+
+    }
+
+    private static class Job<T> implements Comparable<Job<?>> {
+
+        private final String tenant;
+
+        private final Variables.JobPriority priority;
+
+        private final long deadline;
+
+        private final long submitted;
+
+        private final long sequence;
+
+        private final Function<Page, T> task;
+
+        private final CompletableFuture<T> future = new CompletableFuture<>();
+
+        private volatile ScheduledFuture<?> expiry;
+
+        /**
+         * 开始时计入租户的执行时间(纳秒)
+         */
+        private double charged;
+
+        Job(String tenant, Variables.JobPriority priority, long deadline, long submitted, long sequence, Function<Page, T> task) {
+            this.tenant = tenant;
+            this.priority = priority;
+            this.deadline = deadline;
+            this.submitted = submitted;
+            this.sequence = sequence;
+            this.task = task;
+        }
+
+        @Override
+        public int compareTo(Job<?> other) {
+            int result = Long.compare(deadline, other.deadline);
+            return result != 0 ? result : Long.compare(sequence, other.sequence);
+        }
+
+    }
+
+}
@@ -0,0 +1,391 @@
+/*********************************************************************************
+ *                                                                               *
+ * The MIT License (MIT)                                                         *
+ *                                                                               *
+ * Copyright (c) 2015-2021 aoju.org and other contributors.                      *
+ *                                                                               *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy  *
+ * of this software and associated documentation files (the "Software"), to deal *
+ * in the Software without restriction, including without limitation the rights  *
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell     *
+ * copies of the Software, and to permit persons to whom the Software is         *
+ * furnished to do so, subject to the following conditions:                      *
+ *                                                                               *
+ * The above copyright notice and this permission notice shall be included in    *
+ * all copies or substantial portions of the Software.                           *
+ *                                                                               *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR    *
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,      *
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE   *
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER        *
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, *
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN     *
+ * THE SOFTWARE.                                                                 *
+ *                                                                               *
+ ********************************************************************************/
+package org.aoju.lancia.kernel.browser;
+
+import org.aoju.bus.core.lang.exception.InstrumentException;
+import org.aoju.bus.logger.Logger;
+import org.aoju.lancia.Browser;
+import org.aoju.lancia.Builder;
+import org.aoju.lancia.Launcher;
+import org.aoju.lancia.launch.ChromeLauncher;
+import org.aoju.lancia.option.LaunchOption;
+import org.aoju.lancia.worker.MetricsRegistry;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+/**
+ * 自动恢复的浏览器
+ * 浏览器进程退出或连接断开后，用同样的启动参数重新启动浏览器，重建登记过的隐身上下文，
+ * 崩溃时进行中的幂等任务会在新的浏览器上重试
+ * 注意 通过{@link #browser()}拿到的浏览器在重启后失效，任务应当通过{@link #execute(Function, boolean)}执行，
+ * 关闭时应调用{@link #close()}，直接关闭内部的浏览器会被当作崩溃处理
+ *
+ * @author Kimi Liu
+ * @version 1.2.8
+ * @since JDK 1.8+
+ */
+public class ResilientBrowser implements AutoCloseable {
+
+    /**
+     * 任务失败时等待崩溃被发现的最长毫秒数，浏览器崩溃后命令可能先于断开通知失败
+     */
+    private static final long CRASH_DETECT_TIMEOUT = 1000;
+
+    private final Launcher launcher;
+
+    private final LaunchOption options;
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    /**
+     * 浏览器状态变化(崩溃或重启完成)时通知等待者
+     */
+    private final Condition restarted = lock.newCondition();
+
+    /**
+     * 登记的隐身上下文，重启后按名称重建
+     */
+    private final Map<String, Context> contexts = new LinkedHashMap<>();
+
+    private final ExecutorService restarter = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "browser-restarter");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final AtomicLong crashes = new AtomicLong();
+
+    private final AtomicLong restarts = new AtomicLong();
+
+    private final MetricsRegistry metrics = Builder.metricsRegistry();
+
+    private volatile Browser browser;
+
+    /**
+     * 浏览器的代数，每次重启加一，用于忽略旧浏览器迟到的崩溃通知
+     */
+    private long generation;
+
+    private boolean restarting;
+
+    private volatile boolean closed;
+
+    /**
+     * 一次崩溃后连续尝试启动的次数
+     */
+    private volatile int maxRestarts = 3;
+
+    /**
+     * 幂等任务最多重试的次数
+     */
+    private volatile int maxRetries = 1;
+
+    public ResilientBrowser(LaunchOption options) throws IOException {
+        this(new ChromeLauncher(), options);
+    }
+
+    public ResilientBrowser(Launcher launcher, LaunchOption options) throws IOException {
+        this.launcher = launcher;
+        this.options = options;
+        this.browser = launcher.launch(options);
+        this.watch(this.browser, 0);
+    }
+
+    /**
+     * @return 当前的浏览器，重启后失效
+     */
+    public Browser browser() {
+        return this.browser;
+    }
+
+    /**
+     * 获取登记的隐身上下文，第一次使用时创建，浏览器重启后重建
+     * 重建的上下文是新的对象，不要跨任务保存
+     *
+     * @param name 上下文名称
+     * @return 隐身上下文
+     */
+    public Context context(String name) {
+        Browser current = this.awaitBrowser();
+        lock.lock();
+        try {
+            Context context = contexts.get(name);
+            if (context == null || context.browser() != current) {
+                context = current.createIncognitoBrowserContext();
+                contexts.put(name, context);
+            }
+            return context;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 注销并销毁登记的隐身上下文
+     *
+     * @param name 上下文名称
+     */
+    public void removeContext(String name) {
+        Context context;
+        lock.lock();
+        try {
+            context = contexts.remove(name);
+        } finally {
+            lock.unlock();
+        }
+        if (context != null && context.browser().isConnected()) {
+            context.close();
+        }
+    }
+
+    /**
+     * 执行一个非幂等的任务，浏览器崩溃时不重试
+     *
+     * @param job 任务
+     * @param <T> 结果类型
+     * @return 任务结果
+     */
+    public <T> T execute(Function<Browser, T> job) {
+        return this.execute(job, false);
+    }
+
+    /**
+     * 执行一个任务，浏览器正在重启时等待重启完成
+     *
+     * @param job        任务
+     * @param idempotent 是否幂等，幂等的任务在浏览器崩溃导致失败时会在新的浏览器上重试
+     * @param <T>        结果类型
+     * @return 任务结果
+     */
+    public <T> T execute(Function<Browser, T> job, boolean idempotent) {
+        for (int attempt = 0; ; attempt++) {
+            Browser current = this.awaitBrowser();
+            try {
+                return job.apply(current);
+            } catch (RuntimeException e) {
+                if (closed || !idempotent || attempt >= maxRetries || !this.crashedDuring(current)) {
+                    throw e;
+                }
+                metrics.jobRetried();
+                Logger.warn("Browser crashed during job, retry {}: {}", attempt + 1, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * 关闭浏览器，不再重启
+     */
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            contexts.clear();
+            restarted.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        restarter.shutdownNow();
+        closeQuietly(this.browser);
+    }
+
+    public long getCrashes() {
+        return crashes.get();
+    }
+
+    public long getRestarts() {
+        return restarts.get();
+    }
+
+    public int getMaxRestarts() {
+        return maxRestarts;
+    }
+
+    public void setMaxRestarts(int maxRestarts) {
+        this.maxRestarts = maxRestarts;
+    }
+
+    public int getMaxRetries() {
+        return maxRetries;
+    }
+
+    public void setMaxRetries(int maxRetries) {
+        this.maxRetries = maxRetries;
+    }
+
+    /**
+     * 返回可用的浏览器，浏览器已经断开时触发重启并等待
+     */
+    private Browser awaitBrowser() {
+        long nanos = TimeUnit.MILLISECONDS.toNanos(Math.max(options.getTimeout(), 1) * (long) Math.max(maxRestarts, 1));
+        lock.lock();
+        try {
+            while (true) {
+                if (closed) {
+                    throw new InstrumentException("Browser is closed");
+                }
+                if (!restarting) {
+                    if (browser.isConnected()) {
+                        return browser;
+                    }
+                    crashed(generation);
+                }
+                if (nanos <= 0) {
+                    throw new InstrumentException("Wait browser restart timeout");
+                }
+                nanos = restarted.awaitNanos(nanos);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InstrumentException(e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 判断任务所用的浏览器是否已经崩溃，每次重启都会换成新的浏览器实例，与代数一一对应
+     * 浏览器仍然连接时稍等崩溃通知，超时仍未断开说明是任务本身失败
+     */
+    private boolean crashedDuring(Browser current) {
+        long nanos = TimeUnit.MILLISECONDS.toNanos(CRASH_DETECT_TIMEOUT);
+        lock.lock();
+        try {
+            while (current == this.browser && !restarting && current.isConnected()) {
+                if (closed || nanos <= 0) {
+                    return false;
+                }
+                nanos = restarted.awaitNanos(nanos);
+            }
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 监听浏览器断开和进程退出
+     */
+    private void watch(Browser browser, long generation) {
+        browser.onDisconnected(event -> crashed(generation));
+        Process process = browser.process();
+        if (process != null) {
+            Thread thread = new Thread(() -> {
+                try {
+                    process.waitFor();
+                    crashed(generation);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }, "browser-process-watcher");
+            thread.setDaemon(true);
+            thread.start();
+        }
+    }
+
+    private void crashed(long generation) {
+        lock.lock();
+        try {
+            if (closed || restarting || generation != this.generation) {
+                return;
+            }
+            restarting = true;
+            // 唤醒等待崩溃通知的任务
+            restarted.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        crashes.incrementAndGet();
+        metrics.browserCrashed();
+        Logger.warn("Browser crashed or disconnected, restarting");
+        restarter.execute(this::restart);
+    }
+
+    private void restart() {
+        closeQuietly(this.browser);
+        long start = System.nanoTime();
+        for (int attempt = 1; attempt <= Math.max(maxRestarts, 1) && !closed; attempt++) {
+            try {
+                Browser browser = launcher.launch(options);
+                lock.lock();
+                try {
+                    if (closed) {
+                        closeQuietly(browser);
+                        return;
+                    }
+                    this.browser = browser;
+                    this.generation++;
+                    for (Map.Entry<String, Context> entry : contexts.entrySet()) {
+                        entry.setValue(browser.createIncognitoBrowserContext());
+                    }
+                    this.watch(browser, this.generation);
+                    restarting = false;
+                    restarted.signalAll();
+                } finally {
+                    lock.unlock();
+                }
+                restarts.incrementAndGet();
+                metrics.browserRestarted(System.nanoTime() - start, true);
+                return;
+            } catch (IOException | RuntimeException e) {
+                Logger.error("Restart browser attempt " + attempt + " error", e);
+            }
+        }
+        metrics.browserRestarted(System.nanoTime() - start, false);
+        lock.lock();
+        try {
+            // 下一次使用时再尝试重启
+            restarting = false;
+            restarted.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static void closeQuietly(Browser browser) {
+        try {
+            browser.close();
+        } catch (RuntimeException e) {
+            Logger.warn("Close browser error: {}", e.getMessage());
+        }
+    }
+
+}
@@ -0,0 +1,430 @@
+/*********************************************************************************
+ *                                                                               *
+ * The MIT License (MIT)                                                         *
+ *                                                                               *
+ * Copyright (c) 2015-2021 aoju.org and other contributors.                      *
+ *                                                                               *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy  *
+ * of this software and associated documentation files (the "Software"), to deal *
+ * in the Software without restriction, including without limitation the rights  *
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell     *
+ * copies of the Software, and to permit persons to whom the Software is         *
+ * furnished to do so, subject to the following conditions:                      *
+ *                                                                               *
+ * The above copyright notice and this permission notice shall be included in    *
+ * all copies or substantial portions of the Software.                           *
+ *                                                                               *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR    *
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,      *
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE   *
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER        *
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, *
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN     *
+ * THE SOFTWARE.                                                                 *
+ *                                                                               *
+ ********************************************************************************/
+package org.aoju.lancia.kernel.browser;
+
+import org.aoju.bus.core.lang.exception.InstrumentException;
+import org.aoju.bus.logger.Logger;
+import org.aoju.lancia.Variables;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 资源池的公共实现，{@link PagePool}与{@link ContextPool}共用租借、预热、回收与丢弃的逻辑
+ * 预先创建资源，租借时直接取出空闲资源；归还的资源各自在后台线程中回收后再次进入空闲队列，
+ * 回收失败或不能再用的资源会被销毁，由单独的预热线程补足
+ * 子类实现创建、回收与销毁，并在构造完成后调用{@link #warmUp()}
+ *
+ * @param <T> 资源类型
+ * @author Kimi Liu
+ * @version 1.2.8
+ * @since JDK 1.8+
+ */
+public abstract class ResourcePool<T> implements AutoCloseable {
+
+    /**
+     * 资源名称，用于线程名和错误信息，例如Page
+     */
+    private final String name;
+
+    /**
+     * 保持的最少空闲资源数量
+     */
+    private final int minIdle;
+
+    /**
+     * 资源的最大数量，包括空闲、已租出和正在回收的
+     */
+    private final int maxSize;
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private final Condition available = lock.newCondition();
+
+    private final Deque<T> idle = new ArrayDeque<>();
+
+    private final Set<T> leased = Collections.newSetFromMap(new IdentityHashMap<>());
+
+    /**
+     * 预热线程，只负责补足空闲资源，不排在回收后面
+     */
+    private final ExecutorService warmer;
+
+    /**
+     * 回收归还的资源，每个资源的回收各自执行，最多{@link #maxSize}个同时进行，空闲的线程会回收
+     */
+    private final ThreadPoolExecutor recycler;
+
+    /**
+     * 租借资源的最长等待时间(毫秒)，0表示一直等待
+     */
+    private volatile long leaseTimeout = Variables.DEFAULT_TIMEOUT;
+
+    /**
+     * 资源总数，包括正在创建的
+     */
+    private int total;
+
+    private volatile boolean closed;
+
+    /**
+     * @param name    资源名称，例如Page
+     * @param minIdle 保持的最少空闲资源数量
+     * @param maxSize 资源的最大数量
+     */
+    protected ResourcePool(String name, int minIdle, int maxSize) {
+        if (maxSize <= 0 || minIdle < 0 || minIdle > maxSize) {
+            throw new IllegalArgumentException("Invalid pool size: min idle " + minIdle + ", max " + maxSize);
+        }
+        this.name = name;
+        this.minIdle = minIdle;
+        this.maxSize = maxSize;
+        String prefix = name.toLowerCase() + "-pool";
+        this.warmer = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, prefix + "-warmer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        AtomicInteger index = new AtomicInteger();
+        this.recycler = new ThreadPoolExecutor(maxSize, maxSize, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), r -> {
+            Thread thread = new Thread(r, prefix + "-recycle-" + index.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.recycler.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * 创建一个资源，在租借线程或预热线程中调用
+     *
+     * @return 资源
+     */
+    protected abstract T create();
+
+    /**
+     * 回收归还的资源，在后台线程中调用
+     *
+     * @param resource 资源
+     * @return false表示资源不能再用，需要销毁
+     * @throws InterruptedException 回收时被中断
+     */
+    protected abstract boolean recycle(T resource) throws InterruptedException;
+
+    /**
+     * 销毁资源，不抛出异常
+     *
+     * @param resource 资源
+     */
+    protected abstract void dispose(T resource);
+
+    /**
+     * 空闲的资源是否还能租出，不能租出的资源已经失效，直接丢弃
+     *
+     * @param resource 资源
+     * @return 是否可用
+     */
+    protected boolean isValid(T resource) {
+        return true;
+    }
+
+    /**
+     * 开始预热，子类在构造完成后调用，避免预热线程看到未初始化的字段
+     */
+    protected final void warmUp() {
+        this.schedule(warmer, this::warm);
+    }
+
+    /**
+     * 租借一个资源，最长等待{@link #getLeaseTimeout()}
+     *
+     * @return 资源
+     */
+    public T lease() {
+        return this.lease(this.leaseTimeout);
+    }
+
+    /**
+     * 租借一个资源，没有空闲资源并且未达上限时在当前线程创建
+     *
+     * @param timeout 最长等待时间(毫秒)，0表示一直等待
+     * @return 资源
+     */
+    public T lease(long timeout) {
+        long nanos = TimeUnit.MILLISECONDS.toNanos(timeout);
+        lock.lock();
+        try {
+            while (true) {
+                if (closed) {
+                    throw new InstrumentException(name + " pool is closed");
+                }
+                T resource;
+                while ((resource = idle.pollFirst()) != null) {
+                    if (isValid(resource)) {
+                        leased.add(resource);
+                        return resource;
+                    }
+                    total--;
+                }
+                if (total < maxSize) {
+                    total++;
+                    break;
+                }
+                if (timeout <= 0) {
+                    available.await();
+                } else {
+                    if (nanos <= 0) {
+                        throw new InstrumentException("Wait " + name.toLowerCase() + " from pool for " + timeout + " MILLISECONDS timeout");
+                    }
+                    nanos = available.awaitNanos(nanos);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InstrumentException(e);
+        } finally {
+            lock.unlock();
+        }
+        T resource = supply(true);
+        schedule(warmer, this::warm);
+        return resource;
+    }
+
+    /**
+     * 归还租借的资源，资源在后台回收后才能再次被租借
+     *
+     * @param resource 资源
+     */
+    public void release(T resource) {
+        lock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            if (!leased.remove(resource)) {
+                throw new InstrumentException(name + " is not leased from this pool");
+            }
+        } finally {
+            lock.unlock();
+        }
+        if (!schedule(recycler, () -> restore(resource))) {
+            discard(resource);
+        }
+    }
+
+    /**
+     * 关闭资源池并销毁池中所有的资源，包括尚未归还的，之后的归还会被忽略
+     */
+    @Override
+    public void close() {
+        List<T> resources;
+        lock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            resources = new ArrayList<>(idle);
+            resources.addAll(leased);
+            idle.clear();
+            leased.clear();
+            total = 0;
+            available.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        warmer.shutdown();
+        recycler.shutdown();
+        resources.forEach(this::dispose);
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
+    public long getLeaseTimeout() {
+        return leaseTimeout;
+    }
+
+    public void setLeaseTimeout(long leaseTimeout) {
+        this.leaseTimeout = leaseTimeout;
+    }
+
+    /**
+     * @return 资源的数量，包括正在创建与回收的
+     */
+    public int getSize() {
+        lock.lock();
+        try {
+            return total;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return 空闲资源的数量
+     */
+    public int getIdle() {
+        lock.lock();
+        try {
+            return idle.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 创建一个资源放入池中，调用前已经占用了{@link #total}的名额
+     *
+     * @param lease 是否直接租出
+     * @return 资源
+     */
+    private T supply(boolean lease) {
+        T resource;
+        try {
+            resource = create();
+        } catch (RuntimeException e) {
+            lock.lock();
+            try {
+                if (!closed) {
+                    total--;
+                    available.signal();
+                }
+            } finally {
+                lock.unlock();
+            }
+            throw e;
+        }
+        lock.lock();
+        try {
+            if (!closed) {
+                if (lease) {
+                    leased.add(resource);
+                } else {
+                    idle.addLast(resource);
+                    available.signal();
+                }
+                return resource;
+            }
+        } finally {
+            lock.unlock();
+        }
+        dispose(resource);
+        throw new InstrumentException(name + " pool is closed");
+    }
+
+    /**
+     * 预热资源，保持至少{@link #minIdle}个空闲资源，总数不超过上限
+     */
+    private void warm() {
+        while (true) {
+            lock.lock();
+            try {
+                if (closed || idle.size() >= minIdle || total >= maxSize) {
+                    return;
+                }
+                total++;
+            } finally {
+                lock.unlock();
+            }
+            try {
+                supply(false);
+            } catch (RuntimeException e) {
+                Logger.error("Warm up " + name.toLowerCase() + " error", e);
+                return;
+            }
+        }
+    }
+
+    /**
+     * 回收归还的资源，成功后放回空闲队列的头部，否则丢弃
+     */
+    private void restore(T resource) {
+        try {
+            if (isValid(resource) && recycle(resource)) {
+                lock.lock();
+                try {
+                    if (!closed) {
+                        idle.addFirst(resource);
+                        available.signal();
+                        return;
+                    }
+                } finally {
+                    lock.unlock();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (RuntimeException e) {
+            Logger.warn("Recycle {} error: {}", name.toLowerCase(), e.getMessage());
+        }
+        discard(resource);
+    }
+
+    /**
+     * 销毁资源并补足空闲资源
+     */
+    private void discard(T resource) {
+        lock.lock();
+        try {
+            if (!closed) {
+                total--;
+                available.signal();
+            }
+        } finally {
+            lock.unlock();
+        }
+        dispose(resource);
+        schedule(warmer, this::warm);
+    }
+
+    private boolean schedule(ExecutorService executor, Runnable task) {
+        if (closed) {
+            return false;
+        }
+        try {
+            executor.execute(task);
+            return true;
+        } catch (RejectedExecutionException e) {
+            return false;
+        }
+    }
+
+}
@@ -41,6 +41,7 @@ import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicReference;
@@ -55,7 +56,8 @@ import java.util.regex.Pattern;
 public class Runner extends EventEmitter implements AutoCloseable {
 
     private static final Pattern WS_ENDPOINT_PATTERN = Pattern.compile("^DevTools listening on (ws://.*)$");
-    private static final List<Runner> runners = new ArrayList<>();
+    private static final String PIPE_ARGUMENT = "--remote-debugging-pipe";
+    private static final List<Runner> runners = new CopyOnWriteArrayList<>();
     private static boolean isRegisterShutdownHook = false;
     private final String executablePath;
     private final List<String> processArguments;
@@ -84,17 +86,55 @@ public class Runner extends EventEmitter implements AutoCloseable {
             throw new RuntimeException("This process has previously been started.");
         }
         List<String> arguments = new ArrayList<>();
-        arguments.add(executablePath);
-        arguments.addAll(processArguments);
-
-        ProcessBuilder processBuilder = new ProcessBuilder().command(arguments).redirectErrorStream(true);
+        ProcessBuilder processBuilder = new ProcessBuilder();
+        if (processArguments.contains(PIPE_ARGUMENT)) {
+            if (Platform.isWindows()) {
+                throw new InstrumentException("Pipe connect to chromium is not supported on windows");
+            }
+            // 浏览器从fd 3读、向fd 4写，分别接到进程的stdin和stdout，浏览器自身的输出转到stderr
+            arguments.add("/bin/sh");
+            arguments.add("-c");
+            arguments.add("exec \"$0\" \"$@\" 3<&0 4>&1 1>&2");
+            arguments.add(executablePath);
+            arguments.addAll(processArguments);
+            processBuilder.command(arguments);
+        } else {
+            arguments.add(executablePath);
+            arguments.addAll(processArguments);
+            processBuilder.command(arguments).redirectErrorStream(true);
+        }
         process = processBuilder.start();
         this.closed = false;
+        if (processArguments.contains(PIPE_ARGUMENT)) {
+            drainErrorStream();
+        }
 
         registerHook();
         addProcessListener(options);
     }
 
+    /**
+     * pipe模式下stdout是协议通道，浏览器日志从stderr读出，避免缓冲区写满阻塞浏览器
+     */
+    private void drainErrorStream() {
+        Thread thread = new Thread(() -> {
+            BufferedReader reader = null;
+            try {
+                reader = new BufferedReader(new InputStreamReader(process.getErrorStream()));
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    Logger.trace(line);
+                }
+            } catch (IOException e) {
+                Logger.trace("chrome stderr closed: {}", e.getMessage());
+            } finally {
+                IoKit.close(reader);
+            }
+        }, "PipeStderrThread");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
     /**
      * 注册钩子函数，程序关闭时，关闭浏览器
      */
@@ -169,16 +209,12 @@ public class Runner extends EventEmitter implements AutoCloseable {
     }
 
     /**
-     * kill 掉浏览器进程
+     * kill 掉浏览器进程，临时用户目录在进程退出后由后台线程删除
      */
     public void kill() {
         this.destroyForcibly();
-        try {
-            if (StringKit.isNotEmpty(tempDirectory)) {
-                removeFolderByCmd(tempDirectory);
-            }
-        } catch (Exception e) {
-            Logger.error("kill chrome process error ", e);
+        if (StringKit.isNotEmpty(tempDirectory)) {
+            Builder.deleteDirectoryAsync(tempDirectory, process);
         }
     }
 
@@ -192,25 +228,18 @@ public class Runner extends EventEmitter implements AutoCloseable {
     }
 
     /**
-     * 通过命令行删除文件夹
-     *
-     * @param path 删除的路径
-     * @throws IOException          异常
-     * @throws InterruptedException 异常
+     * 程序退出时同步删除临时用户目录，后台线程可能来不及执行
      */
-    private void removeFolderByCmd(String path) throws IOException, InterruptedException {
-        if (StringKit.isEmpty(path) || "*".equals(path)) {
-            return;
-        }
-        Process delProcess = null;
-        if (Platform.isWindows()) {
-            delProcess = Runtime.getRuntime().exec("cmd /c rd /s /q " + path);
-        } else if (Platform.isLinux() || Platform.isMac()) {
-            String[] cmd = new String[]{"/bin/sh", "-c", "rm -rf " + path};
-            delProcess = Runtime.getRuntime().exec(cmd);
-        }
-        if (!delProcess.waitFor(10000, TimeUnit.MILLISECONDS)) {
-            delProcess.destroyForcibly();
+    private void removeTempDirectory() {
+        try {
+            if (process != null) {
+                process.waitFor(2000, TimeUnit.MILLISECONDS);
+            }
+            Builder.deleteDirectory(tempDirectory);
+        } catch (IOException e) {
+            Logger.error("remove temp directory error ", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
         }
     }
 
@@ -225,7 +254,10 @@ public class Runner extends EventEmitter implements AutoCloseable {
      */
     public Connection setUpConnection(boolean usePipe, int timeout, int slowMo) throws InterruptedException {
         if (usePipe) {
-            throw new InstrumentException("Temporarily not supported pipe connect to chromuim.If you have a pipe connect to chromium idea");
+            // 不需要websocket握手，也不需要从stdout中解析"DevTools listening"
+            Transport transport = TransportFactory.create(process.getInputStream(), process.getOutputStream());
+            this.connection = new Connection(Normal.EMPTY, transport, slowMo);
+            Logger.info("Connect to browser by pipe");
         } else {
             String waitForWSEndpoint = waitForWSEndpoint(timeout);
             this.connection = new Connection(waitForWSEndpoint, TransportFactory.create(waitForWSEndpoint), slowMo);
@@ -263,7 +295,8 @@ public class Runner extends EventEmitter implements AutoCloseable {
             }
 
             if (StringKit.isNotEmpty(runner.getTempDirectory())) {
-                runner.kill();
+                runner.destroyForcibly();
+                runner.removeTempDirectory();
             }
         }
     }
@@ -29,6 +29,7 @@ import com.alibaba.fastjson.JSONObject;
 import org.aoju.bus.core.lang.Assert;
 import org.aoju.bus.core.toolkit.StringKit;
 import org.aoju.lancia.Builder;
+import org.aoju.lancia.Variables;
 import org.aoju.lancia.nimble.*;
 import org.aoju.lancia.worker.BrowserListener;
 import org.aoju.lancia.worker.CDPSession;
@@ -111,7 +112,7 @@ public class CSSCoverage {
             return;
         }
 
-        Builder.commonExecutor().submit(() -> {
+        client.executor(Variables.ExecutorType.STREAM).submit(() -> {
             Map<String, Object> params = new HashMap<>();
             params.put("styleSheetId", header.getStyleSheetId());
             JSONObject response = client.send("CSS.getStyleSheetText", params, true);
@@ -108,7 +108,7 @@ public class DOMWorld {
             this.contextResolveCallback(context);
             hasContext = true;
             for (WaitTask waitTask : this.waitTasks) {
-                Builder.commonExecutor().submit(waitTask::rerun);
+                this.frameManager.getClient().executor(Variables.ExecutorType.MAINTENANCE).submit(waitTask::rerun);
             }
         } else {
             this.documentPromise = null;
@@ -355,7 +355,7 @@ public class DOMWorld {
             handle.dispose();
             return;
         }
-        Builder.commonExecutor().submit(() -> {
+        this.frameManager.getClient().executor(Variables.ExecutorType.LISTENER).submit(() -> {
             try {
                 handle.click(options, true);
                 handle.dispose();
@@ -395,7 +395,7 @@ public class DOMWorld {
             handle.tap();
             handle.dispose();
         } else {
-            Builder.commonExecutor().submit(() -> {
+            this.frameManager.getClient().executor(Variables.ExecutorType.LISTENER).submit(() -> {
                 handle.tap();
                 handle.dispose();
             });
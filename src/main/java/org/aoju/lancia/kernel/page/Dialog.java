@@ -29,7 +29,6 @@ import org.aoju.bus.core.lang.Assert;
 import org.aoju.bus.core.lang.Normal;
 import org.aoju.bus.core.toolkit.StringKit;
 import org.aoju.bus.logger.Logger;
-import org.aoju.lancia.Builder;
 import org.aoju.lancia.Variables;
 import org.aoju.lancia.worker.CDPSession;
 
@@ -98,7 +97,7 @@ public class Dialog {
      * @return 对话框关闭后返回
      */
     public Future<Boolean> accept(String promptText) {
-        return Builder.commonExecutor().submit(() -> {
+        return this.client.executor(Variables.ExecutorType.LISTENER).submit(() -> {
             try {
                 Assert.isTrue(!this.handled, "Cannot accept dialog which is already handled!");
                 this.handled = true;
@@ -120,7 +119,7 @@ public class Dialog {
      * @return 对话框关闭后返回
      */
     public Future<Boolean> dismiss() {
-        return Builder.commonExecutor().submit(() -> {
+        return this.client.executor(Variables.ExecutorType.LISTENER).submit(() -> {
             try {
                 Assert.isTrue(!this.handled, "Cannot dismiss dialog which is already handled!");
                 this.handled = true;
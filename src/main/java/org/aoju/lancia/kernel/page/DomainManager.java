@@ -0,0 +1,147 @@
+/*********************************************************************************
+ *                                                                               *
+ * The MIT License (MIT)                                                         *
+ *                                                                               *
+ * Copyright (c) 2015-2021 aoju.org and other contributors.                      *
+ *                                                                               *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy  *
+ * of this software and associated documentation files (the "Software"), to deal *
+ * in the Software without restriction, including without limitation the rights  *
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell     *
+ * copies of the Software, and to permit persons to whom the Software is         *
+ * furnished to do so, subject to the following conditions:                      *
+ *                                                                               *
+ * The above copyright notice and this permission notice shall be included in    *
+ * all copies or substantial portions of the Software.                           *
+ *                                                                               *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR    *
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,      *
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE   *
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER        *
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, *
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN     *
+ * THE SOFTWARE.                                                                 *
+ *                                                                               *
+ ********************************************************************************/
+package org.aoju.lancia.kernel.page;
+
+import org.aoju.bus.logger.Logger;
+import org.aoju.lancia.Variables;
+import org.aoju.lancia.worker.Batch;
+import org.aoju.lancia.worker.CDPSession;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 按需开启协议域，第一个使用者出现时enable，最后一个使用者离开时disable
+ * {@link Variables.PageProfile#FULL}模式下页面初始化时就持有Network、Log和Performance，它们不会被关闭
+ *
+ * @author Kimi Liu
+ * @version 1.2.8
+ * @since JDK 1.8+
+ */
+public class DomainManager {
+
+    public static final String NETWORK = "Network";
+    public static final String LOG = "Log";
+    public static final String PERFORMANCE = "Performance";
+
+    private final CDPSession client;
+
+    private final Variables.PageProfile profile;
+
+    private final Map<String, Integer> counts = new HashMap<>();
+
+    /**
+     * enable命令在持有锁时等待响应，用锁而不是synchronized以免占住虚拟线程的载体线程
+     */
+    private final ReentrantLock lock = new ReentrantLock();
+
+    public DomainManager(CDPSession client, Variables.PageProfile profile) {
+        this.client = client;
+        this.profile = profile == null ? Variables.PageProfile.FULL : profile;
+    }
+
+    /**
+     * 页面初始化时按模式持有协议域
+     *
+     * @param batch 页面初始化的批量命令
+     */
+    public void initialize(Batch batch) {
+        if (this.profile == Variables.PageProfile.FULL) {
+            this.acquire(NETWORK, batch);
+            this.acquire(LOG, batch);
+            this.acquire(PERFORMANCE, batch);
+        }
+    }
+
+    public void acquire(String domain) {
+        this.acquire(domain, null);
+    }
+
+    /**
+     * 增加一个使用者，从0变为1时开启协议域
+     *
+     * @param domain 协议域
+     * @param batch  不为null时把enable命令加入批量命令，否则立即发送并等待
+     */
+    public void acquire(String domain, Batch batch) {
+        this.lock.lock();
+        try {
+            int count = this.counts.getOrDefault(domain, 0);
+            if (count == 0) {
+                if (batch != null) {
+                    batch.add(domain + ".enable");
+                } else {
+                    this.client.send(domain + ".enable", null, true);
+                }
+            }
+            this.counts.put(domain, count + 1);
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * 减少一个使用者，最后一个使用者离开时关闭协议域
+     *
+     * @param domain 协议域
+     */
+    public void release(String domain) {
+        this.lock.lock();
+        try {
+            Integer count = this.counts.get(domain);
+            if (count == null) {
+                return;
+            }
+            if (count > 1) {
+                this.counts.put(domain, count - 1);
+                return;
+            }
+            this.counts.remove(domain);
+            try {
+                this.client.send(domain + ".disable", null, false);
+            } catch (RuntimeException e) {
+                Logger.debug("disable {} fail: {}", domain, e.getMessage());
+            }
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    public boolean isEnabled(String domain) {
+        this.lock.lock();
+        try {
+            return this.counts.containsKey(domain);
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    public Variables.PageProfile getProfile() {
+        return profile;
+    }
+
+}
@@ -32,6 +32,7 @@ import org.aoju.bus.core.lang.Assert;
 import org.aoju.bus.core.toolkit.StringKit;
 import org.aoju.lancia.Builder;
 import org.aoju.lancia.Page;
+import org.aoju.lancia.Variables;
 import org.aoju.lancia.nimble.BoxModel;
 import org.aoju.lancia.nimble.BoxModelValue;
 import org.aoju.lancia.nimble.ClickablePoint;
@@ -342,7 +343,7 @@ public class ElementHandle extends JSHandle {
         this.scrollIntoViewIfNeeded();
         ClickablePoint point = this.clickablePoint();
         if (!isBlock) {
-            Builder.commonExecutor().submit(() -> {
+            this.client.executor(Variables.ExecutorType.LISTENER).submit(() -> {
                 try {
                     this.page.mouse().click(point.getX(), point.getY(), options);
                 } catch (Exception e) {
@@ -392,7 +393,7 @@ public class ElementHandle extends JSHandle {
         if (isBlock) {
             this.page.touchscreen().tap(point.getX(), point.getY());
         } else {
-            Builder.commonExecutor().submit(() -> this.page.touchscreen().tap(point.getX(), point.getY()));
+            this.client.executor(Variables.ExecutorType.LISTENER).submit(() -> this.page.touchscreen().tap(point.getX(), point.getY()));
         }
 
     }
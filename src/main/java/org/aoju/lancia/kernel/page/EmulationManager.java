@@ -26,6 +26,7 @@
 package org.aoju.lancia.kernel.page;
 
 import org.aoju.lancia.nimble.ScreenOrientation;
+import org.aoju.lancia.worker.Batch;
 import org.aoju.lancia.worker.CDPSession;
 
 import java.util.HashMap;
@@ -49,6 +50,20 @@ public class EmulationManager {
     }
 
     public boolean emulateViewport(Viewport viewport) {
+        Batch batch = this.client.batch();
+        boolean reloadNeeded = this.emulateViewport(viewport, batch);
+        batch.send();
+        return reloadNeeded;
+    }
+
+    /**
+     * 把模拟视图的命令加入批量命令，由调用者统一发送
+     *
+     * @param viewport 视图
+     * @param batch    批量命令
+     * @return 是否需要重新加载页面
+     */
+    public boolean emulateViewport(Viewport viewport, Batch batch) {
         boolean mobile = viewport.getIsMobile();
         int width = viewport.getWidth();
         int height = viewport.getHeight();
@@ -74,10 +89,10 @@ public class EmulationManager {
         params.put("height", height);
         params.put("deviceScaleFactor", deviceScaleFactor);
         params.put("screenOrientation", screenOrientation);
-        this.client.send("Emulation.setDeviceMetricsOverride", params, false);
-        params.clear();
-        params.put("enabled", hasTouch);
-        this.client.send("Emulation.setTouchEmulationEnabled", params, true);
+        batch.add("Emulation.setDeviceMetricsOverride", params);
+        Map<String, Object> touchParams = new HashMap<>();
+        touchParams.put("enabled", hasTouch);
+        batch.add("Emulation.setTouchEmulationEnabled", touchParams);
         boolean reloadNeeded = this.emulatingMobile != mobile || this.hasTouch != hasTouch;
         this.emulatingMobile = mobile;
         this.hasTouch = hasTouch;
@@ -40,6 +40,7 @@ import org.aoju.lancia.nimble.runtime.ExecutionCreatedPayload;
 import org.aoju.lancia.nimble.runtime.ExecutionDescription;
 import org.aoju.lancia.nimble.runtime.ExecutionDestroyedPayload;
 import org.aoju.lancia.option.NavigateOption;
+import org.aoju.lancia.worker.Batch;
 import org.aoju.lancia.worker.BrowserListener;
 import org.aoju.lancia.worker.CDPSession;
 import org.aoju.lancia.worker.EventEmitter;
@@ -289,35 +290,46 @@ public class FrameManager extends EventEmitter {
 
 
     public void initialize() {
-        this.client.send("Page.enable", null, false);
-        JSONObject result = this.client.send("Page.getFrameTree", null, true);
-        FrameTree frameTree = JSON.toJavaObject(result.getJSONObject("frameTree"), FrameTree.class);
+        Batch batch = this.client.batch();
+        this.initialize(batch);
+        batch.send();
+    }
+
+    /**
+     * 获取frame树之后，把剩余的初始化命令加入批量命令，由调用者统一发送
+     *
+     * @param batch 批量命令
+     */
+    public void initialize(Batch batch) {
+        List<JSONObject> results = this.client.batch()
+                .add("Page.enable")
+                .add("Page.getFrameTree")
+                .send();
+        FrameTree frameTree = JSON.toJavaObject(results.get(1).getJSONObject("frameTree"), FrameTree.class);
         this.handleFrameTree(frameTree);
 
         Map<String, Object> params = new HashMap<>();
         params.put("enabled", true);
-        this.client.send("Page.setLifecycleEventsEnabled", params, false);
-
-        this.client.send("Runtime.enable", null, true);
-        this.ensureIsolatedWorld(UTILITY_WORLD_NAME);
-        this.networkManager.initialize();
-
+        batch.add("Page.setLifecycleEventsEnabled", params);
+        batch.add("Runtime.enable");
+        this.ensureIsolatedWorld(UTILITY_WORLD_NAME, batch);
+        this.networkManager.initialize(batch);
     }
 
-    private void ensureIsolatedWorld(String name) {
+    private void ensureIsolatedWorld(String name, Batch batch) {
         if (this.isolatedWorlds.contains(name))
             return;
         this.isolatedWorlds.add(name);
         Map<String, Object> params = new HashMap<>();
         params.put("source", "//# sourceURL=" + ExecutionContext.EVALUATION_SCRIPT_URL);
         params.put("worldName", name);
-        this.client.send("Page.addScriptToEvaluateOnNewDocument", params, true);
+        batch.add("Page.addScriptToEvaluateOnNewDocument", params);
         this.frames().forEach(frame -> {
             Map<String, Object> param = new HashMap<>();
             param.put("frameId", frame.getId());
             param.put("grantUniveralAccess", true);
             param.put("worldName", name);
-            this.client.send("Page.createIsolatedWorld", param, true);
+            batch.add("Page.createIsolatedWorld", param);
         });
     }
 
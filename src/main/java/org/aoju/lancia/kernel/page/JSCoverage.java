@@ -31,6 +31,7 @@ import org.aoju.bus.core.lang.Assert;
 import org.aoju.bus.core.toolkit.CollKit;
 import org.aoju.bus.core.toolkit.StringKit;
 import org.aoju.lancia.Builder;
+import org.aoju.lancia.Variables;
 import org.aoju.lancia.nimble.*;
 import org.aoju.lancia.worker.BrowserListener;
 import org.aoju.lancia.worker.CDPSession;
@@ -123,7 +124,7 @@ public class JSCoverage {
 
         if (StringKit.isEmpty(event.getUrl()) && !this.reportAnonymousScripts)
             return;
-        Builder.commonExecutor().submit(() -> {
+        client.executor(Variables.ExecutorType.STREAM).submit(() -> {
             Map<String, Object> params = new HashMap<>();
             params.put("scriptId", event.getScriptId());
             JSONObject response = client.send("Debugger.getScriptSource", params, true);
@@ -34,11 +34,13 @@ import org.aoju.lancia.nimble.AuthorizePayload;
 import org.aoju.lancia.nimble.Credentials;
 import org.aoju.lancia.nimble.RequestPausedPayload;
 import org.aoju.lancia.nimble.network.*;
+import org.aoju.lancia.worker.Batch;
 import org.aoju.lancia.worker.BrowserListener;
 import org.aoju.lancia.worker.CDPSession;
 import org.aoju.lancia.worker.EventEmitter;
 
 import java.util.*;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * 网络管理
@@ -64,6 +66,9 @@ public class NetworkManager extends EventEmitter {
     private boolean userRequestInterceptionEnabled;
     private boolean protocolRequestInterceptionEnabled;
     private boolean userCacheDisabled;
+    private DomainManager domainManager;
+    private boolean networkRequired;
+    private final ReentrantLock networkLock = new ReentrantLock();
 
     public NetworkManager(CDPSession client, boolean ignoreHTTPSErrors, FrameManager frameManager) {
         this.client = client;
@@ -160,6 +165,7 @@ public class NetworkManager extends EventEmitter {
     }
 
     public void setExtraHTTPHeaders(Map<String, String> extraHTTPHeaders) {
+        this.requireNetwork(null);
         this.extraHTTPHeaders = new HashMap<>();
         for (Map.Entry<String, String> entry : extraHTTPHeaders.entrySet()) {
 
@@ -173,13 +179,26 @@ public class NetworkManager extends EventEmitter {
     }
 
     public void initialize() {
-        this.client.send("Network.enable", null, true);
+        Batch batch = this.client.batch();
+        this.initialize(batch);
+        batch.send();
+    }
+
+    /**
+     * 把初始化命令加入批量命令，由调用者统一发送
+     *
+     * @param batch 批量命令
+     */
+    public void initialize(Batch batch) {
+        // 由页面的DomainManager决定是否开启Network
+        if (this.domainManager == null) {
+            batch.add("Network.enable");
+        }
         if (this.ignoreHTTPSErrors) {
             Map<String, Object> params = new HashMap<>();
             params.put("ignore", true);
-            this.client.send("Security.setIgnoreCertificateErrors", params, true);
+            batch.add("Security.setIgnoreCertificateErrors", params);
         }
-
     }
 
     public void authenticate(Credentials credentials) {
@@ -191,10 +210,29 @@ public class NetworkManager extends EventEmitter {
         return new HashMap<>(this.extraHTTPHeaders);
     }
 
+    /**
+     * 恢复默认的请求头、认证、请求拦截、缓存与离线设置，只为发生过变化的设置发送命令
+     */
+    public void reset() {
+        if (!this.extraHTTPHeaders.isEmpty()) {
+            this.setExtraHTTPHeaders(new HashMap<>());
+        }
+        this.setOfflineMode(false);
+        if (this.userRequestInterceptionEnabled || this.credentials != null) {
+            this.userRequestInterceptionEnabled = false;
+            this.credentials = null;
+            this.updateProtocolRequestInterception();
+        }
+        if (this.userCacheDisabled) {
+            this.setCacheEnabled(true);
+        }
+    }
+
     public void setOfflineMode(boolean value) {
         if (this.offline == value)
             return;
         this.offline = value;
+        this.requireNetwork(null);
         Map<String, Object> params = new HashMap<>();
         params.put("offline", this.offline);
         // values of 0 remove any active throttling. crbug.com/456324#c9
@@ -205,9 +243,38 @@ public class NetworkManager extends EventEmitter {
     }
 
     public void setUserAgent(String userAgent) {
+        Batch batch = this.client.batch();
+        this.setUserAgent(userAgent, batch);
+        batch.send();
+    }
+
+    public void setUserAgent(String userAgent, Batch batch) {
+        this.requireNetwork(batch);
         Map<String, Object> params = new HashMap<>();
         params.put("userAgent", userAgent);
-        this.client.send("Network.setUserAgentOverride", params, true);
+        batch.add("Network.setUserAgentOverride", params);
+    }
+
+    /**
+     * 网络相关的设置和请求拦截需要Network一直开启，第一次使用时持有且不再释放
+     *
+     * @param batch 不为null时把enable命令加入批量命令
+     */
+    private void requireNetwork(Batch batch) {
+        this.networkLock.lock();
+        try {
+            if (this.domainManager == null || this.networkRequired) {
+                return;
+            }
+            this.domainManager.acquire(DomainManager.NETWORK, batch);
+            this.networkRequired = true;
+        } finally {
+            this.networkLock.unlock();
+        }
+    }
+
+    public void setDomainManager(DomainManager domainManager) {
+        this.domainManager = domainManager;
     }
 
     public void setCacheEnabled(boolean enabled) {
@@ -221,6 +288,7 @@ public class NetworkManager extends EventEmitter {
     }
 
     private void updateProtocolCacheDisabled() {
+        this.requireNetwork(null);
         Map<String, Object> params = new HashMap<>();
         boolean cacheDisabled = this.userCacheDisabled || this.protocolRequestInterceptionEnabled;
         params.put("cacheDisabled", cacheDisabled);
@@ -137,7 +137,7 @@ public class Target {
         String type;
         if (("page".equals(type = this.targetInfo.getType()) || "background_page".equals(type)) && this.pagePromise == null) {
             try {
-                this.pagePromise = Page.create(this.sessionFactory.create(), this, this.ignoreHTTPSErrors, this.viewport, this.screenshotTaskQueue);
+                this.pagePromise = Page.create(this.sessionFactory.create(), this, this.ignoreHTTPSErrors, this.viewport, this.screenshotTaskQueue, this.browser().getPageProfile());
             } catch (ExecutionException | InterruptedException e) {
                 throw new RuntimeException(e);
             }
@@ -108,6 +108,14 @@ public class ChromeLauncher implements Launcher {
         if (!isCustomUserDir) {
             temporaryUserDataDir = Files.createTempDirectory(Variables.PROFILE_PREFIX).toRealPath().toString();
             chromeArguments.add("--user-data-dir=" + temporaryUserDataDir);
+            if (StringKit.isNotEmpty(options.getProfileTemplate())) {
+                try {
+                    Builder.copyDirectory(options.getProfileTemplate(), temporaryUserDataDir, options.getProfileSeed() == Variables.ProfileSeed.LINK);
+                } catch (IOException e) {
+                    Builder.deleteDirectoryAsync(temporaryUserDataDir, null);
+                    throw e;
+                }
+            }
         }
         if (!isCustomRemoteDebugger) {
             chromeArguments.add(options.getPipe() ? "--remote-debugging-pipe" : "--remote-debugging-port=0");
@@ -121,11 +129,13 @@ public class ChromeLauncher implements Launcher {
         try {
             runner.start(options);
             Connection connection = runner.setUpConnection(usePipe, options.getTimeout(), options.getSlowMo());
+            options.getExecutors().forEach(connection::setExecutor);
             Function<Object, Object> closeCallback = (s) -> {
                 runner.closeQuietly();
                 return null;
             };
             Browser browser = Browser.create(connection, null, options.getIgnoreHTTPSErrors(), options.getViewport(), runner.getProcess(), closeCallback);
+            browser.setPageProfile(options.getPageProfile());
             browser.waitForTarget(t -> "page".equals(t.type()), options);
             return browser;
         } catch (IOException | InterruptedException e) {
@@ -261,6 +271,7 @@ public class ChromeLauncher implements Launcher {
             } else {
                 throw new IllegalArgumentException("Exactly one of browserWSEndpoint, browserURL or transport must be passed to puppeteer.connect");
             }
+            options.getExecutors().forEach(connection::setExecutor);
             JSONObject result = connection.send("Target.getBrowserContexts", null, true);
 
             List<String> browserContextIds;
@@ -270,7 +281,9 @@ public class ChromeLauncher implements Launcher {
             };
 
             browserContextIds = result.getObject("browserContextIds", TypeReference.LIST_STRING);
-            return Browser.create(connection, browserContextIds, options.getIgnoreHTTPSErrors(), options.getViewport(), null, closeFunction);
+            Browser browser = Browser.create(connection, browserContextIds, options.getIgnoreHTTPSErrors(), options.getViewport(), null, closeFunction);
+            browser.setPageProfile(options.getPageProfile());
+            return browser;
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
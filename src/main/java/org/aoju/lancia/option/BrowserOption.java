@@ -25,8 +25,13 @@
  ********************************************************************************/
 package org.aoju.lancia.option;
 
+import org.aoju.lancia.Variables;
 import org.aoju.lancia.kernel.page.Viewport;
 
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+
 /**
  * 浏览器选项参数
  *
@@ -50,6 +55,16 @@ public class BrowserOption extends ChromeOption {
      * 将Puppeteer操作减慢指定的毫秒数。很有用，这样您可以查看发生了什么情况
      */
     private int slowMo;
+    /**
+     * 页面开启的协议域，MINIMAL只在需要时开启Network、Log和Performance
+     * 默认是FULL
+     */
+    private Variables.PageProfile pageProfile = Variables.PageProfile.FULL;
+    /**
+     * 该浏览器连接专用的执行器，未指定的类型使用{@link org.aoju.lancia.Builder#executor}全局执行器
+     * 执行器的生命周期由调用方管理
+     */
+    private Map<Variables.ExecutorType, ExecutorService> executors = new EnumMap<>(Variables.ExecutorType.class);
 
     public BrowserOption() {
         super();
@@ -79,4 +94,24 @@ public class BrowserOption extends ChromeOption {
         this.slowMo = slowMo;
     }
 
+    public Variables.PageProfile getPageProfile() {
+        return pageProfile;
+    }
+
+    public void setPageProfile(Variables.PageProfile pageProfile) {
+        this.pageProfile = pageProfile;
+    }
+
+    public Map<Variables.ExecutorType, ExecutorService> getExecutors() {
+        return executors;
+    }
+
+    public void setExecutors(Map<Variables.ExecutorType, ExecutorService> executors) {
+        this.executors = executors;
+    }
+
+    public void setExecutor(Variables.ExecutorType type, ExecutorService executor) {
+        this.executors.put(type, executor);
+    }
+
 }
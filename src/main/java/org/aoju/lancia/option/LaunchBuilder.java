@@ -30,6 +30,7 @@ import org.aoju.lancia.kernel.Standard;
 import org.aoju.lancia.kernel.page.Viewport;
 
 import java.util.List;
+import java.util.concurrent.ExecutorService;
 
 /**
  * 构建启动器
@@ -138,6 +139,17 @@ public class LaunchBuilder {
         return this;
     }
 
+    public LaunchBuilder profileTemplate(String profileTemplate, Variables.ProfileSeed profileSeed) {
+        options.setProfileTemplate(profileTemplate);
+        options.setProfileSeed(profileSeed);
+        return this;
+    }
+
+    public LaunchBuilder executor(Variables.ExecutorType type, ExecutorService executor) {
+        options.setExecutor(type, executor);
+        return this;
+    }
+
     public LaunchOption build() {
         return options;
     }
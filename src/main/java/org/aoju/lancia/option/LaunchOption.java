@@ -82,6 +82,15 @@ public class LaunchOption extends BrowserOption {
      * chrome or firefox
      */
     private String product;
+    /**
+     * 用户目录模板，未指定userDataDir时用它预置临时用户目录，加快浏览器启动
+     */
+    private String profileTemplate;
+    /**
+     * 预置用户目录的方式
+     * 默认是 COPY
+     */
+    private Variables.ProfileSeed profileSeed = Variables.ProfileSeed.COPY;
 
     public LaunchOption() {
         super();
@@ -160,4 +169,20 @@ public class LaunchOption extends BrowserOption {
         this.product = product;
     }
 
+    public String getProfileTemplate() {
+        return profileTemplate;
+    }
+
+    public void setProfileTemplate(String profileTemplate) {
+        this.profileTemplate = profileTemplate;
+    }
+
+    public Variables.ProfileSeed getProfileSeed() {
+        return profileSeed;
+    }
+
+    public void setProfileSeed(Variables.ProfileSeed profileSeed) {
+        this.profileSeed = profileSeed;
+    }
+
 }
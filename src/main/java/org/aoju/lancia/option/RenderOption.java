@@ -0,0 +1,248 @@
+/*********************************************************************************
+ *                                                                               *
+ * The MIT License (MIT)                                                         *
+ *                                                                               *
+ * Copyright (c) 2015-2021 aoju.org and other contributors.                      *
+ *                                                                               *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy  *
+ * of this software and associated documentation files (the "Software"), to deal *
+ * in the Software without restriction, including without limitation the rights  *
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell     *
+ * copies of the Software, and to permit persons to whom the Software is         *
+ * furnished to do so, subject to the following conditions:                      *
+ *                                                                               *
+ * The above copyright notice and this permission notice shall be included in    *
+ * all copies or substantial portions of the Software.                           *
+ *                                                                               *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR    *
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,      *
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE   *
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER        *
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, *
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN     *
+ * THE SOFTWARE.                                                                 *
+ *                                                                               *
+ ********************************************************************************/
+package org.aoju.lancia.option;
+
+import org.aoju.lancia.Variables;
+import org.aoju.lancia.kernel.page.Viewport;
+import org.aoju.lancia.nimble.network.CookieParam;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 渲染服务的请求参数，查询参数用点号表示嵌套，如pdf.scale=2，POST请求的JSON为对应的嵌套结构
+ *
+ * @author Kimi Liu
+ * @version 1.2.8
+ * @since JDK 1.8+
+ */
+public class RenderOption {
+
+    /**
+     * 要渲染的地址，为空时渲染html
+     */
+    private String url;
+    /**
+     * 要渲染的html内容，只能在POST请求中传入
+     */
+    private String html;
+    /**
+     * 输出格式，可选值: pdf、screenshot
+     * 默认是 pdf
+     */
+    private String output = "pdf";
+    /**
+     * 是否模拟 @media screen 渲染
+     * 默认是 true
+     */
+    private boolean emulateScreenMedia = true;
+    /**
+     * 是否滚动页面以触发延迟加载的元素
+     */
+    private boolean scrollPage;
+    /**
+     * 导航完成后额外等待的时间(毫秒)
+     */
+    private int waitFor;
+    /**
+     * 设置后以附件形式返回，作为下载的文件名
+     */
+    private String attachmentName;
+    /**
+     * 默认是 1600 x 1200
+     */
+    private Viewport viewport = new Viewport(1600, 1200, 1, false, false, false);
+
+    private List<CookieParam> cookies = new ArrayList<>();
+
+    private Goto navigation = new Goto();
+
+    private PDFOption pdf = new PDFOption();
+
+    private ScreenshotOption screenshot = new ScreenshotOption();
+
+    public RenderOption() {
+        this.pdf.setFormat("A4");
+        this.screenshot.setFullPage(true);
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    public void setUrl(String url) {
+        this.url = url;
+    }
+
+    public String getHtml() {
+        return html;
+    }
+
+    public void setHtml(String html) {
+        this.html = html;
+    }
+
+    public String getOutput() {
+        return output;
+    }
+
+    public void setOutput(String output) {
+        this.output = output;
+    }
+
+    public boolean getEmulateScreenMedia() {
+        return emulateScreenMedia;
+    }
+
+    public void setEmulateScreenMedia(boolean emulateScreenMedia) {
+        this.emulateScreenMedia = emulateScreenMedia;
+    }
+
+    public boolean getScrollPage() {
+        return scrollPage;
+    }
+
+    public void setScrollPage(boolean scrollPage) {
+        this.scrollPage = scrollPage;
+    }
+
+    public int getWaitFor() {
+        return waitFor;
+    }
+
+    public void setWaitFor(int waitFor) {
+        this.waitFor = waitFor;
+    }
+
+    public String getAttachmentName() {
+        return attachmentName;
+    }
+
+    public void setAttachmentName(String attachmentName) {
+        this.attachmentName = attachmentName;
+    }
+
+    public Viewport getViewport() {
+        return viewport;
+    }
+
+    public void setViewport(Viewport viewport) {
+        this.viewport = viewport;
+    }
+
+    public List<CookieParam> getCookies() {
+        return cookies;
+    }
+
+    public void setCookies(List<CookieParam> cookies) {
+        this.cookies = cookies;
+    }
+
+    public Goto getGoto() {
+        return navigation;
+    }
+
+    public void setGoto(Goto navigation) {
+        this.navigation = navigation;
+    }
+
+    public PDFOption getPdf() {
+        return pdf;
+    }
+
+    public void setPdf(PDFOption pdf) {
+        this.pdf = pdf;
+    }
+
+    public ScreenshotOption getScreenshot() {
+        return screenshot;
+    }
+
+    public void setScreenshot(ScreenshotOption screenshot) {
+        this.screenshot = screenshot;
+    }
+
+    /**
+     * 导航参数
+     */
+    public static class Goto {
+
+        /**
+         * 导航的超时时间(毫秒)，小于等于0时使用页面默认的导航超时
+         * 默认是 30000
+         */
+        private int timeout = Variables.DEFAULT_TIMEOUT;
+        /**
+         * 导航完成的标志事件，可选值: load、domcontentloaded、networkidle
+         * 默认是 networkidle
+         */
+        private String waitUntil = "networkidle";
+        /**
+         * waitUntil为networkidle时允许的最大请求数量，0对应networkidle0，其他对应networkidle2
+         * 默认是 2
+         */
+        private int networkIdleInflight = 2;
+
+        public int getTimeout() {
+            return timeout;
+        }
+
+        public void setTimeout(int timeout) {
+            this.timeout = timeout;
+        }
+
+        public String getWaitUntil() {
+            return waitUntil;
+        }
+
+        public void setWaitUntil(String waitUntil) {
+            this.waitUntil = waitUntil;
+        }
+
+        public int getNetworkIdleInflight() {
+            return networkIdleInflight;
+        }
+
+        public void setNetworkIdleInflight(int networkIdleInflight) {
+            this.networkIdleInflight = networkIdleInflight;
+        }
+
+        /**
+         * @return 转换为页面导航的参数
+         */
+        public NavigateOption toNavigateOption() {
+            List<String> events = new ArrayList<>();
+            if ("networkidle".equals(waitUntil)) {
+                events.add(networkIdleInflight <= 0 ? "networkidle0" : "networkidle2");
+            } else {
+                events.add(waitUntil);
+            }
+            return new NavigateOption(null, timeout, events);
+        }
+
+    }
+
+}
@@ -0,0 +1,619 @@
+/*********************************************************************************
+ *                                                                               *
+ * The MIT License (MIT)                                                         *
+ *                                                                               *
+ * Copyright (c) 2015-2021 aoju.org and other contributors.                      *
+ *                                                                               *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy  *
+ * of this software and associated documentation files (the "Software"), to deal *
+ * in the Software without restriction, including without limitation the rights  *
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell     *
+ * copies of the Software, and to permit persons to whom the Software is         *
+ * furnished to do so, subject to the following conditions:                      *
+ *                                                                               *
+ * The above copyright notice and this permission notice shall be included in    *
+ * all copies or substantial portions of the Software.                           *
+ *                                                                               *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR    *
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,      *
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE   *
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER        *
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, *
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN     *
+ * THE SOFTWARE.                                                                 *
+ *                                                                               *
+ ********************************************************************************/
+package org.aoju.lancia.server;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONArray;
+import com.alibaba.fastjson.JSONException;
+import com.alibaba.fastjson.JSONObject;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.aoju.bus.core.lang.exception.InstrumentException;
+import org.aoju.bus.core.toolkit.StringKit;
+import org.aoju.bus.logger.Logger;
+import org.aoju.lancia.Browser;
+import org.aoju.lancia.Page;
+import org.aoju.lancia.Variables;
+import org.aoju.lancia.kernel.browser.PagePool;
+import org.aoju.lancia.nimble.network.CookieParam;
+import org.aoju.lancia.option.PDFOption;
+import org.aoju.lancia.option.RenderOption;
+import org.aoju.lancia.option.ScreenshotOption;
+
+import java.beans.IntrospectionException;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 内嵌的渲染服务，基于JDK自带的{@link HttpServer}，不需要额外的依赖
+ * GET请求的参数用查询参数传入，POST请求的参数用JSON传入，两者同时存在时JSON优先，参数见{@link RenderOption}
+ * 每个请求从页面池租借一个页面，渲染结果按IO.read的分块直接以chunked编码写出，不在内存中保留整个文件；
+ * 开始写出后渲染失败时直接断开连接，客户端不会收到完整的响应
+ *
+ * <strong>注意 渲染的页面可以执行任意JavaScript，不要把服务公开到互联网</strong>
+ *
+ * @author Kimi Liu
+ * @version 1.2.8
+ * @since JDK 1.8+
+ */
+public class RenderServer implements HttpHandler, AutoCloseable {
+
+    /**
+     * 默认的请求路径
+     */
+    public static final String DEFAULT_PATH = "/router/rest";
+
+    private static final String ACCESS_TOKEN_HEADER = "X-Access-Token";
+
+    /**
+     * 写出时的缓冲大小，即每个chunk的最大长度
+     */
+    private static final int CHUNK_SIZE = 64 * 1024;
+
+    /**
+     * 逐屏滚动到页面底部再回到顶部，触发延迟加载的元素
+     */
+    private static final String SCROLL_PAGE = "async () => {\n" +
+            "  const delay = ms => new Promise(resolve => setTimeout(resolve, ms));\n" +
+            "  for (let y = 0; y < document.body.scrollHeight; y += window.innerHeight) {\n" +
+            "    window.scrollTo(0, y);\n" +
+            "    await delay(100);\n" +
+            "  }\n" +
+            "  window.scrollTo(0, 0);\n" +
+            "}";
+
+    private final PagePool pool;
+
+    /**
+     * 页面池是否由服务创建，关闭服务时一起关闭
+     */
+    private final boolean ownPool;
+
+    private final InetSocketAddress address;
+
+    private final String path;
+
+    /**
+     * 处理请求的线程数量，即同时渲染的最大数量
+     */
+    private final int threads;
+
+    /**
+     * 渲染超时后关闭页面，中断正在进行的命令
+     */
+    private final ScheduledExecutorService watchdog = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "render-server-watchdog");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * 访问令牌，设置后请求头中必须带有相同的X-Access-Token
+     */
+    private volatile String accessToken;
+
+    /**
+     * 单个请求从租借页面到写完结果的最长时间(毫秒)
+     */
+    private volatile long renderTimeout = 2L * Variables.DEFAULT_TIMEOUT;
+
+    /**
+     * POST请求体的最大字节数
+     */
+    private volatile int maxBodySize = 10 << 20;
+
+    private HttpServer server;
+
+    private ExecutorService executor;
+
+    /**
+     * 创建隔离的页面池，关闭服务时一起关闭
+     * 每个页面有单独的隐身上下文，归还时清除该上下文的cookie和存储，一个请求设置的cookie不会留给其他请求
+     *
+     * @param browser 浏览器
+     * @param port    端口
+     * @param threads 同时渲染的最大数量，也是页面池的上限
+     */
+    public RenderServer(Browser browser, int port, int threads) {
+        this(new PagePool(browser, 1, threads, true), true, new InetSocketAddress(port), DEFAULT_PATH, threads);
+    }
+
+    /**
+     * 调用方提供的页面池应当是隔离的({@link PagePool#PagePool(Browser, int, int, boolean)})，
+     * 否则请求设置的cookie会留给之后的请求
+     *
+     * @param pool    页面池，由调用方关闭
+     * @param address 监听的地址
+     * @param path    请求路径
+     * @param threads 同时渲染的最大数量
+     */
+    public RenderServer(PagePool pool, InetSocketAddress address, String path, int threads) {
+        this(pool, false, address, path, threads);
+    }
+
+    private RenderServer(PagePool pool, boolean ownPool, InetSocketAddress address, String path, int threads) {
+        if (threads <= 0) {
+            throw new IllegalArgumentException("Invalid thread number: " + threads);
+        }
+        this.pool = pool;
+        this.ownPool = ownPool;
+        this.address = address;
+        this.path = path;
+        this.threads = threads;
+    }
+
+    /**
+     * 开始监听
+     *
+     * @throws IOException 端口绑定失败
+     */
+    public synchronized void start() throws IOException {
+        if (server != null) {
+            throw new InstrumentException("Render server is already started");
+        }
+        AtomicInteger index = new AtomicInteger();
+        executor = Executors.newFixedThreadPool(threads, r -> {
+            Thread thread = new Thread(r, "render-server-" + index.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        server = HttpServer.create(address, 0);
+        server.createContext(path, this);
+        server.setExecutor(executor);
+        server.start();
+        Logger.info("Render server listening on {}{}", server.getAddress(), path);
+    }
+
+    /**
+     * 停止监听，等待正在处理的请求最多delay秒
+     *
+     * @param delay 等待的秒数
+     */
+    public synchronized void stop(int delay) {
+        if (server == null) {
+            return;
+        }
+        server.stop(delay);
+        executor.shutdownNow();
+        server = null;
+        executor = null;
+    }
+
+    @Override
+    public void close() {
+        stop(0);
+        watchdog.shutdownNow();
+        if (ownPool) {
+            pool.close();
+        }
+    }
+
+    /**
+     * @return 实际监听的地址，端口为0时可以用来获取分配的端口
+     */
+    public synchronized InetSocketAddress getAddress() {
+        return server == null ? address : server.getAddress();
+    }
+
+    public String getAccessToken() {
+        return accessToken;
+    }
+
+    public void setAccessToken(String accessToken) {
+        this.accessToken = accessToken;
+    }
+
+    public long getRenderTimeout() {
+        return renderTimeout;
+    }
+
+    public void setRenderTimeout(long renderTimeout) {
+        this.renderTimeout = renderTimeout;
+    }
+
+    public int getMaxBodySize() {
+        return maxBodySize;
+    }
+
+    public void setMaxBodySize(int maxBodySize) {
+        this.maxBodySize = maxBodySize;
+    }
+
+    /**
+     * 处理请求，响应写完后关闭；已经开始写出结果后失败时抛出异常，由服务直接断开连接
+     *
+     * @param exchange 请求
+     * @throws IOException 写出失败或需要断开连接
+     */
+    @Override
+    public void handle(HttpExchange exchange) throws IOException {
+        process(exchange);
+        exchange.close();
+    }
+
+    private void process(HttpExchange exchange) throws IOException {
+        String method = exchange.getRequestMethod();
+        if (!"GET".equals(method) && !"POST".equals(method)) {
+            exchange.getResponseHeaders().set("Allow", "GET, POST");
+            sendError(exchange, 405, "Method not allowed: " + method);
+            return;
+        }
+        if (!authorized(exchange)) {
+            sendError(exchange, 401, "Invalid access token");
+            return;
+        }
+        RenderOption option;
+        try {
+            JSONObject params = parseQuery(exchange.getRequestURI().getRawQuery());
+            if ("POST".equals(method)) {
+                byte[] body = readBody(exchange.getRequestBody());
+                if (body == null) {
+                    sendError(exchange, 413, "Request body is larger than " + maxBodySize + " bytes");
+                    return;
+                }
+                if (body.length > 0) {
+                    merge(params, JSON.parseObject(new String(body, StandardCharsets.UTF_8)));
+                }
+            }
+            option = toOption(params);
+        } catch (IllegalArgumentException | JSONException e) {
+            sendError(exchange, 400, e.getMessage());
+            return;
+        }
+
+        Page page;
+        try {
+            page = pool.lease();
+        } catch (InstrumentException e) {
+            sendError(exchange, 503, e.getMessage());
+            return;
+        }
+        AtomicBoolean expired = new AtomicBoolean();
+        ScheduledFuture<?> timer = watchdog.schedule(() -> {
+            expired.set(true);
+            closeQuietly(page);
+        }, renderTimeout, TimeUnit.MILLISECONDS);
+        StreamingBody output = new StreamingBody(exchange);
+        try {
+            exchange.getResponseHeaders().set("Content-Type", contentType(option));
+            if (StringKit.isNotEmpty(option.getAttachmentName())) {
+                exchange.getResponseHeaders().set("Content-Disposition",
+                        "attachment; filename=\"" + option.getAttachmentName().replaceAll("[\"\\\\\r\n]", "_") + "\"");
+            }
+            render(page, option, output);
+            output.finish();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            fail(exchange, output, 500, e);
+        } catch (IOException | RuntimeException e) {
+            if (expired.get()) {
+                fail(exchange, output, 504, new InstrumentException("Render timeout after " + renderTimeout + " MILLISECONDS"));
+            } else {
+                fail(exchange, output, 500, e);
+            }
+        } finally {
+            timer.cancel(false);
+            pool.release(page);
+        }
+    }
+
+    private void render(Page page, RenderOption option, OutputStream output) throws IOException, InterruptedException {
+        // 页面重置不会恢复视口和媒体类型，每个请求都要重新设置，否则会沿用上一个请求的设置
+        page.setViewport(option.getViewport() != null ? option.getViewport() : new RenderOption().getViewport());
+        page.emulateMediaType(option.getEmulateScreenMedia() ? "screen" : null);
+        if (option.getCookies() != null && !option.getCookies().isEmpty()) {
+            for (CookieParam cookie : option.getCookies()) {
+                if (StringKit.isEmpty(cookie.getUrl()) && StringKit.isEmpty(cookie.getDomain())) {
+                    cookie.setUrl(option.getUrl());
+                }
+            }
+            try {
+                page.setCookie(option.getCookies());
+            } catch (ReflectiveOperationException | IntrospectionException e) {
+                throw new InstrumentException(e);
+            }
+        }
+        if (StringKit.isNotEmpty(option.getUrl())) {
+            page.goTo(option.getUrl(), option.getGoto().toNavigateOption());
+        } else {
+            page.setContent(option.getHtml(), option.getGoto().toNavigateOption());
+        }
+        if (option.getWaitFor() > 0) {
+            page.waitFor(String.valueOf(option.getWaitFor()));
+        }
+        if (option.getScrollPage()) {
+            page.evaluate(SCROLL_PAGE);
+        }
+        if ("screenshot".equals(option.getOutput())) {
+            page.screenshot(option.getScreenshot(), output);
+        } else {
+            page.pdf(option.getPdf(), output);
+        }
+    }
+
+    /**
+     * 渲染失败，尚未开始写出时返回错误，否则抛出异常断开连接
+     */
+    private void fail(HttpExchange exchange, StreamingBody output, int status, Exception e) throws IOException {
+        if (output.isCommitted()) {
+            Logger.warn("Render {} failed after response started: {}", exchange.getRequestURI(), e.getMessage());
+            throw e instanceof IOException ? (IOException) e : new IOException(e);
+        }
+        Logger.warn("Render {} error: {}", exchange.getRequestURI(), e.getMessage());
+        exchange.getResponseHeaders().remove("Content-Disposition");
+        sendError(exchange, status, e.getMessage());
+    }
+
+    private boolean authorized(HttpExchange exchange) {
+        String token = this.accessToken;
+        if (StringKit.isEmpty(token)) {
+            return true;
+        }
+        String value = exchange.getRequestHeaders().getFirst(ACCESS_TOKEN_HEADER);
+        return value != null && MessageDigest.isEqual(token.getBytes(StandardCharsets.UTF_8), value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * 读取请求体
+     *
+     * @return 请求体，超过{@link #maxBodySize}时返回null
+     */
+    private byte[] readBody(InputStream input) throws IOException {
+        int limit = this.maxBodySize;
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        byte[] buffer = new byte[Variables.DEFAULT_BUFFER_SIZE];
+        int read;
+        while ((read = input.read(buffer)) != -1) {
+            if (body.size() + read > limit) {
+                return null;
+            }
+            body.write(buffer, 0, read);
+        }
+        return body.toByteArray();
+    }
+
+    private static void sendError(HttpExchange exchange, int status, String message) throws IOException {
+        byte[] body = String.valueOf(message).getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+        exchange.sendResponseHeaders(status, body.length);
+        exchange.getResponseBody().write(body);
+    }
+
+    private static String contentType(RenderOption option) {
+        if (!"screenshot".equals(option.getOutput())) {
+            return "application/pdf";
+        }
+        return "jpeg".equals(option.getScreenshot().getType()) ? "image/jpeg" : "image/png";
+    }
+
+    /**
+     * 在默认参数上合并请求参数并校验
+     */
+    private static RenderOption toOption(JSONObject params) {
+        JSONObject defaults = new JSONObject();
+        JSONObject viewport = new JSONObject();
+        viewport.put("width", 1600);
+        viewport.put("height", 1200);
+        defaults.put("viewport", viewport);
+        JSONObject screenshot = new JSONObject();
+        screenshot.put("fullPage", true);
+        defaults.put("screenshot", screenshot);
+        merge(defaults, params);
+
+        RenderOption option = defaults.toJavaObject(RenderOption.class);
+        if (StringKit.isNotEmpty(option.getUrl())) {
+            String url = option.getUrl().toLowerCase();
+            if (!url.startsWith("http://") && !url.startsWith("https://")) {
+                throw new IllegalArgumentException("Only http and https urls are supported");
+            }
+        } else if (StringKit.isEmpty(option.getHtml())) {
+            throw new IllegalArgumentException("Either url or html is required");
+        }
+        if (!"pdf".equals(option.getOutput()) && !"screenshot".equals(option.getOutput())) {
+            throw new IllegalArgumentException("Unsupported output: " + option.getOutput());
+        }
+        if (option.getGoto() == null) {
+            option.setGoto(new RenderOption.Goto());
+        }
+        PDFOption pdf = option.getPdf() == null ? new PDFOption() : option.getPdf();
+        pdf.setPath(null);
+        if (StringKit.isEmpty(pdf.getFormat()) && StringKit.isEmpty(pdf.getWidth()) && StringKit.isEmpty(pdf.getHeight())) {
+            pdf.setFormat("A4");
+        }
+        option.setPdf(pdf);
+        ScreenshotOption shot = option.getScreenshot();
+        shot.setPath(null);
+        if (shot.getType() == null) {
+            shot.setType("png");
+        } else if (!"png".equals(shot.getType()) && !"jpeg".equals(shot.getType())) {
+            throw new IllegalArgumentException("Unsupported screenshot type: " + shot.getType());
+        }
+        if (shot.getClip() != null) {
+            shot.setFullPage(false);
+        }
+        return option;
+    }
+
+    /**
+     * 把查询参数转换为嵌套的JSON，a.b=1转换为{a: {b: 1}}，cookies[0][name]=x转换为{cookies: [{name: x}]}
+     */
+    private static JSONObject parseQuery(String query) {
+        JSONObject root = new JSONObject();
+        if (StringKit.isEmpty(query)) {
+            return root;
+        }
+        for (String pair : query.split("&")) {
+            if (pair.isEmpty()) {
+                continue;
+            }
+            int index = pair.indexOf('=');
+            String key = decode(index < 0 ? pair : pair.substring(0, index));
+            String value = index < 0 ? "" : decode(pair.substring(index + 1));
+            String[] names = key.replace("]", "").split("[.\\[]");
+            JSONObject node = root;
+            for (int i = 0; i < names.length - 1; i++) {
+                Object child = node.get(names[i]);
+                if (!(child instanceof JSONObject)) {
+                    child = new JSONObject();
+                    node.put(names[i], child);
+                }
+                node = (JSONObject) child;
+            }
+            node.put(names[names.length - 1], value);
+        }
+        return (JSONObject) toArrays(root);
+    }
+
+    /**
+     * 键全部是数字的对象转换为数组
+     */
+    private static Object toArrays(Object value) {
+        if (!(value instanceof JSONObject)) {
+            return value;
+        }
+        JSONObject object = (JSONObject) value;
+        boolean indexed = !object.isEmpty();
+        for (Map.Entry<String, Object> entry : object.entrySet()) {
+            entry.setValue(toArrays(entry.getValue()));
+            indexed = indexed && entry.getKey().matches("\\d{1,4}");
+        }
+        if (!indexed) {
+            return object;
+        }
+        TreeMap<Integer, Object> sorted = new TreeMap<>();
+        object.forEach((k, v) -> sorted.put(Integer.parseInt(k), v));
+        return new JSONArray(new ArrayList<>(sorted.values()));
+    }
+
+    /**
+     * 把source深度合并到target，同名的对象递归合并，其他值覆盖
+     */
+    private static void merge(JSONObject target, JSONObject source) {
+        if (source == null) {
+            return;
+        }
+        for (Map.Entry<String, Object> entry : source.entrySet()) {
+            Object current = target.get(entry.getKey());
+            if (current instanceof JSONObject && entry.getValue() instanceof JSONObject) {
+                merge((JSONObject) current, (JSONObject) entry.getValue());
+            } else {
+                target.put(entry.getKey(), entry.getValue());
+            }
+        }
+    }
+
+    private static String decode(String value) {
+        try {
+            return URLDecoder.decode(value, "UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalArgumentException(e);
+        }
+    }
+
+    private static void closeQuietly(Page page) {
+        try {
+            if (!page.isClosed()) {
+                page.close();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (RuntimeException e) {
+            Logger.warn("Close page error: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 第一次写入时才发送响应头，之前的失败仍然可以返回错误状态码
+     * 长度未知，响应以chunked编码写出
+     */
+    private static class StreamingBody extends OutputStream {
+
+        private final HttpExchange exchange;
+
+        private OutputStream output;
+
+        StreamingBody(HttpExchange exchange) {
+            this.exchange = exchange;
+        }
+
+        boolean isCommitted() {
+            return output != null;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            commit().write(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            commit().write(b, off, len);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            if (output != null) {
+                output.flush();
+            }
+        }
+
+        /**
+         * 写完结果，没有任何数据时也发送响应头
+         */
+        void finish() throws IOException {
+            commit().flush();
+        }
+
+        private OutputStream commit() throws IOException {
+            if (output == null) {
+                exchange.sendResponseHeaders(200, 0);
+                output = new BufferedOutputStream(exchange.getResponseBody(), CHUNK_SIZE);
+            }
+            return output;
+        }
+
+    }
+
+}
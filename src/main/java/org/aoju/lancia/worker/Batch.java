@@ -0,0 +1,120 @@
+/*********************************************************************************
+ *                                                                               *
+ * The MIT License (MIT)                                                         *
+ *                                                                               *
+ * Copyright (c) 2015-2021 aoju.org and other contributors.                      *
+ *                                                                               *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy  *
+ * of this software and associated documentation files (the "Software"), to deal *
+ * in the Software without restriction, including without limitation the rights  *
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell     *
+ * copies of the Software, and to permit persons to whom the Software is         *
+ * furnished to do so, subject to the following conditions:                      *
+ *                                                                               *
+ * The above copyright notice and this permission notice shall be included in    *
+ * all copies or substantial portions of the Software.                           *
+ *                                                                               *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR    *
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,      *
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE   *
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER        *
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, *
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN     *
+ * THE SOFTWARE.                                                                 *
+ *                                                                               *
+ ********************************************************************************/
+package org.aoju.lancia.worker;
+
+import com.alibaba.fastjson.JSONObject;
+import org.aoju.lancia.Variables;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * 批量发送互不依赖的命令，所有命令连续写出后再统一等待结果，
+ * 浏览器按顺序处理同一会话的命令，因此只需要一次往返
+ *
+ * @author Kimi Liu
+ * @version 1.2.8
+ * @since JDK 1.8+
+ */
+public class Batch {
+
+    private final CDPSession session;
+
+    private final List<String> methods = new ArrayList<>();
+
+    private final List<Map<String, Object>> params = new ArrayList<>();
+
+    private int timeout = Variables.DEFAULT_TIMEOUT;
+
+    Batch(CDPSession session) {
+        this.session = session;
+    }
+
+    public Batch add(String method) {
+        return this.add(method, null);
+    }
+
+    /**
+     * 添加一条命令，命令在{@link #send()}或{@link #sendAsync()}时才写出
+     *
+     * @param method 方法
+     * @param params 参数
+     * @return Batch
+     */
+    public Batch add(String method, Map<String, Object> params) {
+        this.methods.add(method);
+        this.params.add(params);
+        return this;
+    }
+
+    /**
+     * 每条命令的超时时间
+     *
+     * @param timeout 超时时间(毫秒)，小于等于0表示不超时
+     * @return Batch
+     */
+    public Batch timeout(int timeout) {
+        this.timeout = timeout;
+        return this;
+    }
+
+    public int size() {
+        return this.methods.size();
+    }
+
+    /**
+     * 连续写出所有命令，不等待结果
+     *
+     * @return 按添加顺序排列的结果，任意一条命令失败时整体失败
+     */
+    public CompletableFuture<List<JSONObject>> sendAsync() {
+        List<CompletableFuture<JSONObject>> futures = new ArrayList<>(this.methods.size());
+        for (int i = 0; i < this.methods.size(); i++) {
+            futures.add(this.session.sendAsync(this.methods.get(i), this.params.get(i), this.timeout));
+        }
+        this.methods.clear();
+        this.params.clear();
+        return CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).thenApply(v -> {
+            List<JSONObject> results = new ArrayList<>(futures.size());
+            for (CompletableFuture<JSONObject> future : futures) {
+                results.add(future.join());
+            }
+            return results;
+        });
+    }
+
+    /**
+     * 连续写出所有命令，然后等待全部结果
+     *
+     * @return 按添加顺序排列的结果
+     */
+    public List<JSONObject> send() {
+        return Connection.await(this.sendAsync(), this.session.getEventQueue());
+    }
+
+}
@@ -0,0 +1,177 @@
+/*********************************************************************************
+ *                                                                               *
+ * The MIT License (MIT)                                                         *
+ *                                                                               *
+ * Copyright (c) 2015-2021 aoju.org and other contributors.                      *
+ *                                                                               *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy  *
+ * of this software and associated documentation files (the "Software"), to deal *
+ * in the Software without restriction, including without limitation the rights  *
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell     *
+ * copies of the Software, and to permit persons to whom the Software is         *
+ * furnished to do so, subject to the following conditions:                      *
+ *                                                                               *
+ * The above copyright notice and this permission notice shall be included in    *
+ * all copies or substantial portions of the Software.                           *
+ *                                                                               *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR    *
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,      *
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE   *
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER        *
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, *
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN     *
+ * THE SOFTWARE.                                                                 *
+ *                                                                               *
+ ********************************************************************************/
+package org.aoju.lancia.worker;
+
+import org.aoju.bus.logger.Logger;
+import org.aoju.lancia.Builder;
+import org.aoju.lancia.Variables;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 有界队列的线程池，通过{@link Builder#metricsRegistry()}上报队列长度、等待时间、执行时间和拒绝次数
+ * 队列满了之后按{@link Variables.OverflowPolicy}处理：
+ * BLOCK 提交线程最多等待默认超时时间，在本线程池的线程中提交时直接执行，避免互相等待；
+ * FAIL 抛出{@link RejectedExecutionException}；
+ * SHED 丢弃任务并记录日志，通过submit提交的任务会被取消
+ *
+ * @author Kimi Liu
+ * @version 1.2.8
+ * @since JDK 1.8+
+ */
+public class BoundedExecutor extends ThreadPoolExecutor {
+
+    /**
+     * 当前线程正在执行的线程池
+     */
+    private static final ThreadLocal<BoundedExecutor> CURRENT = new ThreadLocal<>();
+
+    private final String name;
+
+    private final Variables.OverflowPolicy policy;
+
+    /**
+     * @param name      名称，用于指标和日志
+     * @param threads   线程数量，空闲60秒后回收
+     * @param queueSize 队列容量
+     * @param policy    队列满了之后的处理策略
+     * @param factory   线程工厂
+     */
+    public BoundedExecutor(String name, int threads, int queueSize, Variables.OverflowPolicy policy, ThreadFactory factory) {
+        super(threads, threads, 60, TimeUnit.SECONDS, new ArrayBlockingQueue<>(queueSize), factory);
+        this.name = name;
+        this.policy = policy;
+        this.allowCoreThreadTimeOut(true);
+        this.setRejectedExecutionHandler((task, executor) -> this.reject(task));
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        super.execute(new Task(command));
+        Builder.metricsRegistry().executorQueue(this.name, this.getQueue().size());
+    }
+
+    @Override
+    protected void beforeExecute(Thread thread, Runnable task) {
+        CURRENT.set(this);
+        Builder.metricsRegistry().executorQueue(this.name, this.getQueue().size());
+    }
+
+    @Override
+    protected void afterExecute(Runnable task, Throwable error) {
+        CURRENT.remove();
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public Variables.OverflowPolicy getPolicy() {
+        return policy;
+    }
+
+    private void reject(Runnable task) {
+        if (this.isShutdown()) {
+            throw new RejectedExecutionException("Executor " + this.name + " is shut down");
+        }
+        if (this.policy == Variables.OverflowPolicy.BLOCK) {
+            if (CURRENT.get() == this) {
+                task.run();
+                return;
+            }
+            try {
+                if (this.getQueue().offer(task, Variables.DEFAULT_TIMEOUT, TimeUnit.MILLISECONDS)) {
+                    return;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        Builder.metricsRegistry().executorTaskRejected(this.name);
+        if (this.policy == Variables.OverflowPolicy.SHED) {
+            Logger.warn("Executor {} queue is full, discard task", this.name);
+            Runnable command = ((Task) task).command;
+            if (command instanceof Future) {
+                ((Future<?>) command).cancel(false);
+            }
+            return;
+        }
+        throw new RejectedExecutionException("Executor " + this.name + " queue is full");
+    }
+
+    /**
+     * 记录提交时间的任务
+     */
+    private class Task implements Runnable {
+
+        private final Runnable command;
+
+        private final long queued = System.nanoTime();
+
+        Task(Runnable command) {
+            this.command = command;
+        }
+
+        @Override
+        public void run() {
+            long start = System.nanoTime();
+            boolean failed = true;
+            try {
+                this.command.run();
+                failed = failed(this.command);
+            } finally {
+                Builder.metricsRegistry().executorTaskCompleted(name, start - this.queued, System.nanoTime() - start, failed);
+            }
+        }
+
+        /**
+         * submit提交的任务把异常保存在Future中
+         */
+        private boolean failed(Runnable command) {
+            if (!(command instanceof Future) || !((Future<?>) command).isDone()) {
+                return false;
+            }
+            try {
+                ((Future<?>) command).get();
+                return false;
+            } catch (ExecutionException | CancellationException e) {
+                return true;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+
+    }
+
+}
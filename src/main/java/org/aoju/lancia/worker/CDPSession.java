@@ -27,15 +27,15 @@ package org.aoju.lancia.worker;
 
 import com.alibaba.fastjson.JSONObject;
 import org.aoju.bus.core.lang.exception.InstrumentException;
-import org.aoju.bus.core.toolkit.StringKit;
 import org.aoju.lancia.Builder;
 import org.aoju.lancia.Variables;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CountDownLatch;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.ExecutorService;
 
 /**
  * CDPSession实例被用来谈论原始的Chrome Devtools协议
@@ -47,12 +47,16 @@ import java.util.concurrent.TimeUnit;
 public class CDPSession extends EventEmitter {
 
     private final Map<Long, Messages> callbacks = new ConcurrentHashMap<>();
+    /**
+     * 会话事件的分发队列，保证同一会话的事件按顺序处理，不同会话之间并行
+     */
+    private final EventQueue eventQueue = new EventQueue(Builder.eventExecutor());
 
     private final String targetType;
 
     private final String sessionId;
 
-    private Connection connection;
+    private volatile Connection connection;
 
     public CDPSession(Connection connection, String targetType, String sessionId) {
         super();
@@ -62,14 +66,13 @@ public class CDPSession extends EventEmitter {
     }
 
     public void onClosed() {
-        for (Messages callback : callbacks.values()) {
-            callback.setErrorText("Protocol error " + callback.getMethod() + " Target closed.");
-            if (callback.getCountDownLatch() != null) {
-                callback.getCountDownLatch().countDown();
+        for (Long id : callbacks.keySet()) {
+            Messages callback = callbacks.remove(id);
+            if (callback != null) {
+                callback.fail("Protocol error " + callback.getMethod() + " Target closed.");
             }
         }
         connection = null;
-        callbacks.clear();
         this.emit(Variables.Event.CDPSESSION_DISCONNECTED.getName(), null);
     }
 
@@ -84,6 +87,26 @@ public class CDPSession extends EventEmitter {
      * @return 结果
      */
     public JSONObject send(String method, Map<String, Object> params, boolean isBlock, CountDownLatch outLatch, int timeout) {
+        if (isBlock || outLatch != null) {
+            CompletableFuture<JSONObject> future = this.sendAsync(method, params, timeout > 0 ? timeout : Variables.DEFAULT_TIMEOUT, outLatch, null);
+            return isBlock ? Connection.await(future, this.eventQueue) : null;
+        }
+        return this.send(method, params, false);
+    }
+
+    /**
+     * cdpsession send message
+     *
+     * @param method  方法
+     * @param params  参数
+     * @param isBlock 是否阻塞，阻塞会等待结果放回
+     * @return result
+     */
+    public JSONObject send(String method, Map<String, Object> params, boolean isBlock) {
+        if (isBlock) {
+            return Connection.await(this.sendAsync(method, params, 0, null, null), this.eventQueue);
+        }
+        Connection connection = this.connection;
         if (connection == null) {
             throw new InstrumentException("Protocol error (" + method + "): Session closed. Most likely the" + this.targetType + "has been closed.");
         }
@@ -91,71 +114,86 @@ public class CDPSession extends EventEmitter {
         message.setMethod(method);
         message.setParams(params);
         message.setSessionId(this.sessionId);
-        try {
-            if (isBlock) {
-                if (outLatch != null) {
-                    message.setCountDownLatch(outLatch);
-                } else {
-                    CountDownLatch latch = new CountDownLatch(1);
-                    message.setCountDownLatch(latch);
-                }
-                long id = this.connection.rawSend(message, true, this.callbacks);
-                boolean hasResult = message.waitForResult(timeout > 0 ? timeout : Variables.DEFAULT_TIMEOUT, TimeUnit.MILLISECONDS);
-                if (!hasResult) {
-                    throw new InstrumentException("Wait " + method + " for " + (timeout > 0 ? timeout : Variables.DEFAULT_TIMEOUT) + " MILLISECONDS with no response");
-                }
-                if (StringKit.isNotEmpty(message.getErrorText())) {
-                    throw new InstrumentException(message.getErrorText());
-                }
-                return callbacks.remove(id).getResult();
-            } else {
-                if (outLatch != null) {
-                    message.setNeedRemove(true);
-                    message.setCountDownLatch(outLatch);
-                    this.connection.rawSend(message, true, this.callbacks);
-                } else {
-                    this.connection.rawSend(message, false, this.callbacks);
-                }
-            }
-        } catch (Exception e) {
-            throw new RuntimeException(e);
-        }
+        connection.rawSend(message, false, this.callbacks);
         return null;
     }
 
     /**
-     * cdpsession send message
+     * 发送消息并等待结果，结果中的大字段直接解码写入接收器，返回的结果中该字段为空字符串
      *
-     * @param method  方法
-     * @param params  参数
-     * @param isBlock 是否阻塞，阻塞会等待结果放回
+     * @param method 方法
+     * @param params 参数
+     * @param sink   大字段的接收器
      * @return result
      */
-    public JSONObject send(String method, Map<String, Object> params, boolean isBlock) {
+    public JSONObject send(String method, Map<String, Object> params, ResponseSink sink) {
+        return Connection.await(this.sendAsync(method, params, sink, 0), this.eventQueue);
+    }
+
+    /**
+     * 创建一个批量命令，多条互不依赖的命令连续写出，只等待一次往返
+     *
+     * @return Batch
+     */
+    public Batch batch() {
+        return new Batch(this);
+    }
+
+    /**
+     * 异步发送消息到浏览器，调用线程不会被阻塞，默认超时时间为{@link Variables#DEFAULT_TIMEOUT}
+     *
+     * @param method 消息签名中的方法
+     * @param params 消息签名中的参数
+     * @return 在接收线程中完成的future，会话关闭时立即失败
+     */
+    public CompletableFuture<JSONObject> sendAsync(String method, Map<String, Object> params) {
+        return this.sendAsync(method, params, Variables.DEFAULT_TIMEOUT);
+    }
+
+    /**
+     * 异步发送消息到浏览器，调用线程不会被阻塞
+     * future在接收线程中完成，不等待事件队列，响应之前到达的事件可能还没有分发；
+     * 依赖这些事件的调用方应使用同步的send，或自行等待{@link EventQueue#awaitDispatched()}
+     *
+     * @param method  消息签名中的方法
+     * @param params  消息签名中的参数
+     * @param timeout 超时时间(毫秒)，小于等于0表示不超时
+     * @return 在接收线程中完成的future，会话关闭时立即失败
+     */
+    public CompletableFuture<JSONObject> sendAsync(String method, Map<String, Object> params, int timeout) {
+        return this.sendAsync(method, params, timeout, null, null);
+    }
+
+    /**
+     * 异步发送消息到浏览器，结果中的大字段由接收线程取出，在STREAM执行器中解码写入接收器
+     *
+     * @param method  消息签名中的方法
+     * @param params  消息签名中的参数
+     * @param sink    大字段的接收器
+     * @param timeout 超时时间(毫秒)，小于等于0表示不超时
+     * @return 写入接收器之后完成的future，写入失败时future同样失败
+     */
+    public CompletableFuture<JSONObject> sendAsync(String method, Map<String, Object> params, ResponseSink sink, int timeout) {
+        return this.sendAsync(method, params, timeout, null, sink);
+    }
+
+    private CompletableFuture<JSONObject> sendAsync(String method, Map<String, Object> params, int timeout, CountDownLatch outLatch, ResponseSink sink) {
+        Connection connection = this.connection;
         if (connection == null) {
-            throw new InstrumentException("Protocol error (" + method + "): Session closed. Most likely the" + this.targetType + "has been closed.");
+            return Connection.failedFuture("Protocol error (" + method + "): Session closed. Most likely the" + this.targetType + "has been closed.");
         }
         Messages message = new Messages();
         message.setMethod(method);
         message.setParams(params);
         message.setSessionId(this.sessionId);
-        try {
-            if (isBlock) {
-                CountDownLatch latch = new CountDownLatch(1);
-                message.setCountDownLatch(latch);
-                long id = this.connection.rawSend(message, true, this.callbacks);
-                message.waitForResult(0, TimeUnit.MILLISECONDS);
-                if (StringKit.isNotEmpty(message.getErrorText())) {
-                    throw new RuntimeException(message.getErrorText());
-                }
-                return callbacks.remove(id).getResult();
-            } else {
-                this.connection.rawSend(message, false, this.callbacks);
-            }
-        } catch (InterruptedException e) {
-            throw new RuntimeException(e);
+        message.setCountDownLatch(outLatch);
+        message.setSink(sink);
+        CompletableFuture<JSONObject> future = connection.rawSendAsync(message, this.callbacks, timeout);
+        // 发送期间会话被关闭，onClosed可能已经错过这条消息
+        if (this.connection == null && this.callbacks.remove(message.getId()) != null) {
+            message.fail("Protocol error " + method + " Target closed.");
         }
-        return null;
+        return future;
     }
 
     /**
@@ -173,35 +211,46 @@ public class CDPSession extends EventEmitter {
     public void onMessage(JSONObject node) {
         Long idLong = node.getLong(Variables.RECV_MESSAGE_ID_PROPERTY);
         if (idLong != null) {
-            Messages callback = this.callbacks.get(idLong);
+            Messages callback = this.callbacks.remove(idLong);
             if (callback != null) {
-                try {
-                    JSONObject errNode = node.getJSONObject(Variables.RECV_MESSAGE_ERROR_PROPERTY);
-                    if (errNode != null) {
-                        if (callback.getCountDownLatch() != null) {
-                            callback.setErrorText(Builder.createProtocolError(node));
-                        }
-                    } else {
-                        JSONObject result = node.getJSONObject(Variables.RECV_MESSAGE_RESULT_PROPERTY);
-                        callback.setResult(result);
-                    }
-                } finally {
-                    // 最后把callback都移除掉，免得关闭页面后打印错误
-                    if (callback.getNeedRemove()) {
-                        this.callbacks.remove(idLong);
-                    }
-                    // 放行等待的线程
-                    if (callback.getCountDownLatch() != null) {
-                        callback.getCountDownLatch().countDown();
-                        callback.setCountDownLatch(null);
-                    }
+                JSONObject errNode = node.getJSONObject(Variables.RECV_MESSAGE_ERROR_PROPERTY);
+                if (errNode != null) {
+                    callback.fail(Builder.createProtocolError(node));
+                } else {
+                    callback.complete(node.getJSONObject(Variables.RECV_MESSAGE_RESULT_PROPERTY));
                 }
             }
         } else {
             JSONObject paramsNode = node.getJSONObject(Variables.RECV_MESSAGE_PARAMS_PROPERTY);
             String method = node.getString(Variables.RECV_MESSAGE_METHOD_PROPERTY);
             if (method != null) {
-                this.emit(method, paramsNode);
+                this.eventQueue.execute(() -> this.emit(method, paramsNode));
+            }
+        }
+    }
+
+    /**
+     * 处理连接转发过来的消息，没有等待的回调也没有监听器时不解析消息体
+     *
+     * @param envelope 消息信封
+     */
+    void onMessage(Envelope envelope) {
+        Long idLong = envelope.getId();
+        if (idLong != null) {
+            Messages callback = this.callbacks.remove(idLong);
+            if (callback != null) {
+                JSONObject node = envelope.body();
+                JSONObject errNode = node.getJSONObject(Variables.RECV_MESSAGE_ERROR_PROPERTY);
+                if (errNode != null) {
+                    callback.fail(Builder.createProtocolError(node));
+                } else {
+                    callback.complete(node.getJSONObject(Variables.RECV_MESSAGE_RESULT_PROPERTY));
+                }
+            }
+        } else {
+            String method = envelope.getMethod();
+            if (method != null && this.hasListeners(method)) {
+                this.eventQueue.execute(() -> this.emit(method, envelope.body().getJSONObject(Variables.RECV_MESSAGE_PARAMS_PROPERTY)));
             }
         }
     }
@@ -210,8 +259,33 @@ public class CDPSession extends EventEmitter {
         return connection;
     }
 
+    /**
+     * 所属连接上的执行服务，会话关闭后使用内置的
+     *
+     * @param type 用途
+     * @return 执行服务
+     */
+    public ExecutorService executor(Variables.ExecutorType type) {
+        Connection connection = this.connection;
+        return connection != null ? connection.executor(type) : Builder.executor(type);
+    }
+
+    @Override
+    protected ExecutorService listenerExecutor() {
+        return this.executor(Variables.ExecutorType.LISTENER);
+    }
+
     public String getSessionId() {
         return sessionId;
     }
 
+    /**
+     * 会话的事件队列，可以查看队列深度和丢弃的事件数
+     *
+     * @return 事件队列
+     */
+    public EventQueue getEventQueue() {
+        return eventQueue;
+    }
+
 }
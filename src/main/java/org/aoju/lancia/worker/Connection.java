@@ -27,6 +27,7 @@ package org.aoju.lancia.worker;
 
 import com.alibaba.fastjson.JSON;
 import com.alibaba.fastjson.JSONObject;
+import org.aoju.bus.core.lang.Charset;
 import org.aoju.bus.core.lang.exception.InstrumentException;
 import org.aoju.bus.core.toolkit.StringKit;
 import org.aoju.bus.logger.Logger;
@@ -36,9 +37,7 @@ import org.aoju.lancia.kernel.page.TargetInfo;
 
 import java.util.HashMap;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.CountDownLatch;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Consumer;
 
@@ -52,6 +51,19 @@ import java.util.function.Consumer;
 public class Connection extends EventEmitter implements Consumer<String> {
 
     private static final AtomicLong lastId = new AtomicLong(0);
+    /**
+     * 所有连接共享的超时定时器，代替每个调用方各自阻塞等待
+     */
+    private static final ScheduledThreadPoolExecutor TIMER = new ScheduledThreadPoolExecutor(1, r -> {
+        Thread thread = new Thread(r, "protocol-timer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    static {
+        TIMER.setRemoveOnCancelPolicy(true);
+    }
+
     /**
      * URL
      */
@@ -64,17 +76,27 @@ public class Connection extends EventEmitter implements Consumer<String> {
     private final Map<Long, Messages> callbacks = new ConcurrentHashMap<>();// 并发
 
     private final Map<String, CDPSession> sessions = new ConcurrentHashMap<>();
+    /**
+     * 浏览器级别事件的分发队列，事件处理器不在读取线程中执行
+     */
+    private final EventQueue eventQueue = new EventQueue(Builder.eventExecutor());
 
-    private boolean closed;
+    private volatile boolean closed;
+
+    private volatile MetricsRegistry metrics = Builder.metricsRegistry();
+
+    /**
+     * 注入到这个连接的执行服务，没有注入的用途使用{@link Builder#executor(Variables.ExecutorType)}
+     */
+    private final Map<Variables.ExecutorType, ExecutorService> executors = new ConcurrentHashMap<>();
 
     public Connection(String url, Transport transport, int delay) {
         super();
         this.url = url;
         this.transport = transport;
         this.delay = delay;
-        if (this.transport instanceof SocketTransport) {
-            ((SocketTransport) this.transport).addConsumer(this);
-        }
+        this.transport.addConsumer(this);
+        this.transport.addCloseListener(this::onClose);
     }
 
     /**
@@ -88,59 +110,51 @@ public class Connection extends EventEmitter implements Consumer<String> {
     }
 
     public JSONObject send(String method, Map<String, Object> params, boolean isWait) {
-        Messages message = new Messages();
-        message.setMethod(method);
-        message.setParams(params);
-        try {
-            if (isWait) {
-                message.setCountDownLatch(new CountDownLatch(1));
-                long id = rawSend(message, true, this.callbacks);
-                message.waitForResult(0, TimeUnit.MILLISECONDS);
-                if (StringKit.isNotEmpty(message.getErrorText())) {
-                    throw new InstrumentException(message.getErrorText());
-                }
-                return callbacks.remove(id).getResult();
-            } else {
-                rawSend(message, false, this.callbacks);
-                return null;
-            }
-        } catch (InterruptedException e) {
-            throw new InstrumentException(e);
-        }
+        return this.send(method, params, isWait, null);
     }
 
     public JSONObject send(String method, Map<String, Object> params, boolean isWait, CountDownLatch outLatch) {
         Messages message = new Messages();
         message.setMethod(method);
         message.setParams(params);
-        try {
-            if (isWait) {
-                if (outLatch != null) {
-                    message.setCountDownLatch(outLatch);
-                } else {
-                    message.setCountDownLatch(new CountDownLatch(1));
-                }
-                long id = this.rawSend(message, true, this.callbacks);
-                message.waitForResult(0, TimeUnit.MILLISECONDS);
-                if (StringKit.isNotEmpty(message.getErrorText())) {
-                    throw new InstrumentException(message.getErrorText());
-                }
-                return callbacks.remove(id).getResult();
-            } else {
-                if (outLatch != null) {
-                    message.setNeedRemove(true);
-                    message.setCountDownLatch(outLatch);
-                    this.rawSend(message, true, this.callbacks);
-                } else {
-                    this.rawSend(message, false, this.callbacks);
-                }
-            }
+        if (isWait || outLatch != null) {
+            message.setCountDownLatch(outLatch);
+            CompletableFuture<JSONObject> future = this.rawSendAsync(message, this.callbacks, 0);
+            return isWait ? await(future, this.eventQueue) : null;
+        }
+        this.rawSend(message, false, this.callbacks);
+        return null;
+    }
 
+    /**
+     * 异步发送消息到浏览器，调用线程不会被阻塞，默认超时时间为{@link Variables#DEFAULT_TIMEOUT}
+     *
+     * @param method 消息签名中的方法
+     * @param params 消息签名中的参数
+     * @return 在接收线程中完成的future
+     */
+    public CompletableFuture<JSONObject> sendAsync(String method, Map<String, Object> params) {
+        return this.sendAsync(method, params, Variables.DEFAULT_TIMEOUT);
+    }
 
-        } catch (InterruptedException e) {
-            throw new InstrumentException(e);
+    /**
+     * 异步发送消息到浏览器，调用线程不会被阻塞
+     * future在接收线程中完成，不等待事件队列，响应之前到达的事件可能还没有分发；
+     * 依赖这些事件的调用方应使用同步的send，或自行等待{@link EventQueue#awaitDispatched()}
+     *
+     * @param method  消息签名中的方法
+     * @param params  消息签名中的参数
+     * @param timeout 超时时间(毫秒)，小于等于0表示不超时
+     * @return 在接收线程中完成的future
+     */
+    public CompletableFuture<JSONObject> sendAsync(String method, Map<String, Object> params, int timeout) {
+        if (this.closed) {
+            return failedFuture("Protocol error " + method + " Target closed.");
         }
-        return null;
+        Messages message = new Messages();
+        message.setMethod(method);
+        message.setParams(params);
+        return this.rawSendAsync(message, this.callbacks, timeout);
     }
 
     /**
@@ -155,12 +169,108 @@ public class Connection extends EventEmitter implements Consumer<String> {
         if (putCallback) {
             callbacks.put(id, message);
         }
-        String sendMsg = JSON.toJSONString(message);
-        transport.send(sendMsg);
-        Logger.trace("SEND -> " + sendMsg);
+        if (message.getSink() != null) {
+            ResponseSink.register(id, message.getSink());
+        }
+        // fastjson在线程内复用的缓冲区中序列化，直接得到UTF-8字节
+        byte[] payload = JSON.toJSONBytes(message);
+        this.metrics.bytesSent(payload.length);
+        // 传输会原地给数组加掩码，日志要在发送之前输出
+        if (Logger.get().isTrace()) {
+            Logger.trace("SEND -> {}", new String(payload, Charset.UTF_8));
+        }
+        try {
+            transport.send(payload, message.getSessionId());
+        } catch (RuntimeException e) {
+            // 发送队列满(FAIL/SHED)或连接已关闭，响应不会到达，撤销登记
+            callbacks.remove(id);
+            ResponseSink.unregister(id);
+            throw e;
+        }
         return id;
     }
 
+    /**
+     * 发送消息并登记回调，由接收线程完成future，超时由共享的定时器统一处理
+     *
+     * @param message   发送的消息内容
+     * @param callbacks 对应的callbacks
+     * @param timeout   超时时间(毫秒)，小于等于0表示不超时
+     * @return 在接收线程中完成的future
+     */
+    public CompletableFuture<JSONObject> rawSendAsync(Messages message, Map<Long, Messages> callbacks, int timeout) {
+        CompletableFuture<JSONObject> future = new CompletableFuture<>();
+        message.setFuture(future);
+        MetricsRegistry metrics = this.metrics;
+        if (metrics != MetricsRegistry.NONE) {
+            String sessionId = message.getSessionId();
+            String method = message.getMethod();
+            long start = System.nanoTime();
+            metrics.commandStarted(sessionId, method);
+            future.whenComplete((result, error) -> metrics.commandCompleted(sessionId, method, System.nanoTime() - start, error != null));
+        }
+        try {
+            long id = this.rawSend(message, true, callbacks);
+            if (timeout > 0 && !future.isDone()) {
+                message.setDeadline(TIMER.schedule(() -> {
+                    if (callbacks.remove(id) != null) {
+                        message.fail("Wait " + message.getMethod() + " for " + timeout + " MILLISECONDS with no response");
+                    }
+                }, timeout, TimeUnit.MILLISECONDS));
+            }
+        } catch (RuntimeException e) {
+            callbacks.remove(message.getId());
+            message.fail("Protocol error " + message.getMethod() + ": " + e.getMessage());
+        }
+        ResponseSink sink = message.getSink();
+        if (sink != null) {
+            // 超时或连接关闭时响应不会到达，需要撤销登记
+            future.whenComplete((result, error) -> ResponseSink.unregister(message.getId()));
+            // 输出流可能很慢(例如渲染服务的HTTP响应)，写入不能占用接收线程
+            return sink.writeAsync(future, message.getMethod(), this.executor(Variables.ExecutorType.STREAM));
+        }
+        return future;
+    }
+
+    /**
+     * 阻塞等待future的结果，供同步发送的方法使用
+     *
+     * @param future 发送消息返回的future
+     * @return 结果
+     */
+    static <T> T await(CompletableFuture<T> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InstrumentException(e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new InstrumentException(e.getCause());
+        }
+    }
+
+    /**
+     * 阻塞等待future的结果，再等待响应之前收到的事件分发完，调用方看到的顺序与浏览器发出的顺序一致
+     *
+     * @param future 发送消息返回的future
+     * @param events 响应所属会话的事件队列
+     * @return 结果
+     */
+    static <T> T await(CompletableFuture<T> future, EventQueue events) {
+        T result = await(future);
+        events.awaitDispatched();
+        return result;
+    }
+
+    static CompletableFuture<JSONObject> failedFuture(String errorText) {
+        CompletableFuture<JSONObject> future = new CompletableFuture<>();
+        future.completeExceptionally(new InstrumentException(errorText));
+        return future;
+    }
+
     /**
      * recevie message from browser by websocket
      *
@@ -175,23 +285,24 @@ public class Connection extends EventEmitter implements Consumer<String> {
                 Logger.error("slowMo browser Fail:", e);
             }
         }
-        Logger.trace("<- RECV " + message);
+        Logger.trace("<- RECV {}", message);
         try {
             if (StringKit.isNotEmpty(message)) {
-                JSONObject readTree = JSON.parseObject(message);
-                String methodNode = readTree.getString(Variables.RECV_MESSAGE_METHOD_PROPERTY);
-                String method = null;
-                if (methodNode != null) {
-                    method = methodNode;
+                this.metrics.bytesReceived(message.length());
+                // 只扫描信封，消息体在有人需要时才解析
+                Envelope envelope = Envelope.scan(message);
+                String method = envelope.getMethod();
+                if (method != null && envelope.getId() == null) {
+                    this.metrics.eventReceived(method);
                 }
                 if ("Target.attachedToTarget".equals(method)) {// attached to target -> page attached to browser
-                    JSONObject paramsNode = readTree.getJSONObject(Variables.RECV_MESSAGE_PARAMS_PROPERTY);
+                    JSONObject paramsNode = envelope.body().getJSONObject(Variables.RECV_MESSAGE_PARAMS_PROPERTY);
                     String sessionId = paramsNode.getString(Variables.RECV_MESSAGE_SESSION_ID_PROPERTY);
                     String typeNode = paramsNode.getJSONObject(Variables.RECV_MESSAGE_TARGETINFO_PROPERTY).getString(Variables.RECV_MESSAGE_TYPE_PROPERTY);
                     CDPSession cdpSession = new CDPSession(this, typeNode, sessionId);
                     sessions.put(sessionId, cdpSession);
                 } else if ("Target.detachedFromTarget".equals(method)) {// 页面与浏览器脱离关系
-                    JSONObject paramsNode = readTree.getJSONObject(Variables.RECV_MESSAGE_PARAMS_PROPERTY);
+                    JSONObject paramsNode = envelope.body().getJSONObject(Variables.RECV_MESSAGE_PARAMS_PROPERTY);
                     String sessionId = paramsNode.getString(Variables.RECV_MESSAGE_SESSION_ID_PROPERTY);
                     CDPSession cdpSession = sessions.get(sessionId);
                     if (cdpSession != null) {
@@ -199,44 +310,26 @@ public class Connection extends EventEmitter implements Consumer<String> {
                         sessions.remove(sessionId);
                     }
                 }
-                String objectSessionId = readTree.getString(Variables.RECV_MESSAGE_SESSION_ID_PROPERTY);
-                Long objectId = readTree.getLong(Variables.RECV_MESSAGE_ID_PROPERTY);
+                String objectSessionId = envelope.getSessionId();
+                Long objectId = envelope.getId();
                 if (objectSessionId != null) {//cdpsession消息，当然cdpsession来处理
                     CDPSession cdpSession = this.sessions.get(objectSessionId);
                     if (cdpSession != null) {
-                        cdpSession.onMessage(readTree);
+                        cdpSession.onMessage(envelope);
                     }
                 } else if (objectId != null) {// long类型的id,说明属于这次发送消息后接受的回应
-                    long id = objectId;
-                    Messages callback = this.callbacks.get(id);
+                    Messages callback = this.callbacks.remove(objectId);
                     if (callback != null) {
-                        try {
-                            JSONObject error = readTree.getJSONObject(Variables.RECV_MESSAGE_ERROR_PROPERTY);
-                            if (error != null) {
-                                if (callback.getCountDownLatch() != null) {
-                                    callback.setErrorText(Builder.createProtocolError(readTree));
-                                }
-                            } else {
-                                JSONObject result = readTree.getJSONObject(Variables.RECV_MESSAGE_RESULT_PROPERTY);
-                                callback.setResult(result);
-                            }
-                        } finally {
-
-                            // 最后把callback都移除掉，免得关闭页面后打印错误
-                            if (callback.getNeedRemove()) {
-                                this.callbacks.remove(id);
-                            }
-
-                            // 放行等待的线程
-                            if (callback.getCountDownLatch() != null) {
-                                callback.getCountDownLatch().countDown();
-                                callback.setCountDownLatch(null);
-                            }
+                        JSONObject readTree = envelope.body();
+                        JSONObject error = readTree.getJSONObject(Variables.RECV_MESSAGE_ERROR_PROPERTY);
+                        if (error != null) {
+                            callback.fail(Builder.createProtocolError(readTree));
+                        } else {
+                            callback.complete(readTree.getJSONObject(Variables.RECV_MESSAGE_RESULT_PROPERTY));
                         }
                     }
-                } else {// 是我们监听的事件，把它事件
-                    JSONObject paramsNode = readTree.getJSONObject(Variables.RECV_MESSAGE_PARAMS_PROPERTY);
-                    this.emit(method, paramsNode);
+                } else if (method != null && this.hasListeners(method)) {// 是我们监听的事件，把它事件
+                    this.eventQueue.execute(() -> this.emit(method, envelope.body().getJSONObject(Variables.RECV_MESSAGE_PARAMS_PROPERTY)));
                 }
             }
         } catch (Exception e) {
@@ -258,6 +351,49 @@ public class Connection extends EventEmitter implements Consumer<String> {
         return this.sessions.get(result.getString(Variables.RECV_MESSAGE_SESSION_ID_PROPERTY));
     }
 
+    public MetricsRegistry getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * 替换这个连接的指标采集，只影响之后发送的命令
+     *
+     * @param metrics 指标采集
+     */
+    public void setMetrics(MetricsRegistry metrics) {
+        this.metrics = metrics == null ? MetricsRegistry.NONE : metrics;
+    }
+
+    /**
+     * 这个连接以及其上会话使用的执行服务
+     *
+     * @param type 用途
+     * @return 执行服务
+     */
+    public ExecutorService executor(Variables.ExecutorType type) {
+        ExecutorService executor = this.executors.get(type);
+        return executor != null ? executor : Builder.executor(type);
+    }
+
+    /**
+     * 为这个连接注入执行服务，由调用方负责关闭
+     *
+     * @param type     用途
+     * @param executor 执行服务，为null时恢复为内置的
+     */
+    public void setExecutor(Variables.ExecutorType type, ExecutorService executor) {
+        if (executor == null) {
+            this.executors.remove(type);
+        } else {
+            this.executors.put(type, executor);
+        }
+    }
+
+    @Override
+    protected ExecutorService listenerExecutor() {
+        return this.executor(Variables.ExecutorType.LISTENER);
+    }
+
     public String url() {
         return this.url;
     }
@@ -284,13 +420,12 @@ public class Connection extends EventEmitter implements Consumer<String> {
         if (this.closed)
             return;
         this.closed = true;
-        for (Messages callback : this.callbacks.values()) {
-            callback.setErrorText("Protocol error " + callback.getMethod() + " Target closed.");
-            if (callback.getCountDownLatch() != null) {
-                callback.getCountDownLatch().countDown();
+        for (Long id : this.callbacks.keySet()) {
+            Messages callback = this.callbacks.remove(id);
+            if (callback != null) {
+                callback.fail("Protocol error " + callback.getMethod() + " Target closed.");
             }
         }
-        this.callbacks.clear();
         for (CDPSession session : this.sessions.values())
             session.onClosed();
         this.sessions.clear();
@@ -301,5 +436,9 @@ public class Connection extends EventEmitter implements Consumer<String> {
         return closed;
     }
 
+    public EventQueue getEventQueue() {
+        return eventQueue;
+    }
+
 }
 
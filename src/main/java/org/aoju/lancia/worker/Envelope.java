@@ -0,0 +1,226 @@
+/*********************************************************************************
+ *                                                                               *
+ * The MIT License (MIT)                                                         *
+ *                                                                               *
+ * Copyright (c) 2015-2021 aoju.org and other contributors.                      *
+ *                                                                               *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy  *
+ * of this software and associated documentation files (the "Software"), to deal *
+ * in the Software without restriction, including without limitation the rights  *
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell     *
+ * copies of the Software, and to permit persons to whom the Software is         *
+ * furnished to do so, subject to the following conditions:                      *
+ *                                                                               *
+ * The above copyright notice and this permission notice shall be included in    *
+ * all copies or substantial portions of the Software.                           *
+ *                                                                               *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR    *
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,      *
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE   *
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER        *
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, *
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN     *
+ * THE SOFTWARE.                                                                 *
+ *                                                                               *
+ ********************************************************************************/
+package org.aoju.lancia.worker;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONObject;
+import org.aoju.lancia.Variables;
+
+/**
+ * 收到的协议消息的信封，只扫描顶层的id、method和sessionId，
+ * 消息体在真正需要时(有等待的回调或者有监听器)才完整解析
+ *
+ * @author Kimi Liu
+ * @version 1.2.8
+ * @since JDK 1.8+
+ */
+class Envelope {
+
+    private final String text;
+
+    private Long id;
+
+    private String method;
+
+    private String sessionId;
+
+    private JSONObject body;
+
+    private Envelope(String text) {
+        this.text = text;
+    }
+
+    /**
+     * 扫描消息的顶层字段，字符串只查找结束引号，不做反转义，嵌套的对象和数组只计算层级
+     *
+     * @param text 原始消息
+     * @return 信封
+     */
+    public static Envelope scan(String text) {
+        Envelope envelope = new Envelope(text);
+        if (!envelope.scan()) {
+            // 不是预期的格式，退回完整解析
+            JSONObject body = envelope.body();
+            envelope.id = body.getLong(Variables.RECV_MESSAGE_ID_PROPERTY);
+            envelope.method = body.getString(Variables.RECV_MESSAGE_METHOD_PROPERTY);
+            envelope.sessionId = body.getString(Variables.RECV_MESSAGE_SESSION_ID_PROPERTY);
+        }
+        return envelope;
+    }
+
+    private boolean scan() {
+        int length = text.length();
+        int depth = 0;
+        int i = 0;
+        while (i < length) {
+            char c = text.charAt(i);
+            if (c == '"') {
+                int end = endOfString(i);
+                if (end < 0) {
+                    return false;
+                }
+                if (depth == 1) {
+                    int colon = skipWhitespace(end + 1);
+                    if (colon < length && text.charAt(colon) == ':') {
+                        int value = skipWhitespace(colon + 1);
+                        int next = readField(i + 1, end, value);
+                        if (next < 0) {
+                            return false;
+                        }
+                        if (next > value) {
+                            i = next;
+                            continue;
+                        }
+                    }
+                }
+                i = end + 1;
+                continue;
+            }
+            if (c == '{' || c == '[') {
+                depth++;
+            } else if (c == '}' || c == ']') {
+                depth--;
+            }
+            i++;
+        }
+        return depth == 0;
+    }
+
+    /**
+     * 读取关心的字段值
+     *
+     * @param keyStart 键的起始位置
+     * @param keyEnd   键的结束引号位置
+     * @param value    值的起始位置
+     * @return 值之后的位置，不关心的字段返回value，格式不对返回-1
+     */
+    private int readField(int keyStart, int keyEnd, int value) {
+        int keyLength = keyEnd - keyStart;
+        if (isKey(keyStart, keyLength, Variables.RECV_MESSAGE_ID_PROPERTY)) {
+            int end = value;
+            if (end < text.length() && text.charAt(end) == '-') {
+                end++;
+            }
+            while (end < text.length() && Character.isDigit(text.charAt(end))) {
+                end++;
+            }
+            if (end == value) {
+                return -1;
+            }
+            this.id = Long.parseLong(text.substring(value, end));
+            return end;
+        }
+        if (isKey(keyStart, keyLength, Variables.RECV_MESSAGE_METHOD_PROPERTY)) {
+            int end = readString(value);
+            if (end > 0) {
+                this.method = text.substring(value + 1, end);
+            }
+            return end < 0 ? -1 : end + 1;
+        }
+        if (isKey(keyStart, keyLength, Variables.RECV_MESSAGE_SESSION_ID_PROPERTY)) {
+            int end = readString(value);
+            if (end > 0) {
+                this.sessionId = text.substring(value + 1, end);
+            }
+            return end < 0 ? -1 : end + 1;
+        }
+        return value;
+    }
+
+    /**
+     * 读取不含转义的字符串值
+     *
+     * @return 结束引号的位置，不是字符串或含有转义时返回-1
+     */
+    private int readString(int start) {
+        if (start >= text.length() || text.charAt(start) != '"') {
+            return -1;
+        }
+        for (int i = start + 1; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '"') {
+                return i;
+            }
+            if (c == '\\') {
+                return -1;
+            }
+        }
+        return -1;
+    }
+
+    private boolean isKey(int start, int length, String key) {
+        return length == key.length() && text.regionMatches(start, key, 0, length);
+    }
+
+    private int endOfString(int start) {
+        int end = start;
+        while (true) {
+            end = text.indexOf('"', end + 1);
+            if (end < 0) {
+                return -1;
+            }
+            int backslashes = 0;
+            for (int i = end - 1; i > start && text.charAt(i) == '\\'; i--) {
+                backslashes++;
+            }
+            if ((backslashes & 1) == 0) {
+                return end;
+            }
+        }
+    }
+
+    private int skipWhitespace(int i) {
+        while (i < text.length() && Character.isWhitespace(text.charAt(i))) {
+            i++;
+        }
+        return i;
+    }
+
+    /**
+     * 完整解析消息，只解析一次
+     *
+     * @return 消息体
+     */
+    public JSONObject body() {
+        if (body == null) {
+            body = JSON.parseObject(text);
+        }
+        return body;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public String getMethod() {
+        return method;
+    }
+
+    public String getSessionId() {
+        return sessionId;
+    }
+
+}
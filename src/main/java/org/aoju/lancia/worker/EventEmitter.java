@@ -28,16 +28,19 @@ package org.aoju.lancia.worker;
 import com.alibaba.fastjson.JSON;
 import com.alibaba.fastjson.JSONObject;
 import org.aoju.bus.core.lang.Assert;
-import org.aoju.bus.core.toolkit.CollKit;
 import org.aoju.bus.logger.Logger;
 import org.aoju.lancia.Builder;
+import org.aoju.lancia.Variables;
 
 import java.io.IOException;
 import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.Map;
-import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.atomic.AtomicInteger;
 
 /**
@@ -49,9 +52,38 @@ import java.util.concurrent.atomic.AtomicInteger;
  */
 public class EventEmitter implements Event {
 
-    private final Map<String, Set<BrowserListener>> listenerMap = new ConcurrentHashMap<>();
+    private static final BrowserListener[] EMPTY = new BrowserListener[0];
+
+    /**
+     * 每个事件的监听器快照，修改时复制，分发时直接遍历数组
+     */
+    private final Map<String, BrowserListener[]> listenerMap = new ConcurrentHashMap<>();
     private final AtomicInteger listenerCount = new AtomicInteger(0);
 
+    /**
+     * 解析监听器需要的事件类型，优先取监听器类的泛型参数，其次是{@link BrowserListener#getResolveType()}，都没有则为JSONObject
+     *
+     * @param listener 监听器
+     * @return 事件类型
+     */
+    private static Class<?> resolveType(BrowserListener listener) {
+        Type genericSuperclass = listener.getClass().getGenericSuperclass();
+        if (genericSuperclass instanceof ParameterizedType) {
+            Type[] actualTypeArguments = ((ParameterizedType) genericSuperclass).getActualTypeArguments();
+            if (actualTypeArguments.length == 1) {
+                Type type = actualTypeArguments[0];
+                if (type instanceof ParameterizedType) {
+                    type = ((ParameterizedType) type).getRawType();
+                }
+                if (type instanceof Class) {
+                    return (Class<?>) type;
+                }
+            }
+        }
+        Class<?> resolveType = listener.getResolveType();
+        return resolveType != null ? resolveType : JSONObject.class;
+    }
+
     /**
      * 也是监听事件，不过这个方法只要在本项目内部使用，如果你想要自己监听事件，请使用{@link EventEmitter#on(String, EventHandler)}
      *
@@ -68,15 +100,18 @@ public class EventEmitter implements Event {
             return this;
         }
         listener.setIsOnce(isOnce);
-        Set<BrowserListener> browserListeners = this.listenerMap.get(method);
-        if (browserListeners == null) {
-            Set<BrowserListener> listeners = Builder.getConcurrentSet();
-            this.listenerMap.putIfAbsent(method, listeners);
-            listeners.add(listener);
-        } else {
-            browserListeners.add(listener);
-        }
+        // 注册时解析一次事件类型，分发时不再反射
+        listener.setResolveType(resolveType(listener));
+        this.listenerMap.compute(method, (key, listeners) -> {
+            if (listeners == null) {
+                return new BrowserListener[]{listener};
+            }
+            BrowserListener[] copy = Arrays.copyOf(listeners, listeners.length + 1);
+            copy[listeners.length] = listener;
+            return copy;
+        });
         listenerCount.incrementAndGet();
+        this.listenerAdded(method);
         return this;
     }
 
@@ -89,58 +124,159 @@ public class EventEmitter implements Event {
      */
     @Override
     public Event removeListener(String method, Listener<?> listener) {
-        Set<BrowserListener> listeners = this.listenerMap.get(method);
-        if (CollKit.isNotEmpty(listeners)) {
-            listeners.remove(listener);
-            listenerCount.decrementAndGet();
+        boolean[] removed = new boolean[1];
+        this.listenerMap.computeIfPresent(method, (key, listeners) -> {
+            for (int i = 0; i < listeners.length; i++) {
+                if (listeners[i] == listener) {
+                    listenerCount.decrementAndGet();
+                    removed[0] = true;
+                    return remove(listeners, i);
+                }
+            }
+            return listeners;
+        });
+        if (removed[0]) {
+            this.listenerRemoved(method);
         }
         return this;
     }
 
+    /**
+     * 移除所有事件的全部监听器
+     */
+    public void removeAllListeners() {
+        for (String method : new ArrayList<>(this.listenerMap.keySet())) {
+            BrowserListener[] listeners = this.listenerMap.remove(method);
+            if (listeners == null) {
+                continue;
+            }
+            listenerCount.addAndGet(-listeners.length);
+            for (int i = 0; i < listeners.length; i++) {
+                this.listenerRemoved(method);
+            }
+        }
+    }
+
+    /**
+     * 监听器注册之后调用，子类可以据此按需开启协议域
+     *
+     * @param method 事件名称
+     */
+    protected void listenerAdded(String method) {
+    }
+
+    /**
+     * 监听器移除之后调用，每移除一个监听器调用一次
+     *
+     * @param method 事件名称
+     */
+    protected void listenerRemoved(String method) {
+    }
+
+    /**
+     * 执行异步监听器的执行服务，子类可以换成所属连接上注入的
+     *
+     * @return 执行服务
+     */
+    protected ExecutorService listenerExecutor() {
+        return Builder.executor(Variables.ExecutorType.LISTENER);
+    }
+
+    private BrowserListener[] remove(BrowserListener[] listeners, int index) {
+        if (listeners.length == 1) {
+            return null;
+        }
+        BrowserListener[] copy = new BrowserListener[listeners.length - 1];
+        System.arraycopy(listeners, 0, copy, 0, index);
+        System.arraycopy(listeners, index + 1, copy, index, listeners.length - index - 1);
+        return copy;
+    }
+
+    /**
+     * 移除已经失效的监听器(一次性监听器执行后)
+     */
+    private void purge(String method) {
+        int[] removed = new int[1];
+        this.listenerMap.computeIfPresent(method, (key, listeners) -> {
+            int available = 0;
+            for (BrowserListener listener : listeners) {
+                if (listener.getIsAvaliable()) {
+                    available++;
+                }
+            }
+            if (available == listeners.length) {
+                return listeners;
+            }
+            listenerCount.addAndGet(available - listeners.length);
+            removed[0] = listeners.length - available;
+            if (available == 0) {
+                return null;
+            }
+            BrowserListener[] copy = new BrowserListener[available];
+            int i = 0;
+            for (BrowserListener listener : listeners) {
+                if (listener.getIsAvaliable()) {
+                    copy[i++] = listener;
+                }
+            }
+            return copy;
+        });
+        for (int i = 0; i < removed[0]; i++) {
+            this.listenerRemoved(method);
+        }
+    }
+
     @Override
     public void emit(String method, Object params) {
         Assert.notNull(method, "method must not be null");
-        Set<BrowserListener> listeners = this.listenerMap.get(method);
-        if (CollKit.isEmpty(listeners))
+        BrowserListener[] listeners = this.listenerMap.getOrDefault(method, EMPTY);
+        if (listeners.length == 0)
             return;
+        boolean purge = false;
+        // 同一个事件对每种目标类型只转换一次
+        Class<?> eventType = null;
+        Object event = null;
+        Map<Class<?>, Object> converted = null;
         for (BrowserListener listener : listeners) {
             if (!listener.getIsAvaliable()) {
-                listeners.remove(listener);
-                listenerCount.decrementAndGet();
+                purge = true;
                 continue;
             }
             if (listener.getIsOnce()) {
-                listeners.remove(listener);
-                listenerCount.decrementAndGet();
+                listener.setIsAvaliable(false);
+                purge = true;
             }
-            try {
-                Object event;
-                if (params != null) {
-                    Class<?> resolveType = null;
-                    Type genericSuperclass = listener.getClass().getGenericSuperclass();
-                    if (genericSuperclass instanceof ParameterizedType) {
-                        ParameterizedType parameterizedType = (ParameterizedType) genericSuperclass;
-                        Type[] actualTypeArguments = parameterizedType.getActualTypeArguments();
-                        if (actualTypeArguments.length == 1) {
-                            resolveType = (Class) actualTypeArguments[0];
-                        }
-                    } else {
-                        resolveType = listener.getResolveType();
+            Object payload;
+            if (params instanceof JSONObject) {
+                Class<?> type = listener.getResolveType();
+                if (type == eventType) {
+                    payload = event;
+                } else if (converted != null && converted.containsKey(type)) {
+                    payload = converted.get(type);
+                } else {
+                    try {
+                        payload = readJsonObject(type, (JSONObject) params);
+                    } catch (IOException | RuntimeException e) {
+                        Logger.error("publish event error:", e);
+                        continue;
                     }
-
-                    if (JSONObject.class.isAssignableFrom(params.getClass())) {
-                        event = readJsonObject(resolveType, (JSONObject) params);
+                    if (eventType == null) {
+                        eventType = type;
+                        event = payload;
                     } else {
-                        event = params;
+                        if (converted == null) {
+                            converted = new HashMap<>(4);
+                        }
+                        converted.put(type, payload);
                     }
-                } else {
-                    event = null;
                 }
-                invokeListener(listener, event);
-            } catch (IOException e) {
-                Logger.error("publish event error:", e);
-                return;
+            } else {
+                payload = params;
             }
+            invokeListener(listener, payload);
+        }
+        if (purge) {
+            purge(method);
         }
     }
 
@@ -153,7 +289,7 @@ public class EventEmitter implements Event {
     private void invokeListener(BrowserListener listener, Object event) {
         try {
             if (listener.getIsSync()) {
-                Builder.commonExecutor().submit(() -> {
+                this.listenerExecutor().submit(() -> {
                     listener.onBrowserEvent(event);
                 });
             } else {
@@ -187,11 +323,8 @@ public class EventEmitter implements Event {
     }
 
     public int getListenerCount(String method) {
-        Set<BrowserListener> listeners = this.listenerMap.get(method);
+        BrowserListener[] listeners = this.listenerMap.getOrDefault(method, EMPTY);
         int i = 0;
-        if (CollKit.isEmpty(listeners)) {
-            return 0;
-        }
         for (BrowserListener listener : listeners) {
             if (!listener.getIsAvaliable()) {
                 continue;
@@ -201,6 +334,16 @@ public class EventEmitter implements Event {
         return i;
     }
 
+    /**
+     * 是否有该事件的监听器，没有监听器的事件可以跳过消息体的解析
+     *
+     * @param method 事件名称
+     * @return true表示有监听器
+     */
+    public boolean hasListeners(String method) {
+        return this.listenerMap.containsKey(method);
+    }
+
     /**
      * 监听事件，可用于自定义事件监听,用户监听的事件都是在别的线程中异步执行的
      *
@@ -0,0 +1,209 @@
+/*********************************************************************************
+ *                                                                               *
+ * The MIT License (MIT)                                                         *
+ *                                                                               *
+ * Copyright (c) 2015-2021 aoju.org and other contributors.                      *
+ *                                                                               *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy  *
+ * of this software and associated documentation files (the "Software"), to deal *
+ * in the Software without restriction, including without limitation the rights  *
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell     *
+ * copies of the Software, and to permit persons to whom the Software is         *
+ * furnished to do so, subject to the following conditions:                      *
+ *                                                                               *
+ * The above copyright notice and this permission notice shall be included in    *
+ * all copies or substantial portions of the Software.                           *
+ *                                                                               *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR    *
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,      *
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE   *
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER        *
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, *
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN     *
+ * THE SOFTWARE.                                                                 *
+ *                                                                               *
+ ********************************************************************************/
+package org.aoju.lancia.worker;
+
+import org.aoju.bus.logger.Logger;
+import org.aoju.lancia.Variables;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 有序的事件队列，同一个队列中的事件按到达顺序依次执行，不同队列在线程池中并行执行，
+ * 避免一个耗时的事件处理器阻塞读取线程以及其他会话
+ *
+ * @author Kimi Liu
+ * @version 1.2.8
+ * @since JDK 1.8+
+ */
+public class EventQueue implements Executor {
+
+    /**
+     * 标记正在分发事件的线程，这些线程上不等待队列，否则处理器同步发送命令时会等到自己
+     */
+    private static final ThreadLocal<Boolean> DISPATCHING = new ThreadLocal<>();
+
+    private final Executor executor;
+    /**
+     * 队列容量，小于等于0表示不限制
+     */
+    private final int capacity;
+    private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+    private final AtomicInteger depth = new AtomicInteger();
+    private final AtomicLong dropped = new AtomicLong();
+    /**
+     * 已接收和已执行完的事件数，用于等待某一时刻之前的事件分发完
+     */
+    private final AtomicLong submitted = new AtomicLong();
+    private final AtomicLong completed = new AtomicLong();
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition dispatched = lock.newCondition();
+    private volatile int waiters;
+    private volatile int peakDepth;
+
+    public EventQueue(Executor executor) {
+        this(executor, Integer.getInteger(Variables.EVENT_QUEUE_SIZE, 0));
+    }
+
+    /**
+     * @param executor 执行事件的线程池
+     * @param capacity 队列容量，小于等于0表示不限制
+     */
+    public EventQueue(Executor executor, int capacity) {
+        this.executor = executor;
+        this.capacity = capacity;
+    }
+
+    /**
+     * 放入一个事件，有界模式下队列已满时丢弃该事件
+     *
+     * @param task 事件处理
+     */
+    @Override
+    public void execute(Runnable task) {
+        int current = depth.incrementAndGet();
+        if (capacity > 0 && current > capacity) {
+            depth.decrementAndGet();
+            long count = dropped.incrementAndGet();
+            if ((count & (count - 1)) == 0) {
+                Logger.warn("event queue is full ({}), {} events dropped", capacity, count);
+            }
+            return;
+        }
+        if (current > peakDepth) {
+            peakDepth = current;
+        }
+        submitted.incrementAndGet();
+        tasks.add(task);
+        schedule();
+    }
+
+    private void schedule() {
+        if (scheduled.compareAndSet(false, true)) {
+            try {
+                executor.execute(this::drain);
+            } catch (RejectedExecutionException e) {
+                scheduled.set(false);
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * 等待调用时已经收到的事件分发完，同步发送命令时用它保证返回前先处理完响应之前到达的事件
+     * 在事件处理器中调用时直接返回，最多等待{@link Variables#DEFAULT_TIMEOUT}毫秒
+     */
+    public void awaitDispatched() {
+        long mark = submitted.get();
+        if (completed.get() >= mark || DISPATCHING.get() != null) {
+            return;
+        }
+        long nanos = TimeUnit.MILLISECONDS.toNanos(Variables.DEFAULT_TIMEOUT);
+        lock.lock();
+        try {
+            waiters++;
+            while (completed.get() < mark && nanos > 0) {
+                nanos = dispatched.awaitNanos(nanos);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            waiters--;
+            lock.unlock();
+        }
+    }
+
+    private void drain() {
+        DISPATCHING.set(Boolean.TRUE);
+        try {
+            Runnable task;
+            while ((task = tasks.poll()) != null) {
+                depth.decrementAndGet();
+                try {
+                    task.run();
+                } catch (RuntimeException e) {
+                    Logger.error("dispatch event error ", e);
+                }
+                completed.incrementAndGet();
+                if (waiters > 0) {
+                    lock.lock();
+                    try {
+                        dispatched.signalAll();
+                    } finally {
+                        lock.unlock();
+                    }
+                }
+            }
+        } finally {
+            DISPATCHING.remove();
+            scheduled.set(false);
+            if (!tasks.isEmpty()) {
+                schedule();
+            }
+        }
+    }
+
+    /**
+     * 当前排队等待执行的事件数
+     *
+     * @return 队列深度
+     */
+    public int getDepth() {
+        return depth.get();
+    }
+
+    /**
+     * 队列深度的历史最大值
+     *
+     * @return 最大深度
+     */
+    public int getPeakDepth() {
+        return peakDepth;
+    }
+
+    /**
+     * 有界模式下被丢弃的事件数
+     *
+     * @return 丢弃数
+     */
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+}
@@ -0,0 +1,379 @@
+/*********************************************************************************
+ *                                                                               *
+ * The MIT License (MIT)                                                         *
+ *                                                                               *
+ * Copyright (c) 2015-2021 aoju.org and other contributors.                      *
+ *                                                                               *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy  *
+ * of this software and associated documentation files (the "Software"), to deal *
+ * in the Software without restriction, including without limitation the rights  *
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell     *
+ * copies of the Software, and to permit persons to whom the Software is         *
+ * furnished to do so, subject to the following conditions:                      *
+ *                                                                               *
+ * The above copyright notice and this permission notice shall be included in    *
+ * all copies or substantial portions of the Software.                           *
+ *                                                                               *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR    *
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,      *
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE   *
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER        *
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, *
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN     *
+ * THE SOFTWARE.                                                                 *
+ *                                                                               *
+ ********************************************************************************/
+package org.aoju.lancia.worker;
+
+import org.aoju.bus.core.lang.exception.InstrumentException;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 在内存中汇总协议指标，并注册为JMX MXBean
+ * 每个命令的延迟记录在对数分桶的直方图中，每个2的幂区间分8个桶，分位数误差不超过12.5%
+ *
+ * @author Kimi Liu
+ * @version 1.2.8
+ * @since JDK 1.8+
+ */
+public class JmxMetricsRegistry implements MetricsRegistry, ProtocolMetricsMXBean {
+
+    public static final String OBJECT_NAME = "org.aoju.lancia:type=ProtocolMetrics";
+
+    /**
+     * 浏览器级别的命令没有sessionId
+     */
+    private static final String BROWSER = "browser";
+
+    private final LongAdder bytesSent = new LongAdder();
+    private final LongAdder bytesReceived = new LongAdder();
+    private final AtomicLong inFlight = new AtomicLong();
+    private final Map<String, Long> inFlightBySession = new ConcurrentHashMap<>();
+    private final Map<String, LongAdder> events = new ConcurrentHashMap<>();
+    private final Map<String, Histogram> methods = new ConcurrentHashMap<>();
+    private final LongAdder browserCrashes = new LongAdder();
+    private final LongAdder browserRestarts = new LongAdder();
+    private final LongAdder browserRestartFailures = new LongAdder();
+    private final LongAdder jobRetries = new LongAdder();
+    private final Map<String, Histogram> jobs = new ConcurrentHashMap<>();
+    private final Map<String, LongAdder> jobRejections = new ConcurrentHashMap<>();
+    private final Map<String, AtomicLong> executorDepths = new ConcurrentHashMap<>();
+    private final Map<String, AtomicLong> executorPeaks = new ConcurrentHashMap<>();
+    private final Map<String, Histogram> executorTasks = new ConcurrentHashMap<>();
+    private final Map<String, LongAdder> executorRejections = new ConcurrentHashMap<>();
+    private volatile long lastRestartMillis;
+
+    /**
+     * 以{@link #OBJECT_NAME}注册到平台MBeanServer
+     *
+     * @return 注册的指标
+     */
+    public static JmxMetricsRegistry register() {
+        return register(OBJECT_NAME);
+    }
+
+    /**
+     * 注册到平台MBeanServer，同名的MBean会被替换
+     *
+     * @param name ObjectName
+     * @return 注册的指标
+     */
+    public static JmxMetricsRegistry register(String name) {
+        JmxMetricsRegistry registry = new JmxMetricsRegistry();
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName objectName = new ObjectName(name);
+            if (server.isRegistered(objectName)) {
+                server.unregisterMBean(objectName);
+            }
+            server.registerMBean(registry, objectName);
+        } catch (JMException e) {
+            throw new InstrumentException("Register metrics " + name + " fail: " + e.getMessage(), e);
+        }
+        return registry;
+    }
+
+    @Override
+    public void commandStarted(String sessionId, String method) {
+        this.inFlight.incrementAndGet();
+        this.inFlightBySession.merge(sessionId == null ? BROWSER : sessionId, 1L, Long::sum);
+    }
+
+    @Override
+    public void commandCompleted(String sessionId, String method, long nanos, boolean failed) {
+        this.inFlight.decrementAndGet();
+        this.inFlightBySession.computeIfPresent(sessionId == null ? BROWSER : sessionId, (key, count) -> count <= 1 ? null : count - 1);
+        this.methods.computeIfAbsent(method, key -> new Histogram()).record(nanos, failed);
+    }
+
+    @Override
+    public void bytesSent(int bytes) {
+        this.bytesSent.add(bytes);
+    }
+
+    @Override
+    public void bytesReceived(int bytes) {
+        this.bytesReceived.add(bytes);
+    }
+
+    @Override
+    public void eventReceived(String method) {
+        this.events.computeIfAbsent(method, key -> new LongAdder()).increment();
+    }
+
+    @Override
+    public void browserCrashed() {
+        this.browserCrashes.increment();
+    }
+
+    @Override
+    public void browserRestarted(long nanos, boolean success) {
+        this.lastRestartMillis = TimeUnit.NANOSECONDS.toMillis(nanos);
+        (success ? this.browserRestarts : this.browserRestartFailures).increment();
+    }
+
+    @Override
+    public void jobRetried() {
+        this.jobRetries.increment();
+    }
+
+    @Override
+    public void jobCompleted(String priority, long queueNanos, long runNanos, boolean failed) {
+        this.jobs.computeIfAbsent(priority + ".queue", key -> new Histogram()).record(queueNanos, false);
+        this.jobs.computeIfAbsent(priority + ".run", key -> new Histogram()).record(runNanos, failed);
+    }
+
+    @Override
+    public void jobRejected(String priority) {
+        this.jobRejections.computeIfAbsent(priority, key -> new LongAdder()).increment();
+    }
+
+    @Override
+    public void executorQueue(String executor, int depth) {
+        this.executorDepths.computeIfAbsent(executor, key -> new AtomicLong()).set(depth);
+        this.executorPeaks.computeIfAbsent(executor, key -> new AtomicLong()).accumulateAndGet(depth, Math::max);
+    }
+
+    @Override
+    public void executorTaskCompleted(String executor, long queueNanos, long runNanos, boolean failed) {
+        this.executorTasks.computeIfAbsent(executor + ".queue", key -> new Histogram()).record(queueNanos, false);
+        this.executorTasks.computeIfAbsent(executor + ".run", key -> new Histogram()).record(runNanos, failed);
+    }
+
+    @Override
+    public void executorTaskRejected(String executor) {
+        this.executorRejections.computeIfAbsent(executor, key -> new LongAdder()).increment();
+    }
+
+    @Override
+    public long getBytesSent() {
+        return this.bytesSent.sum();
+    }
+
+    @Override
+    public long getBytesReceived() {
+        return this.bytesReceived.sum();
+    }
+
+    @Override
+    public long getInFlight() {
+        return this.inFlight.get();
+    }
+
+    @Override
+    public Map<String, Long> getInFlightBySession() {
+        return new TreeMap<>(this.inFlightBySession);
+    }
+
+    @Override
+    public Map<String, Long> getEventCounts() {
+        Map<String, Long> counts = new TreeMap<>();
+        this.events.forEach((method, count) -> counts.put(method, count.sum()));
+        return counts;
+    }
+
+    @Override
+    public List<MethodMetrics> getMethods() {
+        List<MethodMetrics> list = new ArrayList<>(this.methods.size());
+        this.methods.forEach((method, histogram) -> list.add(histogram.snapshot(method)));
+        // 总耗时高的命令排在前面
+        list.sort(Comparator.comparingDouble((MethodMetrics metrics) -> metrics.getMeanMillis() * metrics.getCount()).reversed());
+        return list;
+    }
+
+    @Override
+    public long getBrowserCrashes() {
+        return this.browserCrashes.sum();
+    }
+
+    @Override
+    public long getBrowserRestarts() {
+        return this.browserRestarts.sum();
+    }
+
+    @Override
+    public long getBrowserRestartFailures() {
+        return this.browserRestartFailures.sum();
+    }
+
+    @Override
+    public long getLastRestartMillis() {
+        return this.lastRestartMillis;
+    }
+
+    @Override
+    public long getJobRetries() {
+        return this.jobRetries.sum();
+    }
+
+    @Override
+    public List<MethodMetrics> getJobs() {
+        List<MethodMetrics> list = new ArrayList<>(this.jobs.size());
+        new TreeMap<>(this.jobs).forEach((name, histogram) -> list.add(histogram.snapshot(name)));
+        return list;
+    }
+
+    @Override
+    public Map<String, Long> getJobRejections() {
+        Map<String, Long> counts = new TreeMap<>();
+        this.jobRejections.forEach((priority, count) -> counts.put(priority, count.sum()));
+        return counts;
+    }
+
+    @Override
+    public Map<String, Long> getExecutorQueueDepths() {
+        Map<String, Long> depths = new TreeMap<>();
+        this.executorDepths.forEach((executor, depth) -> depths.put(executor, depth.get()));
+        return depths;
+    }
+
+    @Override
+    public Map<String, Long> getExecutorQueuePeaks() {
+        Map<String, Long> peaks = new TreeMap<>();
+        this.executorPeaks.forEach((executor, peak) -> peaks.put(executor, peak.get()));
+        return peaks;
+    }
+
+    @Override
+    public List<MethodMetrics> getExecutorTasks() {
+        List<MethodMetrics> list = new ArrayList<>(this.executorTasks.size());
+        new TreeMap<>(this.executorTasks).forEach((name, histogram) -> list.add(histogram.snapshot(name)));
+        return list;
+    }
+
+    @Override
+    public Map<String, Long> getExecutorRejections() {
+        Map<String, Long> counts = new TreeMap<>();
+        this.executorRejections.forEach((executor, count) -> counts.put(executor, count.sum()));
+        return counts;
+    }
+
+    @Override
+    public void reset() {
+        this.bytesSent.reset();
+        this.bytesReceived.reset();
+        this.browserCrashes.reset();
+        this.browserRestarts.reset();
+        this.browserRestartFailures.reset();
+        this.jobRetries.reset();
+        this.events.clear();
+        this.methods.clear();
+        this.jobs.clear();
+        this.jobRejections.clear();
+        this.executorPeaks.clear();
+        this.executorTasks.clear();
+        this.executorRejections.clear();
+    }
+
+    /**
+     * 以微秒为单位的对数分桶直方图，小于8微秒的值各占一个桶
+     */
+    static class Histogram {
+
+        private static final int SUB_BITS = 3;
+        private static final int SUB_BUCKETS = 1 << SUB_BITS;
+        /**
+         * 覆盖到2^40微秒(约12天)
+         */
+        private static final int BUCKETS = (40 - SUB_BITS + 2) * SUB_BUCKETS;
+
+        private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+        private final AtomicLong count = new AtomicLong();
+        private final AtomicLong errors = new AtomicLong();
+        private final AtomicLong sum = new AtomicLong();
+        private final AtomicLong max = new AtomicLong();
+
+        static int index(long micros) {
+            if (micros < SUB_BUCKETS) {
+                return (int) Math.max(0, micros);
+            }
+            int exponent = 63 - Long.numberOfLeadingZeros(micros);
+            int index = (exponent - SUB_BITS + 1) * SUB_BUCKETS + (int) ((micros >> (exponent - SUB_BITS)) & (SUB_BUCKETS - 1));
+            return Math.min(index, BUCKETS - 1);
+        }
+
+        /**
+         * 桶的上界(不含)
+         */
+        static long upperBound(int index) {
+            if (index < SUB_BUCKETS) {
+                return index + 1;
+            }
+            int exponent = index / SUB_BUCKETS + SUB_BITS - 1;
+            long lower = (long) (SUB_BUCKETS + index % SUB_BUCKETS) << (exponent - SUB_BITS);
+            return lower + (1L << (exponent - SUB_BITS));
+        }
+
+        void record(long nanos, boolean failed) {
+            long micros = TimeUnit.NANOSECONDS.toMicros(nanos);
+            this.buckets.incrementAndGet(index(micros));
+            this.count.incrementAndGet();
+            this.sum.addAndGet(micros);
+            this.max.accumulateAndGet(micros, Math::max);
+            if (failed) {
+                this.errors.incrementAndGet();
+            }
+        }
+
+        MethodMetrics snapshot(String method) {
+            long[] snapshot = new long[BUCKETS];
+            long total = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                snapshot[i] = this.buckets.get(i);
+                total += snapshot[i];
+            }
+            long max = this.max.get();
+            double mean = total == 0 ? 0 : this.sum.get() / 1000.0 / total;
+            return new MethodMetrics(method, this.count.get(), this.errors.get(), mean,
+                    percentile(snapshot, total, 0.5, max), percentile(snapshot, total, 0.9, max),
+                    percentile(snapshot, total, 0.99, max), max / 1000.0);
+        }
+
+        private static double percentile(long[] snapshot, long total, double quantile, long max) {
+            if (total == 0) {
+                return 0;
+            }
+            long target = (long) Math.ceil(total * quantile);
+            long seen = 0;
+            for (int i = 0; i < snapshot.length; i++) {
+                seen += snapshot[i];
+                if (seen >= target) {
+                    return Math.min(upperBound(i), max) / 1000.0;
+                }
+            }
+            return max / 1000.0;
+        }
+
+    }
+
+}
@@ -27,10 +27,12 @@ package org.aoju.lancia.worker;
 
 
 import com.alibaba.fastjson.JSONObject;
+import org.aoju.bus.core.lang.exception.InstrumentException;
 
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CountDownLatch;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.ScheduledFuture;
 
 /**
  * 发送到浏览器的消息
@@ -47,10 +49,23 @@ public class Messages {
 
     private String method;
 
-    private transient boolean needRemove;
-
     private transient CountDownLatch countDownLatch;
 
+    /**
+     * 异步等待结果的future，由接收线程直接完成
+     */
+    private transient CompletableFuture<JSONObject> future;
+
+    /**
+     * 超时任务，由共享的定时器触发
+     */
+    private transient ScheduledFuture<?> deadline;
+
+    /**
+     * 响应中大字段的接收器
+     */
+    private transient ResponseSink sink;
+
     /**
      * 本次发送消息返回的结果
      */
@@ -95,6 +110,30 @@ public class Messages {
         this.countDownLatch = countDownLatch;
     }
 
+    public CompletableFuture<JSONObject> getFuture() {
+        return future;
+    }
+
+    public void setFuture(CompletableFuture<JSONObject> future) {
+        this.future = future;
+    }
+
+    public ScheduledFuture<?> getDeadline() {
+        return deadline;
+    }
+
+    public void setDeadline(ScheduledFuture<?> deadline) {
+        this.deadline = deadline;
+    }
+
+    public ResponseSink getSink() {
+        return sink;
+    }
+
+    public void setSink(ResponseSink sink) {
+        this.sink = sink;
+    }
+
     public JSONObject getResult() {
         return result;
     }
@@ -111,31 +150,51 @@ public class Messages {
         this.sessionId = sessionId;
     }
 
-    public boolean waitForResult(long timeout, TimeUnit timeUnit) throws InterruptedException {
-        if (countDownLatch != null) {
-            if (timeout == 0) {
-                countDownLatch.await();
-                return true;
-            }
-            return countDownLatch.await(timeout, timeUnit);
+    /**
+     * 收到正常响应，放行所有等待的线程与future
+     *
+     * @param result 响应结果
+     */
+    public void complete(JSONObject result) {
+        this.result = result;
+        this.release();
+        if (this.future != null) {
+            this.future.complete(result);
         }
-        return true;
     }
 
-    public String getErrorText() {
-        return errorText;
+    /**
+     * 收到错误响应、超时或连接关闭，放行所有等待的线程与future
+     *
+     * @param errorText 错误信息
+     */
+    public void fail(String errorText) {
+        this.errorText = errorText;
+        this.release();
+        if (this.future != null) {
+            this.future.completeExceptionally(new InstrumentException(errorText));
+        }
     }
 
-    public void setErrorText(String errorText) {
-        this.errorText = errorText;
+    private void release() {
+        ScheduledFuture<?> deadline = this.deadline;
+        if (deadline != null) {
+            deadline.cancel(false);
+            this.deadline = null;
+        }
+        CountDownLatch latch = this.countDownLatch;
+        if (latch != null) {
+            latch.countDown();
+            this.countDownLatch = null;
+        }
     }
 
-    public boolean getNeedRemove() {
-        return needRemove;
+    public String getErrorText() {
+        return errorText;
     }
 
-    public void setNeedRemove(boolean needRemove) {
-        this.needRemove = needRemove;
+    public void setErrorText(String errorText) {
+        this.errorText = errorText;
     }
 
     @Override
@@ -0,0 +1,156 @@
+/*********************************************************************************
+ *                                                                               *
+ * The MIT License (MIT)                                                         *
+ *                                                                               *
+ * Copyright (c) 2015-2021 aoju.org and other contributors.                      *
+ *                                                                               *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy  *
+ * of this software and associated documentation files (the "Software"), to deal *
+ * in the Software without restriction, including without limitation the rights  *
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell     *
+ * copies of the Software, and to permit persons to whom the Software is         *
+ * furnished to do so, subject to the following conditions:                      *
+ *                                                                               *
+ * The above copyright notice and this permission notice shall be included in    *
+ * all copies or substantial portions of the Software.                           *
+ *                                                                               *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR    *
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,      *
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE   *
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER        *
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, *
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN     *
+ * THE SOFTWARE.                                                                 *
+ *                                                                               *
+ ********************************************************************************/
+package org.aoju.lancia.worker;
+
+/**
+ * 协议指标的采集接口，{@link Connection}和{@link CDPSession}在收发消息时回调
+ * 回调发生在发送线程和接收线程中，实现必须线程安全并且足够轻量
+ *
+ * @author Kimi Liu
+ * @version 1.2.8
+ * @since JDK 1.8+
+ */
+public interface MetricsRegistry {
+
+    /**
+     * 不采集任何指标
+     */
+    MetricsRegistry NONE = new MetricsRegistry() {
+    };
+
+    /**
+     * 发出一条等待响应的命令
+     *
+     * @param sessionId 会话id，浏览器级别的命令为null
+     * @param method    命令
+     */
+    default void commandStarted(String sessionId, String method) {
+    }
+
+    /**
+     * 命令收到响应、失败、超时或会话关闭
+     *
+     * @param sessionId 会话id，浏览器级别的命令为null
+     * @param method    命令
+     * @param nanos     从发送到完成的纳秒数
+     * @param failed    是否失败
+     */
+    default void commandCompleted(String sessionId, String method, long nanos, boolean failed) {
+    }
+
+    /**
+     * 写出的消息字节数
+     *
+     * @param bytes 字节数
+     */
+    default void bytesSent(int bytes) {
+    }
+
+    /**
+     * 收到的消息长度，按解码后的字符数计算，ASCII的JSON与字节数相同
+     *
+     * @param bytes 长度
+     */
+    default void bytesReceived(int bytes) {
+    }
+
+    /**
+     * 收到一个事件，不论是否有监听器
+     *
+     * @param method 事件名称
+     */
+    default void eventReceived(String method) {
+    }
+
+    /**
+     * 浏览器崩溃、进程退出或连接断开
+     */
+    default void browserCrashed() {
+    }
+
+    /**
+     * 浏览器重启结束
+     *
+     * @param nanos   重启耗时的纳秒数
+     * @param success 是否重启成功
+     */
+    default void browserRestarted(long nanos, boolean success) {
+    }
+
+    /**
+     * 浏览器崩溃时进行中的任务被重试
+     */
+    default void jobRetried() {
+    }
+
+    /**
+     * 调度的渲染任务执行结束
+     *
+     * @param priority   优先级
+     * @param queueNanos 从提交到开始执行的等待时间(纳秒)
+     * @param runNanos   执行时间(纳秒)
+     * @param failed     是否失败
+     */
+    default void jobCompleted(String priority, long queueNanos, long runNanos, boolean failed) {
+    }
+
+    /**
+     * 调度的渲染任务无法在截止时间前开始而被拒绝
+     *
+     * @param priority 优先级
+     */
+    default void jobRejected(String priority) {
+    }
+
+    /**
+     * 内置执行服务的队列长度，任务入队和开始执行时回调
+     *
+     * @param executor 执行服务的名称
+     * @param depth    队列中等待的任务数
+     */
+    default void executorQueue(String executor, int depth) {
+    }
+
+    /**
+     * 内置执行服务的任务执行结束
+     *
+     * @param executor   执行服务的名称
+     * @param queueNanos 从提交到开始执行的等待时间(纳秒)
+     * @param runNanos   执行时间(纳秒)
+     * @param failed     是否失败
+     */
+    default void executorTaskCompleted(String executor, long queueNanos, long runNanos, boolean failed) {
+    }
+
+    /**
+     * 内置执行服务的队列已满，任务被拒绝或丢弃
+     *
+     * @param executor 执行服务的名称
+     */
+    default void executorTaskRejected(String executor) {
+    }
+
+}
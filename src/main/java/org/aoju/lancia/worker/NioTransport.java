@@ -0,0 +1,495 @@
+/*********************************************************************************
+ *                                                                               *
+ * The MIT License (MIT)                                                         *
+ *                                                                               *
+ * Copyright (c) 2015-2021 aoju.org and other contributors.                      *
+ *                                                                               *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy  *
+ * of this software and associated documentation files (the "Software"), to deal *
+ * in the Software without restriction, including without limitation the rights  *
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell     *
+ * copies of the Software, and to permit persons to whom the Software is         *
+ * furnished to do so, subject to the following conditions:                      *
+ *                                                                               *
+ * The above copyright notice and this permission notice shall be included in    *
+ * all copies or substantial portions of the Software.                           *
+ *                                                                               *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR    *
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,      *
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE   *
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER        *
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, *
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN     *
+ * THE SOFTWARE.                                                                 *
+ *                                                                               *
+ ********************************************************************************/
+package org.aoju.lancia.worker;
+
+import org.aoju.bus.core.lang.Charset;
+import org.aoju.bus.core.lang.Normal;
+import org.aoju.bus.core.lang.Symbol;
+import org.aoju.bus.core.lang.exception.InstrumentException;
+import org.aoju.bus.core.toolkit.IoKit;
+import org.aoju.bus.core.toolkit.StringKit;
+import org.aoju.bus.logger.Logger;
+import org.aoju.lancia.Builder;
+import org.aoju.lancia.Variables;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * 基于NIO Selector的websocket传输，所有连接共享少量的事件循环线程，
+ * 而不是像{@link SocketTransport}那样每个连接占用一个读线程和一个写线程
+ *
+ * @author Kimi Liu
+ * @version 1.2.8
+ * @since JDK 1.8+
+ */
+public class NioTransport implements Transport {
+
+    /**
+     * 每次从通道读取的字节数
+     */
+    private static final int READ_BUFFER_SIZE = 64 * 1024;
+    /**
+     * 握手响应头的最大长度
+     */
+    private static final int MAX_HANDSHAKE_SIZE = 16 * 1024;
+
+    private static final AtomicInteger NEXT_REACTOR = new AtomicInteger();
+
+    private static volatile Reactor[] REACTORS;
+
+    private final URI uri;
+    private final Reactor reactor;
+    private final SocketChannel channel;
+    private final SocketTransport.Protocol protocol = new SocketTransport.Protocol();
+    /**
+     * 等待写出的帧，由任意线程放入，只在事件循环线程中写出
+     */
+    private final OutboundQueue outQueue = new OutboundQueue();
+    /**
+     * 正在写出的一批缓冲区，只在事件循环线程中访问
+     */
+    private final List<ByteBuffer> writing = new ArrayList<>();
+    private final CountDownLatch openLatch = new CountDownLatch(1);
+    private final ByteBuffer readBuffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+    /**
+     * 收到的消息按顺序交给消费者处理，消费者(包括slowMo的等待)不在共享的事件循环线程中执行，
+     * 否则一个连接的处理会阻塞同一事件循环上的所有连接；不限容量，协议消息不能丢弃
+     */
+    private final EventQueue inbound = new EventQueue(Builder.eventExecutor(), 0);
+    /**
+     * 帧处理器，只在事件循环线程中回调
+     */
+    private final SocketTransport.Protocol.Handler handler = new SocketTransport.Protocol.Handler() {
+        @Override
+        public void onMessage(String message) {
+            deliver(message);
+        }
+
+        @Override
+        public void onPing(ByteBuffer payload) {
+            outQueue.addPriority(protocol.createFrame(SocketTransport.Protocol.OPCODE_PONG, payload));
+            flush();
+        }
+
+        @Override
+        public void onClose(int code, String reason) {
+            outQueue.addPriority(protocol.createFrame(SocketTransport.Protocol.OPCODE_CLOSE, ByteBuffer.wrap(new byte[]{(byte) (code >>> 8), (byte) code})));
+            flush();
+            close("Connection closed by remote: " + code + Symbol.SPACE + reason);
+        }
+    };
+    private ByteBuffer handshakeBuffer = ByteBuffer.allocate(1024);
+    private ByteBuffer[] gather = new ByteBuffer[0];
+    private int gatherOffset;
+    private int gatherLength;
+    private SelectionKey key;
+    private Consumer<String> consumer;
+    private volatile Runnable closeListener;
+    private volatile boolean open;
+    private volatile boolean closed;
+    private volatile String closeReason;
+
+    public NioTransport(String browserWSEndpoint) {
+        this(browserWSEndpoint, Variables.DEFAULT_TIMEOUT);
+    }
+
+    /**
+     * 连接websocket地址，阻塞直到握手完成
+     *
+     * @param browserWSEndpoint 连接websocket的地址
+     * @param timeout           连接超时时间(毫秒)
+     */
+    public NioTransport(String browserWSEndpoint, int timeout) {
+        this.uri = URI.create(browserWSEndpoint);
+        this.reactor = nextReactor();
+        try {
+            this.channel = SocketChannel.open();
+            this.channel.configureBlocking(false);
+            this.channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+            this.channel.connect(new InetSocketAddress(uri.getHost(), uri.getPort()));
+        } catch (IOException e) {
+            throw new InstrumentException("Connect to " + browserWSEndpoint + " fail: " + e.getMessage(), e);
+        }
+        this.reactor.execute(this::register);
+        try {
+            if (!openLatch.await(timeout, TimeUnit.MILLISECONDS)) {
+                close("Connect to " + browserWSEndpoint + " timeout");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            close("Interrupted while connecting to " + browserWSEndpoint);
+        }
+        if (!open) {
+            throw new InstrumentException(StringKit.isNotEmpty(closeReason) ? closeReason : "Can't connect to " + browserWSEndpoint);
+        }
+    }
+
+    /**
+     * 轮询选取事件循环，连接均匀分布到各个selector
+     *
+     * @return 事件循环
+     */
+    private static Reactor nextReactor() {
+        Reactor[] reactors = REACTORS;
+        if (reactors == null) {
+            synchronized (NioTransport.class) {
+                if ((reactors = REACTORS) == null) {
+                    String customNum = System.getProperty(Variables.SELECTOR_THREAD_NUM);
+                    int threadNum;
+                    if (StringKit.isNotEmpty(customNum)) {
+                        threadNum = Integer.parseInt(customNum);
+                    } else {
+                        threadNum = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() / 2));
+                    }
+                    reactors = new Reactor[threadNum];
+                    for (int i = 0; i < threadNum; i++) {
+                        reactors[i] = new Reactor(i);
+                    }
+                    REACTORS = reactors;
+                }
+            }
+        }
+        return reactors[Math.abs(NEXT_REACTOR.getAndIncrement() % reactors.length)];
+    }
+
+    @Override
+    public void send(String message) {
+        send(message.getBytes(Charset.UTF_8));
+    }
+
+    @Override
+    public void send(byte[] message) {
+        send(message, null);
+    }
+
+    @Override
+    public void send(byte[] message, String sessionId) {
+        if (closed) {
+            throw new IllegalStateException("WebSocket has been closed: " + closeReason);
+        }
+        if (!outQueue.add(sessionId, protocol.createText(message))) {
+            throw new InstrumentException("Outbound queue is full, dropped a message of " + message.length + " bytes");
+        }
+        reactor.execute(this::flush);
+    }
+
+    @Override
+    public void addConsumer(Consumer<String> consumer) {
+        this.consumer = consumer;
+    }
+
+    @Override
+    public void addCloseListener(Runnable listener) {
+        this.closeListener = listener;
+    }
+
+    @Override
+    public OutboundQueue getOutboundQueue() {
+        return outQueue;
+    }
+
+    @Override
+    public void close() {
+        reactor.execute(() -> close("closed by client"));
+    }
+
+    public boolean isOpen() {
+        return open && !closed;
+    }
+
+    private void register() {
+        try {
+            if (channel.isConnectionPending()) {
+                key = channel.register(reactor.selector, SelectionKey.OP_CONNECT, this);
+            } else {
+                // 本机地址可能在connect时就已经连上
+                key = channel.register(reactor.selector, SelectionKey.OP_READ, this);
+                outQueue.addPriority(handshake());
+                flush();
+            }
+        } catch (ClosedChannelException e) {
+            close("Channel closed before register");
+        }
+    }
+
+    /**
+     * 事件循环线程中处理就绪的事件
+     *
+     * @param selectionKey 就绪的key
+     */
+    private void handle(SelectionKey selectionKey) {
+        try {
+            if (selectionKey.isConnectable()) {
+                channel.finishConnect();
+                outQueue.addPriority(handshake());
+                selectionKey.interestOps(SelectionKey.OP_READ);
+                flush();
+            }
+            if (selectionKey.isValid() && selectionKey.isReadable()) {
+                read();
+            }
+            if (selectionKey.isValid() && selectionKey.isWritable()) {
+                flush();
+            }
+        } catch (IOException | RuntimeException e) {
+            close(e.getMessage());
+        }
+    }
+
+    private void read() throws IOException {
+        int read;
+        while ((read = channel.read(readBuffer)) > 0) {
+            readBuffer.flip();
+            if (!open) {
+                readHandshake();
+            }
+            if (open && readBuffer.hasRemaining()) {
+                protocol.decode(readBuffer, handler);
+            }
+            readBuffer.clear();
+        }
+        if (read == -1) {
+            close("Connection closed by remote");
+        }
+    }
+
+    /**
+     * 累积响应头直到出现空行，校验状态码后切换到帧模式，多读的字节留在readBuffer中
+     */
+    private void readHandshake() {
+        while (readBuffer.hasRemaining()) {
+            if (!handshakeBuffer.hasRemaining()) {
+                if (handshakeBuffer.capacity() >= MAX_HANDSHAKE_SIZE) {
+                    throw new InstrumentException("Handshake response too large");
+                }
+                ByteBuffer bigger = ByteBuffer.allocate(handshakeBuffer.capacity() << 1);
+                handshakeBuffer.flip();
+                bigger.put(handshakeBuffer);
+                handshakeBuffer = bigger;
+            }
+            byte b = readBuffer.get();
+            handshakeBuffer.put(b);
+            int position = handshakeBuffer.position();
+            if (b == '\n' && position >= 4 && handshakeBuffer.get(position - 2) == '\r'
+                    && handshakeBuffer.get(position - 3) == '\n' && handshakeBuffer.get(position - 4) == '\r') {
+                String response = new String(handshakeBuffer.array(), 0, position, Charset.US_ASCII);
+                String[] status = response.substring(0, response.indexOf('\r')).split(Symbol.SPACE, 3);
+                if (status.length < 2 || !"101".equals(status[1])) {
+                    throw new InstrumentException("Invalid status line received: " + response.substring(0, response.indexOf('\r')));
+                }
+                if (PerMessageDeflate.isEnabled()) {
+                    protocol.setDeflate(PerMessageDeflate.accept(extensions(response)));
+                }
+                handshakeBuffer = null;
+                open = true;
+                openLatch.countDown();
+                return;
+            }
+        }
+    }
+
+    /**
+     * 取出响应头中的扩展声明
+     */
+    private String extensions(String response) {
+        String extensions = null;
+        for (String line : response.split("\r\n")) {
+            int colon = line.indexOf(':');
+            if (colon > 0 && PerMessageDeflate.HEADER.equalsIgnoreCase(line.substring(0, colon).trim())) {
+                String value = line.substring(colon + 1).trim();
+                extensions = extensions == null ? value : extensions + ", " + value;
+            }
+        }
+        return extensions;
+    }
+
+    private void deliver(String message) {
+        Consumer<String> consumer = this.consumer;
+        if (consumer == null) {
+            return;
+        }
+        inbound.execute(() -> {
+            try {
+                consumer.accept(message);
+            } catch (RuntimeException e) {
+                Logger.error("handle websocket message error ", e);
+            }
+        });
+    }
+
+    /**
+     * 每次取出一批帧聚合写出，写不完时关注OP_WRITE等待下一次可写
+     */
+    private void flush() {
+        if (closed || key == null || !channel.isConnected()) {
+            return;
+        }
+        try {
+            while (true) {
+                if (gatherOffset == gatherLength) {
+                    if (outQueue.poll(writing) == 0) {
+                        break;
+                    }
+                    gather = writing.toArray(gather);
+                    gatherOffset = 0;
+                    gatherLength = writing.size();
+                    writing.clear();
+                }
+                channel.write(gather, gatherOffset, gatherLength - gatherOffset);
+                while (gatherOffset < gatherLength && !gather[gatherOffset].hasRemaining()) {
+                    gather[gatherOffset++] = null;
+                }
+                if (gatherOffset < gatherLength) {
+                    key.interestOps(key.interestOps() | SelectionKey.OP_WRITE);
+                    return;
+                }
+            }
+            if (key.isValid()) {
+                key.interestOps(key.interestOps() & ~SelectionKey.OP_WRITE);
+            }
+        } catch (IOException e) {
+            close(e.getMessage());
+        }
+    }
+
+    private ByteBuffer handshake() {
+        String path = uri.getRawPath();
+        if (StringKit.isEmpty(path)) {
+            path = Symbol.SLASH;
+        }
+        if (uri.getRawQuery() != null) {
+            path += Symbol.C_QUESTION_MARK + uri.getRawQuery();
+        }
+        int port = uri.getPort();
+        String host = uri.getHost() + ((port != 80 && port != 443) ? Symbol.COLON + port : Normal.EMPTY);
+        byte[] nonce = new byte[16];
+        ThreadLocalRandom.current().nextBytes(nonce);
+        String request = "GET " + path + " HTTP/1.1\r\n"
+                + "Host: " + host + "\r\n"
+                + "Upgrade: websocket\r\n"
+                + "Connection: Upgrade\r\n"
+                + "Sec-WebSocket-Key: " + Base64.getEncoder().encodeToString(nonce) + "\r\n"
+                + "Sec-WebSocket-Version: 13\r\n"
+                + (PerMessageDeflate.isEnabled() ? PerMessageDeflate.HEADER + ": " + PerMessageDeflate.offer() + "\r\n" : Normal.EMPTY)
+                + "\r\n";
+        return ByteBuffer.wrap(request.getBytes(Charset.US_ASCII));
+    }
+
+    private void close(String reason) {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        closeReason = reason;
+        if (key != null) {
+            key.cancel();
+        }
+        IoKit.close(channel);
+        outQueue.clear();
+        openLatch.countDown();
+        Logger.debug("websocket {} closed: {}", uri, reason);
+        // 排在已收到的消息之后通知连接，等待中的命令失败并发出断开事件
+        Runnable listener = closeListener;
+        if (listener != null) {
+            inbound.execute(listener);
+        }
+    }
+
+    /**
+     * 事件循环：一个selector加一个线程，负责多个连接的连接、读和写
+     */
+    static class Reactor implements Runnable {
+
+        private final Selector selector;
+        private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+        private final Thread thread;
+
+        Reactor(int index) {
+            try {
+                this.selector = Selector.open();
+            } catch (IOException e) {
+                throw new InstrumentException(e);
+            }
+            this.thread = new Thread(this, "SelectorThread-" + index);
+            this.thread.setDaemon(true);
+            this.thread.start();
+        }
+
+        /**
+         * 在事件循环线程中执行任务，当前就是事件循环线程时直接执行
+         *
+         * @param task 任务
+         */
+        void execute(Runnable task) {
+            if (Thread.currentThread() == thread) {
+                task.run();
+            } else {
+                tasks.add(task);
+                selector.wakeup();
+            }
+        }
+
+        @Override
+        public void run() {
+            while (true) {
+                try {
+                    selector.select();
+                    Runnable task;
+                    while ((task = tasks.poll()) != null) {
+                        task.run();
+                    }
+                    Iterator<SelectionKey> it = selector.selectedKeys().iterator();
+                    while (it.hasNext()) {
+                        SelectionKey key = it.next();
+                        it.remove();
+                        if (key.isValid()) {
+                            ((NioTransport) key.attachment()).handle(key);
+                        }
+                    }
+                } catch (IOException | RuntimeException e) {
+                    Logger.error("selector loop error ", e);
+                }
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,348 @@
+/*********************************************************************************
+ *                                                                               *
+ * The MIT License (MIT)                                                         *
+ *                                                                               *
+ * Copyright (c) 2015-2021 aoju.org and other contributors.                      *
+ *                                                                               *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy  *
+ * of this software and associated documentation files (the "Software"), to deal *
+ * in the Software without restriction, including without limitation the rights  *
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell     *
+ * copies of the Software, and to permit persons to whom the Software is         *
+ * furnished to do so, subject to the following conditions:                      *
+ *                                                                               *
+ * The above copyright notice and this permission notice shall be included in    *
+ * all copies or substantial portions of the Software.                           *
+ *                                                                               *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR    *
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,      *
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE   *
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER        *
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, *
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN     *
+ * THE SOFTWARE.                                                                 *
+ *                                                                               *
+ ********************************************************************************/
+package org.aoju.lancia.worker;
+
+import org.aoju.bus.core.lang.exception.InstrumentException;
+import org.aoju.bus.logger.Logger;
+import org.aoju.lancia.Variables;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 待写出帧的队列，控制帧、握手请求和小的命令帧走优先通道，避免排在几兆的大请求体(例如Fetch.fulfillRequest)后面；
+ * 同一会话还有命令帧在普通通道排队时，它后面的小帧也进入普通通道，保证同一会话上的命令按发送顺序写出
+ * 可以按字节数限制队列，满了之后按{@link Variables.OverflowPolicy}阻塞、报错或丢弃，控制帧不受限制
+ *
+ * @author Kimi Liu
+ * @version 1.2.8
+ * @since JDK 1.8+
+ */
+public class OutboundQueue {
+
+    /**
+     * 不超过该大小的命令帧可以进入优先通道
+     */
+    public static final int PRIORITY_FRAME_SIZE = 64 * 1024;
+    /**
+     * 普通通道一次取出的字节数上限(至少一帧)，写完之后会重新检查优先通道
+     */
+    private static final int BULK_BATCH_SIZE = 256 * 1024;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final Condition notFull = lock.newCondition();
+    private final ArrayDeque<Frame> priority = new ArrayDeque<>();
+    private final ArrayDeque<Frame> bulk = new ArrayDeque<>();
+    /**
+     * 每个会话在普通通道中排队的帧数，浏览器级别的命令以null为键
+     */
+    private final Map<String, Integer> queued = new HashMap<>();
+    /**
+     * 排队的字节数上限，小于等于0表示不限制
+     */
+    private final long capacity;
+    private final Variables.OverflowPolicy policy;
+    /**
+     * BLOCK策略等待空间的最长毫秒数
+     */
+    private final long timeout;
+    private final AtomicLong rejected = new AtomicLong();
+    private long bytes;
+
+    /**
+     * 按{@link Variables#OUTBOUND_QUEUE_BYTES}和{@link Variables#OUTBOUND_QUEUE_POLICY}创建队列
+     */
+    public OutboundQueue() {
+        this(Long.getLong(Variables.OUTBOUND_QUEUE_BYTES, 0),
+                Variables.OverflowPolicy.valueOf(System.getProperty(Variables.OUTBOUND_QUEUE_POLICY, Variables.OverflowPolicy.BLOCK.name()).toUpperCase()),
+                Variables.DEFAULT_TIMEOUT);
+    }
+
+    /**
+     * @param capacity 排队的字节数上限，小于等于0表示不限制
+     * @param policy   队列满时的处理策略
+     * @param timeout  BLOCK策略等待空间的最长毫秒数
+     */
+    public OutboundQueue(long capacity, Variables.OverflowPolicy policy, long timeout) {
+        this.capacity = capacity;
+        this.policy = policy;
+        this.timeout = timeout;
+    }
+
+    private static long remaining(ByteBuffer[] frame) {
+        long size = 0;
+        for (ByteBuffer buffer : frame) {
+            size += buffer.remaining();
+        }
+        return size;
+    }
+
+    /**
+     * 放入一个不属于任何会话的命令帧(例如管道或浏览器级别的命令)
+     *
+     * @param frame 组成一个帧的缓冲区
+     * @return false表示按SHED策略丢弃，调用方需要让等待这个帧响应的命令失败
+     * @see #add(String, ByteBuffer...)
+     */
+    public boolean add(ByteBuffer... frame) {
+        return add(null, frame);
+    }
+
+    /**
+     * 放入一个命令帧，小帧在同一会话没有排队的大帧时走优先通道，
+     * 超过字节数上限时按策略阻塞、抛出{@link InstrumentException}或丢弃
+     *
+     * @param session 命令所属的会话，浏览器级别的命令为null
+     * @param frame   组成一个帧的缓冲区
+     * @return false表示按SHED策略丢弃，调用方需要让等待这个帧响应的命令失败
+     */
+    public boolean add(String session, ByteBuffer... frame) {
+        long size = remaining(frame);
+        lock.lock();
+        try {
+            if (capacity > 0 && !reserve(size)) {
+                return false;
+            }
+            if (size <= PRIORITY_FRAME_SIZE && !queued.containsKey(session)) {
+                priority.add(new Frame(frame, size, null));
+            } else {
+                bulk.add(new Frame(frame, size, session));
+                queued.merge(session, 1, Integer::sum);
+            }
+            bytes += size;
+            notEmpty.signal();
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 放入一个控制帧(pong、close)或握手请求，总是走优先通道，不受字节数上限限制
+     *
+     * @param frame 组成一个帧的缓冲区
+     */
+    public void addPriority(ByteBuffer... frame) {
+        long size = remaining(frame);
+        lock.lock();
+        try {
+            priority.add(new Frame(frame, size, null));
+            bytes += size;
+            notEmpty.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 等待或者判断是否有空间放入size字节，队列为空时总是可以放入，避免超过上限的单个帧永远发不出去
+     *
+     * @return false表示按SHED策略丢弃
+     */
+    private boolean reserve(long size) {
+        if (bytes == 0 || bytes + size <= capacity) {
+            return true;
+        }
+        switch (policy) {
+            case SHED:
+                rejected.incrementAndGet();
+                Logger.warn("Outbound queue is full ({} bytes), dropped a frame of {} bytes", bytes, size);
+                return false;
+            case FAIL:
+                rejected.incrementAndGet();
+                throw new InstrumentException("Outbound queue is full (" + bytes + " bytes), rejected a frame of " + size + " bytes");
+            default:
+                long nanos = TimeUnit.MILLISECONDS.toNanos(timeout);
+                try {
+                    while (bytes != 0 && bytes + size > capacity) {
+                        if (nanos <= 0) {
+                            rejected.incrementAndGet();
+                            throw new InstrumentException("Outbound queue is still full (" + bytes + " bytes) after " + timeout + " MILLISECONDS");
+                        }
+                        nanos = notFull.awaitNanos(nanos);
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InstrumentException(e);
+                }
+                return true;
+        }
+    }
+
+    /**
+     * 阻塞直到有帧可写，然后取出一批
+     *
+     * @param batch 存放取出的缓冲区
+     * @throws InterruptedException 等待时被中断
+     */
+    public void take(List<ByteBuffer> batch) throws InterruptedException {
+        lock.lockInterruptibly();
+        try {
+            while (priority.isEmpty() && bulk.isEmpty()) {
+                notEmpty.await();
+            }
+            drain(batch);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 不阻塞地取出一批：优先通道全部取出，普通通道最多取出{@link #BULK_BATCH_SIZE}字节(至少一帧)
+     *
+     * @param batch 存放取出的缓冲区
+     * @return 取出的缓冲区个数
+     */
+    public int poll(List<ByteBuffer> batch) {
+        lock.lock();
+        try {
+            return drain(batch);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private int drain(List<ByteBuffer> batch) {
+        int count = batch.size();
+        Frame frame;
+        long drained = 0;
+        while ((frame = priority.poll()) != null) {
+            frame.addTo(batch);
+            drained += frame.size;
+        }
+        long size = 0;
+        while (size < BULK_BATCH_SIZE && (frame = bulk.poll()) != null) {
+            frame.addTo(batch);
+            size += frame.size;
+            // 该会话的大帧都已取出，后面的小帧可以重新走优先通道，它们总在这一批之后写出
+            queued.computeIfPresent(frame.session, (key, value) -> value > 1 ? value - 1 : null);
+        }
+        if (drained + size > 0) {
+            bytes -= drained + size;
+            notFull.signalAll();
+        }
+        return batch.size() - count;
+    }
+
+    public boolean isEmpty() {
+        lock.lock();
+        try {
+            return priority.isEmpty() && bulk.isEmpty();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void clear() {
+        lock.lock();
+        try {
+            priority.clear();
+            bulk.clear();
+            queued.clear();
+            bytes = 0;
+            notFull.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 排队的帧数
+     *
+     * @return 帧数
+     */
+    public int getDepth() {
+        lock.lock();
+        try {
+            return priority.size() + bulk.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 排队的字节数
+     *
+     * @return 字节数
+     */
+    public long getBytes() {
+        lock.lock();
+        try {
+            return bytes;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getCapacity() {
+        return capacity;
+    }
+
+    public Variables.OverflowPolicy getPolicy() {
+        return policy;
+    }
+
+    /**
+     * 因为队列满被拒绝或丢弃的帧数
+     *
+     * @return 帧数
+     */
+    public long getRejected() {
+        return rejected.get();
+    }
+
+    /**
+     * 排队的帧，记录大小和所属会话，取出时不必重新计算
+     */
+    private static class Frame {
+
+        private final ByteBuffer[] buffers;
+        private final long size;
+        private final String session;
+
+        Frame(ByteBuffer[] buffers, long size, String session) {
+            this.buffers = buffers;
+            this.size = size;
+            this.session = session;
+        }
+
+        void addTo(List<ByteBuffer> batch) {
+            for (ByteBuffer buffer : buffers) {
+                batch.add(buffer);
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,219 @@
+/*********************************************************************************
+ *                                                                               *
+ * The MIT License (MIT)                                                         *
+ *                                                                               *
+ * Copyright (c) 2015-2021 aoju.org and other contributors.                      *
+ *                                                                               *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy  *
+ * of this software and associated documentation files (the "Software"), to deal *
+ * in the Software without restriction, including without limitation the rights  *
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell     *
+ * copies of the Software, and to permit persons to whom the Software is         *
+ * furnished to do so, subject to the following conditions:                      *
+ *                                                                               *
+ * The above copyright notice and this permission notice shall be included in    *
+ * all copies or substantial portions of the Software.                           *
+ *                                                                               *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR    *
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,      *
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE   *
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER        *
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, *
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN     *
+ * THE SOFTWARE.                                                                 *
+ *                                                                               *
+ ********************************************************************************/
+package org.aoju.lancia.worker;
+
+import org.aoju.bus.core.lang.exception.InstrumentException;
+import org.aoju.bus.core.toolkit.StringKit;
+import org.aoju.lancia.Variables;
+
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * websocket的permessage-deflate扩展(RFC 7692)
+ * 接收的消息按协商结果保留或重置解压上下文；发送的消息总是独立压缩，
+ * 因为其他会话的小帧可以越过排队的大帧，写出顺序和压缩顺序不一定一致，跨消息的压缩上下文无法保证和对端一致
+ *
+ * @author Kimi Liu
+ * @version 1.2.8
+ * @since JDK 1.8+
+ */
+public class PerMessageDeflate {
+
+    public static final String EXTENSION = "permessage-deflate";
+    public static final String HEADER = "Sec-WebSocket-Extensions";
+
+    private static final String SERVER_NO_CONTEXT_TAKEOVER = "server_no_context_takeover";
+    private static final String CLIENT_NO_CONTEXT_TAKEOVER = "client_no_context_takeover";
+    private static final String SERVER_MAX_WINDOW_BITS = "server_max_window_bits";
+    private static final String CLIENT_MAX_WINDOW_BITS = "client_max_window_bits";
+    /**
+     * 每条压缩消息末尾省略的同步刷新标记
+     */
+    private static final byte[] TAIL = {0, 0, (byte) 0xFF, (byte) 0xFF};
+    /**
+     * 超过该大小的解压缓冲区在使用后释放
+     */
+    private static final int RETAINED_BUFFER_SIZE = 1024 * 1024;
+
+    private final Inflater inflater = new Inflater(true);
+    private final boolean serverNoContextTakeover;
+    /**
+     * 对端要求的窗口小于Deflater固定的32K窗口时不压缩发送的消息
+     */
+    private final boolean compressOutbound;
+    private final int threshold;
+    private final int level;
+    private byte[] output = new byte[8192];
+    private Deflater deflater;
+    private byte[] compressed = new byte[0];
+
+    private PerMessageDeflate(boolean serverNoContextTakeover, boolean compressOutbound) {
+        this.serverNoContextTakeover = serverNoContextTakeover;
+        this.compressOutbound = compressOutbound;
+        this.threshold = Integer.getInteger(Variables.WEBSOCKET_DEFLATE_THRESHOLD, 1024);
+        this.level = Integer.getInteger(Variables.WEBSOCKET_DEFLATE_LEVEL, Deflater.BEST_SPEED);
+    }
+
+    /**
+     * 是否开启了压缩协商
+     *
+     * @return true表示握手时请求压缩
+     */
+    public static boolean isEnabled() {
+        return Boolean.getBoolean(Variables.WEBSOCKET_DEFLATE);
+    }
+
+    /**
+     * 握手请求中的扩展声明
+     *
+     * @return Sec-WebSocket-Extensions请求头的值
+     */
+    public static String offer() {
+        StringBuilder builder = new StringBuilder(EXTENSION);
+        builder.append("; ").append(CLIENT_NO_CONTEXT_TAKEOVER);
+        builder.append("; ").append(CLIENT_MAX_WINDOW_BITS);
+        if ("false".equalsIgnoreCase(System.getProperty(Variables.WEBSOCKET_DEFLATE_CONTEXT_TAKEOVER))) {
+            builder.append("; ").append(SERVER_NO_CONTEXT_TAKEOVER);
+        }
+        return builder.toString();
+    }
+
+    /**
+     * 解析握手响应中的扩展
+     *
+     * @param header Sec-WebSocket-Extensions响应头的值
+     * @return 协商成功返回压缩器，对端不支持返回null
+     */
+    public static PerMessageDeflate accept(String header) {
+        if (StringKit.isEmpty(header)) {
+            return null;
+        }
+        for (String extension : header.split(",")) {
+            String[] params = extension.split(";");
+            if (!EXTENSION.equalsIgnoreCase(params[0].trim())) {
+                continue;
+            }
+            boolean serverNoContextTakeover = false;
+            boolean compressOutbound = true;
+            for (int i = 1; i < params.length; i++) {
+                String[] pair = params[i].trim().split("=", 2);
+                String name = pair[0].trim();
+                String value = pair.length > 1 ? pair[1].trim().replace("\"", "") : null;
+                if (SERVER_NO_CONTEXT_TAKEOVER.equalsIgnoreCase(name)) {
+                    serverNoContextTakeover = true;
+                } else if (CLIENT_MAX_WINDOW_BITS.equalsIgnoreCase(name)) {
+                    compressOutbound = value == null || Integer.parseInt(value) >= 15;
+                } else if (!CLIENT_NO_CONTEXT_TAKEOVER.equalsIgnoreCase(name) && !SERVER_MAX_WINDOW_BITS.equalsIgnoreCase(name)) {
+                    throw new InstrumentException("Unsupported " + EXTENSION + " parameter: " + name);
+                }
+            }
+            return new PerMessageDeflate(serverNoContextTakeover, compressOutbound);
+        }
+        return null;
+    }
+
+    /**
+     * 解压一条消息，只在读取线程中调用
+     *
+     * @param array   压缩数据
+     * @param offset  起始位置
+     * @param length  长度
+     * @param maxSize 解压后允许的最大字节数
+     * @return 消息
+     */
+    public String inflate(byte[] array, int offset, int length, int maxSize) {
+        try {
+            inflater.setInput(array, offset, length);
+            int size = inflate(0, maxSize);
+            inflater.setInput(TAIL);
+            size = inflate(size, maxSize);
+            if (serverNoContextTakeover || inflater.finished()) {
+                inflater.reset();
+            }
+            String message = ResponseSink.decode(output, 0, size);
+            if (output.length > RETAINED_BUFFER_SIZE) {
+                output = new byte[8192];
+            }
+            return message;
+        } catch (DataFormatException e) {
+            throw new InstrumentException("Invalid compressed message: " + e.getMessage(), e);
+        }
+    }
+
+    private int inflate(int size, int maxSize) throws DataFormatException {
+        while (true) {
+            if (size == output.length) {
+                if (size >= maxSize) {
+                    throw new InstrumentException("Message too large");
+                }
+                output = Arrays.copyOf(output, (int) Math.min(maxSize, (long) output.length << 1));
+            }
+            size += inflater.inflate(output, size, output.length - size);
+            if (size < output.length && (inflater.needsInput() || inflater.finished())) {
+                return size;
+            }
+        }
+    }
+
+    /**
+     * 压缩一条要发送的消息
+     *
+     * @param payload 消息
+     * @return 压缩后的数据，不需要压缩或压缩后没有变小时返回null
+     */
+    public byte[] deflate(byte[] payload) {
+        if (!compressOutbound || payload.length < threshold) {
+            return null;
+        }
+        synchronized (this) {
+            if (deflater == null) {
+                deflater = new Deflater(level, true);
+            }
+            if (compressed.length < payload.length) {
+                compressed = new byte[payload.length + 64];
+            }
+            deflater.setInput(payload);
+            int size = 0;
+            while (true) {
+                size += deflater.deflate(compressed, size, compressed.length - size, Deflater.SYNC_FLUSH);
+                if (size < compressed.length) {
+                    break;
+                }
+                compressed = Arrays.copyOf(compressed, compressed.length << 1);
+            }
+            deflater.reset();
+            byte[] result = size - TAIL.length < payload.length ? Arrays.copyOf(compressed, size - TAIL.length) : null;
+            if (compressed.length > RETAINED_BUFFER_SIZE) {
+                compressed = new byte[0];
+            }
+            return result;
+        }
+    }
+
+}
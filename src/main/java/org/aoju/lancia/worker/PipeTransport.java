@@ -25,17 +25,24 @@
  ********************************************************************************/
 package org.aoju.lancia.worker;
 
+import org.aoju.bus.core.lang.Charset;
+import org.aoju.bus.core.lang.exception.InstrumentException;
 import org.aoju.bus.core.toolkit.IoKit;
 import org.aoju.bus.logger.Logger;
 
+import java.io.BufferedOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
-import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
 
 /**
- * 与chromuim通过pipe通信暂时没实现
+ * 与chromuim通过pipe通信实现(--remote-debugging-pipe)
+ * 浏览器从fd 3读取消息，向fd 4写入消息，每条消息以'\0'结尾
  *
  * @author Kimi Liu
  * @version 1.2.8
@@ -43,12 +50,23 @@ import java.util.concurrent.LinkedBlockingQueue;
  */
 public class PipeTransport implements Transport {
 
-    private final BlockingQueue<String> messageQueue = new LinkedBlockingQueue<>();
-    private final StringBuffer pendingMessage = new StringBuffer();
+    /**
+     * 每次从管道读取的字节数
+     */
+    private static final int READ_BUFFER_SIZE = 64 * 1024;
+    /**
+     * 消息结束符
+     */
+    private static final byte[] DELIMITER = {0};
+
+    private final OutboundQueue messageQueue = new OutboundQueue();
     private InputStream pipeReader;
     private OutputStream pipeWriter;
     private Thread readThread;
     private Thread writerThread;
+    private Consumer<String> consumer;
+    private volatile Runnable closeListener;
+    private volatile boolean closed;
 
     public PipeTransport() {
 
@@ -56,24 +74,71 @@ public class PipeTransport implements Transport {
 
     public PipeTransport(InputStream pipeReader, OutputStream pipeWriter) {
         this.pipeReader = pipeReader;
-        this.pipeWriter = pipeWriter;
-        readThread = new Thread(new ReaderThread());
+        this.pipeWriter = new BufferedOutputStream(pipeWriter, READ_BUFFER_SIZE);
+        readThread = new Thread(new ReaderThread(), "PipeReadThread");
+        readThread.setDaemon(true);
         readThread.start();
-        writerThread = new Thread(new WriterThread());
+        writerThread = new Thread(new WriterThread(), "PipeWriteThread");
+        writerThread.setDaemon(true);
         writerThread.start();
     }
 
     @Override
     public void send(String message) {
-        try {
-            messageQueue.put(message);
-        } catch (InterruptedException e) {
-            throw new RuntimeException(e);
+        send(message.getBytes(Charset.UTF_8));
+    }
+
+    @Override
+    public void send(byte[] message) {
+        send(message, null);
+    }
+
+    @Override
+    public void send(byte[] message, String sessionId) {
+        if (closed) {
+            throw new IllegalStateException("Pipe transport has been closed");
+        }
+        if (!messageQueue.add(sessionId, ByteBuffer.wrap(message), ByteBuffer.wrap(DELIMITER))) {
+            throw new InstrumentException("Outbound queue is full, dropped a message of " + message.length + " bytes");
         }
     }
 
+    @Override
+    public void call(String message) {
+        Consumer<String> consumer = this.consumer;
+        if (consumer != null) {
+            try {
+                consumer.accept(message);
+            } catch (RuntimeException e) {
+                Logger.error("handle message from chrome error ", e);
+            }
+        }
+    }
+
+    @Override
+    public void addConsumer(Consumer<String> consumer) {
+        this.consumer = consumer;
+    }
+
+    @Override
+    public void addCloseListener(Runnable listener) {
+        this.closeListener = listener;
+    }
+
+    @Override
+    public OutboundQueue getOutboundQueue() {
+        return messageQueue;
+    }
+
     @Override
     public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        if (writerThread != null) {
+            writerThread.interrupt();
+        }
         IoKit.close(pipeWriter);
         IoKit.close(pipeReader);
     }
@@ -82,14 +147,21 @@ public class PipeTransport implements Transport {
 
         @Override
         public void run() {
-            while (true) {
-                try {
-                    //take()方法会阻塞，知道拿到位置
-                    String message = messageQueue.take();
-                    pipeWriter.write(message.getBytes());
-                    pipeWriter.write('\0');
+            List<ByteBuffer> batch = new ArrayList<>();
+            try {
+                while (!closed) {
+                    // take()方法会阻塞，直到拿到消息，之后把队列中已有的消息一次性写出再flush
+                    messageQueue.take(batch);
+                    for (ByteBuffer buffer : batch) {
+                        pipeWriter.write(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+                    }
+                    batch.clear();
                     pipeWriter.flush();
-                } catch (InterruptedException | IOException e) {
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (IOException e) {
+                if (!closed) {
                     Logger.error("pipe transport send message fail ", e);
                 }
             }
@@ -97,27 +169,62 @@ public class PipeTransport implements Transport {
     }
 
     /**
-     * 读取管道中的消息线程
+     * 读取管道中的消息线程，按块读取后以'\0'切分消息
      */
     private class ReaderThread implements Runnable {
 
+        /**
+         * 跨越多次读取的不完整消息
+         */
+        private byte[] pending = new byte[READ_BUFFER_SIZE];
+
+        private int pendingLength;
+
         @Override
         public void run() {
-            while (true) {
-                try {
-                    int read = pipeReader.read();
-                    if ((char) read != '\0') {
-                        pendingMessage.append((char) read);
-
-                    } else {
-                        String message = pendingMessage.toString();
-                        pendingMessage.delete(0, pendingMessage.length());
-                        call(message);
+            byte[] buffer = new byte[READ_BUFFER_SIZE];
+            try {
+                int read;
+                while ((read = pipeReader.read(buffer)) != -1) {
+                    int start = 0;
+                    for (int i = 0; i < read; i++) {
+                        if (buffer[i] != 0) {
+                            continue;
+                        }
+                        if (pendingLength == 0) {
+                            call(ResponseSink.decode(buffer, start, i - start));
+                        } else {
+                            append(buffer, start, i - start);
+                            call(ResponseSink.decode(pending, 0, pendingLength));
+                            pendingLength = 0;
+                        }
+                        start = i + 1;
                     }
-                } catch (IOException e) {
+                    if (start < read) {
+                        append(buffer, start, read - start);
+                    }
+                }
+            } catch (IOException e) {
+                if (!closed) {
                     Logger.error("read message from chrome error ", e);
                 }
+            } finally {
+                // 浏览器退出或崩溃时管道读到EOF，通知连接让等待中的命令失败并发出断开事件
+                close();
+                Runnable listener = closeListener;
+                if (listener != null) {
+                    listener.run();
+                }
+            }
+        }
+
+        private void append(byte[] bytes, int offset, int length) {
+            int required = pendingLength + length;
+            if (required > pending.length) {
+                pending = Arrays.copyOf(pending, Math.max(required, pending.length << 1));
             }
+            System.arraycopy(bytes, offset, pending, pendingLength, length);
+            pendingLength = required;
         }
 
     }
@@ -0,0 +1,154 @@
+/*********************************************************************************
+ *                                                                               *
+ * The MIT License (MIT)                                                         *
+ *                                                                               *
+ * Copyright (c) 2015-2021 aoju.org and other contributors.                      *
+ *                                                                               *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy  *
+ * of this software and associated documentation files (the "Software"), to deal *
+ * in the Software without restriction, including without limitation the rights  *
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell     *
+ * copies of the Software, and to permit persons to whom the Software is         *
+ * furnished to do so, subject to the following conditions:                      *
+ *                                                                               *
+ * The above copyright notice and this permission notice shall be included in    *
+ * all copies or substantial portions of the Software.                           *
+ *                                                                               *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR    *
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,      *
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE   *
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER        *
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, *
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN     *
+ * THE SOFTWARE.                                                                 *
+ *                                                                               *
+ ********************************************************************************/
+package org.aoju.lancia.worker;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 通过JMX查看的协议指标
+ *
+ * @author Kimi Liu
+ * @version 1.2.8
+ * @since JDK 1.8+
+ */
+public interface ProtocolMetricsMXBean {
+
+    long getBytesSent();
+
+    long getBytesReceived();
+
+    /**
+     * 所有会话还没有完成的命令数，持续增长说明回调泄漏
+     *
+     * @return 命令数
+     */
+    long getInFlight();
+
+    /**
+     * 每个会话还没有完成的命令数，浏览器级别的命令记在"browser"下
+     *
+     * @return 会话id到命令数
+     */
+    Map<String, Long> getInFlightBySession();
+
+    /**
+     * 每种事件收到的次数
+     *
+     * @return 事件名称到次数
+     */
+    Map<String, Long> getEventCounts();
+
+    /**
+     * 每个命令的次数、错误和延迟分布
+     *
+     * @return 命令指标
+     */
+    List<MethodMetrics> getMethods();
+
+    /**
+     * 浏览器崩溃或断开的次数
+     *
+     * @return 次数
+     */
+    long getBrowserCrashes();
+
+    /**
+     * 浏览器重启成功的次数
+     *
+     * @return 次数
+     */
+    long getBrowserRestarts();
+
+    /**
+     * 浏览器重启失败的次数
+     *
+     * @return 次数
+     */
+    long getBrowserRestartFailures();
+
+    /**
+     * 最近一次重启的耗时(毫秒)
+     *
+     * @return 毫秒
+     */
+    long getLastRestartMillis();
+
+    /**
+     * 因浏览器崩溃而重试的任务数
+     *
+     * @return 次数
+     */
+    long getJobRetries();
+
+    /**
+     * 调度的渲染任务按优先级统计的等待时间和执行时间，名称为优先级加.queue或.run
+     *
+     * @return 任务指标
+     */
+    List<MethodMetrics> getJobs();
+
+    /**
+     * 按优先级统计的因无法在截止时间前开始而被拒绝的任务数
+     *
+     * @return 优先级与任务数
+     */
+    Map<String, Long> getJobRejections();
+
+    /**
+     * 内置执行服务当前排队的任务数
+     *
+     * @return 执行服务名称与任务数
+     */
+    Map<String, Long> getExecutorQueueDepths();
+
+    /**
+     * 内置执行服务排队任务数的峰值
+     *
+     * @return 执行服务名称与任务数
+     */
+    Map<String, Long> getExecutorQueuePeaks();
+
+    /**
+     * 内置执行服务的任务等待时间和执行时间，名称为执行服务名称加.queue或.run
+     *
+     * @return 任务指标
+     */
+    List<MethodMetrics> getExecutorTasks();
+
+    /**
+     * 内置执行服务因队列已满而拒绝或丢弃的任务数
+     *
+     * @return 执行服务名称与任务数
+     */
+    Map<String, Long> getExecutorRejections();
+
+    /**
+     * 清空计数和延迟分布，进行中的命令数和执行服务当前的队列长度不受影响
+     */
+    void reset();
+
+}
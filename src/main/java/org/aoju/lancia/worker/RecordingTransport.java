@@ -0,0 +1,150 @@
+/*********************************************************************************
+ *                                                                               *
+ * The MIT License (MIT)                                                         *
+ *                                                                               *
+ * Copyright (c) 2015-2021 aoju.org and other contributors.                      *
+ *                                                                               *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy  *
+ * of this software and associated documentation files (the "Software"), to deal *
+ * in the Software without restriction, including without limitation the rights  *
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell     *
+ * copies of the Software, and to permit persons to whom the Software is         *
+ * furnished to do so, subject to the following conditions:                      *
+ *                                                                               *
+ * The above copyright notice and this permission notice shall be included in    *
+ * all copies or substantial portions of the Software.                           *
+ *                                                                               *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR    *
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,      *
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE   *
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER        *
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, *
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN     *
+ * THE SOFTWARE.                                                                 *
+ *                                                                               *
+ ********************************************************************************/
+package org.aoju.lancia.worker;
+
+import org.aoju.bus.core.lang.Charset;
+import org.aoju.bus.core.lang.exception.InstrumentException;
+import org.aoju.bus.core.toolkit.IoKit;
+import org.aoju.bus.logger.Logger;
+
+import java.io.*;
+import java.util.function.Consumer;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * 录制CDP消息的传输装饰器，收发的消息原样交给被装饰的传输，同时追加到录制文件
+ * 录制文件每行一条消息：方向(&gt;发送，&lt;接收) 相对录制开始的微秒数 消息原文，文件名以.gz结尾时压缩保存
+ * 录制文件可以交给{@link ReplayTransport}在没有浏览器的环境回放
+ *
+ * @author Kimi Liu
+ * @version 1.2.8
+ * @since JDK 1.8+
+ */
+public class RecordingTransport implements Transport, Consumer<String> {
+
+    /**
+     * 发送的消息
+     */
+    static final char OUTBOUND = '>';
+    /**
+     * 接收的消息
+     */
+    static final char INBOUND = '<';
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final Transport transport;
+    private final Writer writer;
+    private final long start = System.nanoTime();
+    private Consumer<String> consumer;
+    private boolean closed;
+
+    public RecordingTransport(Transport transport, String path) {
+        this.transport = transport;
+        try {
+            OutputStream out = new FileOutputStream(path);
+            if (path.endsWith(".gz")) {
+                out = new GZIPOutputStream(out, BUFFER_SIZE);
+            }
+            this.writer = new BufferedWriter(new OutputStreamWriter(out, Charset.UTF_8), BUFFER_SIZE);
+        } catch (IOException e) {
+            throw new InstrumentException("Failed to create recording " + path, e);
+        }
+        this.transport.addConsumer(this);
+    }
+
+    @Override
+    public void send(String message) {
+        this.record(OUTBOUND, message);
+        this.transport.send(message);
+    }
+
+    @Override
+    public void send(byte[] message) {
+        this.record(OUTBOUND, new String(message, Charset.UTF_8));
+        this.transport.send(message);
+    }
+
+    @Override
+    public void send(byte[] message, String sessionId) {
+        this.record(OUTBOUND, new String(message, Charset.UTF_8));
+        this.transport.send(message, sessionId);
+    }
+
+    @Override
+    public void accept(String message) {
+        this.record(INBOUND, message);
+        Consumer<String> consumer = this.consumer;
+        if (consumer != null) {
+            consumer.accept(message);
+        }
+    }
+
+    @Override
+    public void addConsumer(Consumer<String> consumer) {
+        this.consumer = consumer;
+    }
+
+    @Override
+    public OutboundQueue getOutboundQueue() {
+        return this.transport.getOutboundQueue();
+    }
+
+    @Override
+    public void close() {
+        try {
+            this.transport.close();
+        } finally {
+            synchronized (this.writer) {
+                if (!this.closed) {
+                    this.closed = true;
+                    IoKit.close(this.writer);
+                }
+            }
+        }
+    }
+
+    private void record(char direction, String message) {
+        long micros = (System.nanoTime() - this.start) / 1000;
+        synchronized (this.writer) {
+            if (this.closed) {
+                return;
+            }
+            try {
+                this.writer.write(direction);
+                this.writer.write(' ');
+                this.writer.write(Long.toString(micros));
+                this.writer.write(' ');
+                // CDP消息是单行JSON，原样写入即可
+                this.writer.write(message);
+                this.writer.write('\n');
+            } catch (IOException e) {
+                Logger.error("record message error: {}", e.getMessage());
+            }
+        }
+    }
+
+}
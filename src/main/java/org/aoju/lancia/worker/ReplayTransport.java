@@ -0,0 +1,322 @@
+/*********************************************************************************
+ *                                                                               *
+ * The MIT License (MIT)                                                         *
+ *                                                                               *
+ * Copyright (c) 2015-2021 aoju.org and other contributors.                      *
+ *                                                                               *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy  *
+ * of this software and associated documentation files (the "Software"), to deal *
+ * in the Software without restriction, including without limitation the rights  *
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell     *
+ * copies of the Software, and to permit persons to whom the Software is         *
+ * furnished to do so, subject to the following conditions:                      *
+ *                                                                               *
+ * The above copyright notice and this permission notice shall be included in    *
+ * all copies or substantial portions of the Software.                           *
+ *                                                                               *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR    *
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,      *
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE   *
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER        *
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, *
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN     *
+ * THE SOFTWARE.                                                                 *
+ *                                                                               *
+ ********************************************************************************/
+package org.aoju.lancia.worker;
+
+import com.alibaba.fastjson.JSONObject;
+import org.aoju.bus.core.lang.Charset;
+import org.aoju.bus.core.lang.exception.InstrumentException;
+import org.aoju.bus.logger.Logger;
+import org.aoju.lancia.Variables;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * 回放{@link RecordingTransport}录制的消息，不需要浏览器
+ * 发送的命令按方法名和sessionId依次匹配录制的命令，响应改写为实际的id后返回
+ * 接收的消息按录制顺序回放，录制中排在它之前的命令都发送之后才会回放，间隔按原始节奏乘以倍速
+ *
+ * @author Kimi Liu
+ * @version 1.2.8
+ * @since JDK 1.8+
+ */
+public class ReplayTransport implements Transport {
+
+    private final List<Entry> entries;
+    /**
+     * 录制的命令id到实际命令id
+     */
+    private final Map<Long, Long> ids = new HashMap<>();
+    /**
+     * 没有录制的命令直接返回的错误
+     */
+    private final List<String> unmatched = new ArrayList<>();
+    /**
+     * 倍速，1为原始节奏，2为两倍速，小于等于0表示不等待
+     */
+    private final double speed;
+    /**
+     * 等待前面的命令发送的最长时间，超时后继续回放
+     */
+    private final long gateTimeout;
+    private Consumer<String> consumer;
+    private Thread replayThread;
+    /**
+     * 第一个还没有匹配的录制命令
+     */
+    private int cursor;
+    private volatile boolean closed;
+
+    public ReplayTransport(String path) {
+        this(path, 1);
+    }
+
+    public ReplayTransport(String path, double speed) {
+        this(path, speed, Variables.DEFAULT_TIMEOUT);
+    }
+
+    public ReplayTransport(String path, double speed, long gateTimeout) {
+        this.entries = read(path);
+        this.speed = speed;
+        this.gateTimeout = gateTimeout;
+        this.advance();
+    }
+
+    private static List<Entry> read(String path) {
+        List<Entry> entries = new ArrayList<>();
+        try (InputStream file = new FileInputStream(path)) {
+            InputStream in = path.endsWith(".gz") ? new GZIPInputStream(file) : file;
+            BufferedReader reader = new BufferedReader(new InputStreamReader(in, Charset.UTF_8));
+            String line;
+            while ((line = reader.readLine()) != null) {
+                int space = line.indexOf(' ', 2);
+                if (line.length() < 4 || space < 0) {
+                    continue;
+                }
+                entries.add(new Entry(line.charAt(0) == RecordingTransport.OUTBOUND,
+                        Long.parseLong(line.substring(2, space)), line.substring(space + 1)));
+            }
+        } catch (IOException | NumberFormatException e) {
+            throw new InstrumentException("Failed to read recording " + path + ": " + e.getMessage(), e);
+        }
+        return entries;
+    }
+
+    @Override
+    public void send(String message) {
+        Envelope envelope = Envelope.scan(message);
+        Long id = envelope.getId();
+        if (id == null) {
+            return;
+        }
+        synchronized (this) {
+            Entry entry = this.match(envelope.getMethod(), envelope.getSessionId());
+            if (entry != null) {
+                entry.matched = true;
+                this.ids.put(entry.envelope.getId(), id);
+                this.advance();
+            } else {
+                JSONObject error = new JSONObject();
+                error.put(Variables.RECV_MESSAGE_ERROR_MESSAGE_PROPERTY, "No recorded response for " + envelope.getMethod());
+                JSONObject response = new JSONObject();
+                response.put(Variables.RECV_MESSAGE_ID_PROPERTY, id);
+                response.put(Variables.RECV_MESSAGE_ERROR_PROPERTY, error);
+                if (envelope.getSessionId() != null) {
+                    response.put(Variables.RECV_MESSAGE_SESSION_ID_PROPERTY, envelope.getSessionId());
+                }
+                this.unmatched.add(response.toJSONString());
+            }
+            this.notifyAll();
+        }
+    }
+
+    @Override
+    public void send(byte[] message) {
+        send(new String(message, Charset.UTF_8));
+    }
+
+    @Override
+    public synchronized void addConsumer(Consumer<String> consumer) {
+        this.consumer = consumer;
+        if (this.replayThread == null) {
+            this.replayThread = new Thread(this::replay, "ReplayThread");
+            this.replayThread.setDaemon(true);
+            this.replayThread.start();
+        }
+    }
+
+    @Override
+    public void close() {
+        this.closed = true;
+        synchronized (this) {
+            this.notifyAll();
+        }
+    }
+
+    /**
+     * 从第一个没有匹配的命令开始，找方法名和sessionId相同的录制命令
+     */
+    private Entry match(String method, String sessionId) {
+        for (int i = this.cursor; i < this.entries.size(); i++) {
+            Entry entry = this.entries.get(i);
+            if (entry.outbound && !entry.matched
+                    && Objects.equals(method, entry.envelope.getMethod())
+                    && Objects.equals(sessionId, entry.envelope.getSessionId())) {
+                return entry;
+            }
+        }
+        return null;
+    }
+
+    private void advance() {
+        while (this.cursor < this.entries.size()) {
+            Entry entry = this.entries.get(this.cursor);
+            if (entry.outbound && !entry.matched) {
+                return;
+            }
+            this.cursor++;
+        }
+    }
+
+    private void replay() {
+        long previous = 0;
+        for (int i = 0; i < this.entries.size() && !this.closed; i++) {
+            Entry entry = this.entries.get(i);
+            if (entry.outbound) {
+                previous = Math.max(previous, entry.time);
+                continue;
+            }
+            if (!this.await(i)) {
+                return;
+            }
+            if (this.speed > 0 && entry.time > previous) {
+                long micros = (long) ((entry.time - previous) / this.speed);
+                try {
+                    TimeUnit.MICROSECONDS.sleep(micros);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+            previous = entry.time;
+            String message = entry.message;
+            Long recordedId = entry.envelope.getId();
+            if (recordedId != null) {
+                Long id;
+                synchronized (this) {
+                    id = this.ids.remove(recordedId);
+                }
+                if (id == null) {
+                    Logger.debug("skip recorded response {}: command was not sent", recordedId);
+                    continue;
+                }
+                JSONObject response = entry.envelope.body();
+                response.put(Variables.RECV_MESSAGE_ID_PROPERTY, id);
+                message = response.toJSONString();
+            }
+            this.deliver(message);
+        }
+        // 录制回放完后继续应答没有录制的命令
+        while (!this.closed) {
+            List<String> errors;
+            synchronized (this) {
+                while (this.unmatched.isEmpty() && !this.closed) {
+                    try {
+                        this.wait();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                errors = new ArrayList<>(this.unmatched);
+                this.unmatched.clear();
+            }
+            errors.forEach(this::deliver);
+        }
+    }
+
+    /**
+     * 等待录制中排在index之前的命令都已发送，期间返回没有录制的命令的错误
+     *
+     * @param index 要回放的消息位置
+     * @return false表示传输已经关闭
+     */
+    private boolean await(int index) {
+        long deadline = System.currentTimeMillis() + this.gateTimeout;
+        while (true) {
+            List<String> errors = null;
+            boolean open;
+            synchronized (this) {
+                if (!this.unmatched.isEmpty()) {
+                    errors = new ArrayList<>(this.unmatched);
+                    this.unmatched.clear();
+                }
+                open = this.cursor >= index;
+                if (errors == null && !open && !this.closed) {
+                    long remaining = deadline - System.currentTimeMillis();
+                    if (remaining <= 0) {
+                        Logger.warn("replay continues without command {}", this.entries.get(this.cursor).envelope.getMethod());
+                        this.entries.get(this.cursor).matched = true;
+                        this.advance();
+                        deadline = System.currentTimeMillis() + this.gateTimeout;
+                        continue;
+                    }
+                    try {
+                        this.wait(remaining);
+                    } catch (InterruptedException e) {
+                        return false;
+                    }
+                    continue;
+                }
+            }
+            if (this.closed) {
+                return false;
+            }
+            if (errors != null) {
+                errors.forEach(this::deliver);
+                continue;
+            }
+            return open;
+        }
+    }
+
+    private void deliver(String message) {
+        Consumer<String> consumer = this.consumer;
+        if (consumer == null) {
+            return;
+        }
+        try {
+            // 和实时传输一样经过ResponseSink，回放的pdf、截图等输出流同样写出数据
+            byte[] bytes = message.getBytes(Charset.UTF_8);
+            consumer.accept(ResponseSink.decode(bytes, 0, bytes.length));
+        } catch (RuntimeException e) {
+            Logger.error("handle replayed message error ", e);
+        }
+    }
+
+    private static class Entry {
+
+        private final boolean outbound;
+        private final long time;
+        private final String message;
+        private final Envelope envelope;
+        private boolean matched;
+
+        Entry(boolean outbound, long time, String message) {
+            this.outbound = outbound;
+            this.time = time;
+            this.message = message;
+            this.envelope = Envelope.scan(message);
+        }
+
+    }
+
+}
@@ -0,0 +1,305 @@
+/*********************************************************************************
+ *                                                                               *
+ * The MIT License (MIT)                                                         *
+ *                                                                               *
+ * Copyright (c) 2015-2021 aoju.org and other contributors.                      *
+ *                                                                               *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy  *
+ * of this software and associated documentation files (the "Software"), to deal *
+ * in the Software without restriction, including without limitation the rights  *
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell     *
+ * copies of the Software, and to permit persons to whom the Software is         *
+ * furnished to do so, subject to the following conditions:                      *
+ *                                                                               *
+ * The above copyright notice and this permission notice shall be included in    *
+ * all copies or substantial portions of the Software.                           *
+ *                                                                               *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR    *
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,      *
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE   *
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER        *
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, *
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN     *
+ * THE SOFTWARE.                                                                 *
+ *                                                                               *
+ ********************************************************************************/
+package org.aoju.lancia.worker;
+
+import com.alibaba.fastjson.JSONObject;
+import org.aoju.bus.core.lang.Charset;
+import org.aoju.bus.core.lang.exception.InstrumentException;
+import org.aoju.bus.logger.Logger;
+import org.aoju.lancia.Variables;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Map;
+import java.util.concurrent.*;
+
+/**
+ * 响应中大字段的接收器
+ * 截图、PDF等命令的结果中带有很大的base64字段，登记接收器后，
+ * 接收线程只把该字段的原始字节取出，不再生成对应的字符串，交给上层的结果中该字段为空字符串；
+ * 解码和写入输出流在执行器中进行，慢的输出流不会阻塞接收线程
+ *
+ * @author Kimi Liu
+ * @version 1.2.8
+ * @since JDK 1.8+
+ */
+public class ResponseSink {
+
+    /**
+     * 已登记的接收器，消息id全局唯一，所有连接共用
+     */
+    private static final Map<Long, ResponseSink> SINKS = new ConcurrentHashMap<>();
+
+    private static final byte[] ID = "\"id\"".getBytes(Charset.US_ASCII);
+
+    private static final int DECODE_BUFFER_SIZE = 48 * 1024;
+
+    /**
+     * 需要转存的字段名
+     */
+    private final String field;
+
+    /**
+     * 带引号的字段名，用于匹配
+     */
+    private final byte[] name;
+
+    private final OutputStream output;
+
+    /**
+     * 接收线程取出的字段原始字节，写出后释放
+     */
+    private byte[] data;
+
+    /**
+     * 已写入的字节数
+     */
+    private volatile long size;
+
+    /**
+     * 写入过程中的异常
+     */
+    private volatile IOException error;
+
+    public ResponseSink(String field, OutputStream output) {
+        this.field = field;
+        this.name = ("\"" + field + "\"").getBytes(Charset.UTF_8);
+        this.output = output;
+    }
+
+    public ResponseSink(String field, WritableByteChannel channel) {
+        this(field, Channels.newOutputStream(channel));
+    }
+
+    static void register(long id, ResponseSink sink) {
+        SINKS.put(id, sink);
+    }
+
+    static void unregister(long id) {
+        SINKS.remove(id);
+    }
+
+    /**
+     * 把收到的消息字节转为字符串，如果是已登记命令的响应，先把大字段转存到接收器
+     *
+     * @param array  消息字节
+     * @param offset 起始位置
+     * @param length 长度
+     * @return 消息
+     */
+    public static String decode(byte[] array, int offset, int length) {
+        if (!SINKS.isEmpty()) {
+            String message = divert(array, offset, length);
+            if (message != null) {
+                return message;
+            }
+        }
+        return new String(array, offset, length, Charset.UTF_8);
+    }
+
+    private static String divert(byte[] array, int offset, int length) {
+        int end = offset + length;
+        int index = skip(array, offset, end);
+        if (index == end || array[index] != '{') {
+            return null;
+        }
+        index = skip(array, index + 1, end);
+        if (!startsWith(array, index, end, ID)) {
+            return null;
+        }
+        index = skip(array, index + ID.length, end);
+        if (index == end || array[index] != ':') {
+            return null;
+        }
+        index = skip(array, index + 1, end);
+        long id = 0;
+        for (; index < end && array[index] >= '0' && array[index] <= '9'; index++) {
+            id = id * 10 + (array[index] - '0');
+        }
+        ResponseSink sink = SINKS.get(id);
+        if (sink == null) {
+            return null;
+        }
+        int start = sink.indexOf(array, index, end);
+        if (start < 0) {
+            return null;
+        }
+        int close = start;
+        for (; close < end && array[close] != '"'; close++) {
+            // base64不含转义字符，遇到转义说明字段不是base64，按普通消息处理
+            if (array[close] == '\\') {
+                return null;
+            }
+        }
+        if (close == end) {
+            return null;
+        }
+        SINKS.remove(id);
+        // 接收缓冲区会被复用，字段字节需要复制出来
+        sink.data = Arrays.copyOfRange(array, start, close);
+        return new String(array, offset, start - offset, Charset.UTF_8) + new String(array, close, end - close, Charset.UTF_8);
+    }
+
+    private static int skip(byte[] array, int index, int end) {
+        while (index < end && (array[index] == ' ' || array[index] == '\t' || array[index] == '\r' || array[index] == '\n')) {
+            index++;
+        }
+        return index;
+    }
+
+    private static boolean startsWith(byte[] array, int offset, int end, byte[] prefix) {
+        if (end - offset < prefix.length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length; i++) {
+            if (array[offset + i] != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 查找字段值的起始位置，即"field":"之后的位置
+     */
+    private int indexOf(byte[] array, int from, int end) {
+        for (int i = from; i < end; i++) {
+            if (array[i] != '{' && array[i] != ',') {
+                continue;
+            }
+            int index = skip(array, i + 1, end);
+            if (!startsWith(array, index, end, name)) {
+                continue;
+            }
+            index = skip(array, index + name.length, end);
+            if (index == end || array[index] != ':') {
+                continue;
+            }
+            index = skip(array, index + 1, end);
+            if (index < end && array[index] == '"') {
+                return index + 1;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * 响应到达后在执行器中把字段写入输出流
+     *
+     * @param response 命令的响应
+     * @param method   命令名称，用于错误信息
+     * @param executor 执行写入的执行器
+     * @return 写入完成后完成的future，写入失败、被丢弃时同样失败
+     */
+    CompletableFuture<JSONObject> writeAsync(CompletableFuture<JSONObject> response, String method, Executor executor) {
+        CompletableFuture<JSONObject> written = new CompletableFuture<>();
+        response.whenComplete((result, error) -> {
+            if (error != null) {
+                written.completeExceptionally(error);
+                return;
+            }
+            FutureTask<JSONObject> task = new FutureTask<JSONObject>(() -> this.write(result, method)) {
+                @Override
+                protected void done() {
+                    try {
+                        written.complete(this.get());
+                    } catch (ExecutionException e) {
+                        written.completeExceptionally(e.getCause());
+                    } catch (CancellationException | InterruptedException e) {
+                        written.completeExceptionally(new InstrumentException("Protocol error " + method + ": write " + field + " was discarded"));
+                    }
+                }
+            };
+            try {
+                executor.execute(task);
+            } catch (RejectedExecutionException e) {
+                written.completeExceptionally(e);
+            }
+        });
+        return written;
+    }
+
+    /**
+     * 把取出的字段写入输出流，base64Encoded为false时(例如IO.read读取文本流)原样写出
+     * 取出时已排除带转义字符的值，原始字节就是字段的UTF-8内容；
+     * 没有取出时(值带转义字符，或者消息没有经过{@link #decode})从结果中读取该字段，同样写入输出流
+     */
+    private JSONObject write(JSONObject result, String method) {
+        byte[] data = this.data;
+        this.data = null;
+        if (data == null) {
+            String value = result == null ? null : result.getString(field);
+            if (value == null || value.isEmpty()) {
+                return result;
+            }
+            data = value.getBytes(Charset.UTF_8);
+            result.put(field, "");
+        }
+        Boolean base64Encoded = result == null ? null : result.getBoolean(Variables.RECV_MESSAGE_BASE64ENCODED_PROPERTY);
+        try {
+            if (base64Encoded != null && !base64Encoded) {
+                output.write(data);
+                this.size = data.length;
+            } else {
+                byte[] buffer = new byte[Math.min(DECODE_BUFFER_SIZE, Math.max(data.length, 3))];
+                try (InputStream input = Base64.getDecoder().wrap(new ByteArrayInputStream(data))) {
+                    long total = 0;
+                    int read;
+                    while ((read = input.read(buffer)) != -1) {
+                        output.write(buffer, 0, read);
+                        total += read;
+                    }
+                    this.size = total;
+                }
+            }
+            output.flush();
+        } catch (IOException e) {
+            Logger.error("write field " + field + " to sink error", e);
+            this.error = e;
+            throw new InstrumentException("Protocol error " + method + ": write " + field + " failed", e);
+        }
+        return result;
+    }
+
+    public String getField() {
+        return field;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    public IOException getError() {
+        return error;
+    }
+
+}
@@ -36,11 +36,11 @@ import org.aoju.bus.core.toolkit.RandomKit;
 import org.aoju.bus.logger.Logger;
 
 import javax.net.SocketFactory;
+import java.io.BufferedOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.lang.reflect.InvocationTargetException;
-import java.math.BigInteger;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
 import java.net.Proxy;
@@ -50,6 +50,8 @@ import java.util.*;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Consumer;
 
 /**
@@ -85,29 +87,82 @@ public class SocketTransport implements Transport {
 
     @Override
     public void send(String message) {
-        Logger.debug(message);
-        this.socket.send(message);
+        this.send(message.getBytes(Charset.UTF_8));
     }
 
+    @Override
+    public void send(byte[] message) {
+        this.send(message, null);
+    }
+
+    @Override
+    public void send(byte[] message, String sessionId) {
+        if (!this.socket.send(message, sessionId)) {
+            throw new InstrumentException("Outbound queue is full, dropped a message of " + message.length + " bytes");
+        }
+    }
+
+    @Override
     public void addConsumer(Consumer<String> consumer) {
         this.consumer = consumer;
     }
 
+    @Override
+    public void addCloseListener(Runnable listener) {
+        this.socket.closeListener.set(listener);
+    }
+
+    @Override
+    public OutboundQueue getOutboundQueue() {
+        return this.socket.outQueue;
+    }
+
     /**
      * RFC 6455 websocket协议的实现
+     * 帧头通过位运算解析，分片消息拼接到可复用的缓冲区中，完整的帧直接从接收缓冲区解码为字符串
      */
     static class Protocol {
 
+        public static final int OPCODE_CONTINUATION = 0x0;
+        public static final int OPCODE_TEXT = 0x1;
+        public static final int OPCODE_BINARY = 0x2;
+        public static final int OPCODE_CLOSE = 0x8;
+        public static final int OPCODE_PING = 0x9;
+        public static final int OPCODE_PONG = 0xA;
+        /**
+         * 第一个分片的RSV1位表示消息经过permessage-deflate压缩
+         */
+        public static final int RSV1 = 0x40;
+
+        /**
+         * 可复用缓冲区的初始大小
+         */
+        private static final int INITIAL_BUFFER_SIZE = 64 * 1024;
+        /**
+         * 超过该大小的缓冲区在使用后释放，避免偶发的大消息长期占用内存
+         */
+        private static final int RETAINED_BUFFER_SIZE = 1024 * 1024;
+
         /**
          * 属性获取帧允许的最大大小
          */
         private final int maxBufferSize;
         /**
-         * 属性设置为当前不完整框架
+         * 跨越多次读取的不完整帧
          */
-        public ByteBuffer byteBuffer;
-
-        private int realPacketSize;
+        private byte[] pending = new byte[0];
+        private int pendingLength;
+        /**
+         * 分片消息的拼接缓冲区
+         */
+        private byte[] message = new byte[0];
+        private int messageLength;
+        private boolean fragmented;
+        private boolean compressed;
+        /**
+         * 握手协商出的压缩扩展，未协商时为null
+         */
+        private volatile PerMessageDeflate deflate;
 
         /**
          * websocket协议的构造函数由RFC 6455指定，带有自定义扩展和协议
@@ -128,193 +183,292 @@ public class SocketTransport implements Transport {
             this.maxBufferSize = inputMaxBufferSize;
         }
 
+        private static byte[] ensureCapacity(byte[] buffer, int required) {
+            if (required <= buffer.length) {
+                return buffer;
+            }
+            return Arrays.copyOf(buffer, Math.max(required, Math.max(INITIAL_BUFFER_SIZE, buffer.length << 1)));
+        }
+
+        public Protocol newInstance() {
+            return new Protocol(maxBufferSize);
+        }
+
         /**
-         * 获取掩码字节
-         *
-         * @param mask 掩码是否有效
-         * @return -128表示true, 0表示false
+         * 清除未完成的帧和分片消息
          */
-        private static byte getMaskByte(boolean mask) {
-            return mask ? (byte) -128 : 0;
+        public void reset() {
+            pending = new byte[0];
+            pendingLength = 0;
+            message = new byte[0];
+            messageLength = 0;
+            fragmented = false;
+            compressed = false;
+        }
+
+        public PerMessageDeflate getDeflate() {
+            return deflate;
+        }
+
+        public void setDeflate(PerMessageDeflate deflate) {
+            this.deflate = deflate;
         }
 
         /**
-         * 获取字节缓冲区的大小字节
+         * 创建文本帧，帧头单独分配，有效负载原地加掩码后直接由写线程聚合写出，不再复制
+         * 调用方交出数组的所有权，之后不能再读取或修改
          *
-         * @param mes 当前的缓冲区
-         * @return 字节大小
+         * @param payload UTF-8编码的消息
+         * @return 帧头和有效负载
          */
-        private static int getSizeByte(ByteBuffer mes) {
-            if (mes.remaining() <= 125) {
-                return 1;
-            } else if (mes.remaining() <= 65535) {
-                return 2;
+        public ByteBuffer[] createText(byte[] payload) {
+            PerMessageDeflate deflate = this.deflate;
+            byte[] deflated = deflate != null ? deflate.deflate(payload) : null;
+            if (deflated != null) {
+                payload = deflated;
             }
-            return 8;
+            int mask = ThreadLocalRandom.current().nextInt();
+            ByteBuffer header = createHeader(OPCODE_TEXT | (deflated != null ? RSV1 : 0), payload.length, mask, 0);
+            header.flip();
+            mask(payload, 0, payload.length, mask);
+            return new ByteBuffer[]{header, ByteBuffer.wrap(payload)};
         }
 
-        private static byte[] toByteArray(long val, int bytecount) {
-            byte[] buffer = new byte[bytecount];
-            int highest = 8 * bytecount - 8;
-            for (int i = 0; i < bytecount; i++) {
-                buffer[i] = (byte) (val >>> (highest - 8 * i));
-            }
-            return buffer;
+        /**
+         * 创建一个带掩码的完整帧，用于控制帧
+         *
+         * @param opcode  操作码
+         * @param payload 有效负载
+         * @return 可以直接写出的帧
+         */
+        public ByteBuffer createFrame(int opcode, ByteBuffer payload) {
+            int length = payload.remaining();
+            int mask = ThreadLocalRandom.current().nextInt();
+            ByteBuffer frame = createHeader(opcode, length, mask, length);
+            int offset = frame.position();
+            frame.put(payload);
+            mask(frame.array(), offset, length, mask);
+            frame.flip();
+            return frame;
         }
 
-        public Protocol newInstance() {
-            return new Protocol(maxBufferSize);
+        /**
+         * 写入帧头和掩码，RFC 6455 5.3要求客户端的每个帧使用新的不可预测的掩码
+         *
+         * @param capacity 帧头之后为有效负载预留的字节数
+         */
+        private ByteBuffer createHeader(int opcode, int length, int mask, int capacity) {
+            int header = length <= 125 ? 2 : (length <= 0xFFFF ? 4 : 10);
+            ByteBuffer frame = ByteBuffer.allocate(header + 4 + capacity);
+            frame.put((byte) (0x80 | opcode));
+            if (length <= 125) {
+                frame.put((byte) (0x80 | length));
+            } else if (length <= 0xFFFF) {
+                frame.put((byte) (0x80 | 126));
+                frame.putShort((short) length);
+            } else {
+                frame.put((byte) (0x80 | 127));
+                frame.putLong(length);
+            }
+            frame.putInt(mask);
+            return frame;
         }
 
-        public ByteBuffer createBinary(ByteBuffer byteBuffer) {
-            if (Logger.get().isTrace())
-                Logger.trace("afterEnconding({}): {}", byteBuffer.remaining(), (byteBuffer.remaining() > 1000 ? "too big to display" : new String(byteBuffer.array())));
-            boolean mask = true;
-            int sizebytes = getSizeByte(byteBuffer);
-            ByteBuffer buf = ByteBuffer.allocate(1 + (sizebytes > 1 ? sizebytes + 1 : sizebytes) + (mask ? 4 : 0) + byteBuffer.remaining());
-            byte optcode = 1;
-            byte one = -128;
-            one |= optcode;
-            buf.put(one);
-            byte[] payloadlengthbytes = toByteArray(byteBuffer.remaining(), sizebytes);
-            assert (payloadlengthbytes.length == sizebytes);
-
-            if (sizebytes == 1) {
-                buf.put((byte) (payloadlengthbytes[0] | getMaskByte(mask)));
-            } else if (sizebytes == 2) {
-                buf.put((byte) ((byte) 126 | getMaskByte(mask)));
-                buf.put(payloadlengthbytes);
-            } else if (sizebytes == 8) {
-                buf.put((byte) ((byte) 127 | getMaskByte(mask)));
-                buf.put(payloadlengthbytes);
-            } else {
-                throw new IllegalStateException("Size representation not supported/specified");
+        /**
+         * 原地给有效负载加掩码，按8字节整块异或，剩余的字节逐个异或
+         */
+        private static void mask(byte[] payload, int offset, int length, int mask) {
+            ByteBuffer buffer = ByteBuffer.wrap(payload);
+            long wide = ((long) mask << 32) | (mask & 0xFFFFFFFFL);
+            int i = 0;
+            for (; i + 8 <= length; i += 8) {
+                buffer.putLong(offset + i, buffer.getLong(offset + i) ^ wide);
             }
-            if (mask) {
-                ByteBuffer maskkey = ByteBuffer.allocate(4);
-                buf.put(maskkey.array());
-                for (int i = 0; byteBuffer.hasRemaining(); i++) {
-                    buf.put((byte) (byteBuffer.get() ^ maskkey.get(i % 4)));
-                }
-            } else {
-                buf.put(byteBuffer);
-                byteBuffer.flip();
+            for (; i < length; i++) {
+                payload[offset + i] ^= (byte) (mask >>> (24 - ((i & 3) << 3)));
             }
-            assert (buf.remaining() == 0) : buf.remaining();
-            buf.flip();
-            return buf;
         }
 
-        public List<ByteString> translate(ByteBuffer buffer) {
-            while (true) {
-                List<ByteString> frames = new LinkedList<>();
-                ByteString cur;
-                if (byteBuffer != null) {
-                    buffer.mark();
-                    // 接收的字节数
-                    int availableNextByteCount = buffer.remaining();
-                    // 完成不完整帧的字节数
-                    int expectedNextByteCount = byteBuffer.remaining();
-
-                    if (expectedNextByteCount > availableNextByteCount) {
-                        // 没有接收到足够的字节来完成帧
-                        byteBuffer.put(buffer.array(), buffer.position(), availableNextByteCount);
-                        buffer.position(buffer.position() + availableNextByteCount);
-                        return Collections.emptyList();
-                    }
-                    byteBuffer.put(buffer.array(), buffer.position(), expectedNextByteCount);
-                    buffer.position(buffer.position() + expectedNextByteCount);
-                    cur = translateSingle((ByteBuffer) byteBuffer.duplicate().position(0));
-                    frames.add(cur);
-                    byteBuffer = null;
+        /**
+         * 解码接收到的字节，完整的消息和控制帧交给处理器，不完整的帧保留到下一次读取
+         *
+         * @param buffer  接收缓冲区(堆内存)
+         * @param handler 帧处理器
+         */
+        public void decode(ByteBuffer buffer, Handler handler) {
+            if (pendingLength == 0) {
+                byte[] array = buffer.array();
+                int offset = buffer.arrayOffset() + buffer.position();
+                int end = buffer.arrayOffset() + buffer.limit();
+                int consumed = decodeFrames(array, offset, end, handler);
+                buffer.position(buffer.position() + consumed);
+                if (buffer.hasRemaining()) {
+                    pending = ensureCapacity(pending, buffer.remaining());
+                    buffer.get(pending, 0, buffer.remaining());
+                    pendingLength = end - offset - consumed;
                 }
-
-                while (buffer.hasRemaining()) {
-                    // 尽可能多读整帧
-                    buffer.mark();
-                    try {
-                        cur = translateSingle(buffer);
-                        frames.add(cur);
-                    } catch (InstrumentException e) {
-                        buffer.reset();
-                        byteBuffer = ByteBuffer.allocate(this.realPacketSize);
-                        byteBuffer.put(buffer);
-                        break;
+            } else {
+                int length = buffer.remaining();
+                pending = ensureCapacity(pending, pendingLength + length);
+                buffer.get(pending, pendingLength, length);
+                pendingLength += length;
+                int consumed = decodeFrames(pending, 0, pendingLength, handler);
+                if (consumed > 0) {
+                    pendingLength -= consumed;
+                    if (pendingLength > 0) {
+                        System.arraycopy(pending, consumed, pending, 0, pendingLength);
+                    } else if (pending.length > RETAINED_BUFFER_SIZE) {
+                        pending = new byte[0];
                     }
                 }
-                return frames;
             }
         }
 
         /**
-         * 根据扩展的有效载荷长度(126或127)转换缓冲区
+         * 解析尽可能多的完整帧
          *
-         * @param buffer         要读取的缓冲区
-         * @param payloadLength  旧有效载荷长度
-         * @param realLacketSize 实际数据包大小
-         * @return 包含新的有效负载长度和新的包大小的新有效负载数据
-         * @throws InstrumentException 如果控制帧的长度无效，则抛出
-         */
-        private void translatePayload(int[] array, ByteBuffer buffer, int payloadLength, int realLacketSize) throws InstrumentException {
-            if (payloadLength == 126) {
-                realLacketSize += 2; // 额外的长度字节
-                byte[] sizebytes = new byte[3];
-                sizebytes[1] = buffer.get( /*1 + 1*/);
-                sizebytes[2] = buffer.get( /*1 + 2*/);
-                payloadLength = new BigInteger(sizebytes).intValue();
-            } else {
-                realLacketSize += 8; // 额外的长度字节
-                byte[] bytes = new byte[8];
-                for (int i = 0; i < 8; i++) {
-                    bytes[i] = buffer.get( /*1 + i*/);
+         * @return 已经消费的字节数
+         */
+        private int decodeFrames(byte[] array, int offset, int end, Handler handler) {
+            int start = offset;
+            while (true) {
+                int available = end - offset;
+                if (available < 2) {
+                    break;
+                }
+                int b0 = array[offset] & 0xFF;
+                int b1 = array[offset + 1] & 0xFF;
+                long length = b1 & 0x7F;
+                int header = 2;
+                if (length == 126) {
+                    if (available < 4) {
+                        break;
+                    }
+                    length = ((array[offset + 2] & 0xFF) << 8) | (array[offset + 3] & 0xFF);
+                    header = 4;
+                } else if (length == 127) {
+                    if (available < 10) {
+                        break;
+                    }
+                    length = 0;
+                    for (int i = 2; i < 10; i++) {
+                        length = (length << 8) | (array[offset + i] & 0xFF);
+                    }
+                    header = 10;
+                }
+                boolean masked = (b1 & 0x80) != 0;
+                if (masked) {
+                    header += 4;
+                }
+                if (length < 0 || length > maxBufferSize || length > Integer.MAX_VALUE - header) {
+                    throw new InstrumentException("Frame too large: " + length);
                 }
-                long length = new BigInteger(bytes).longValue();
-                payloadLength = (int) length;
+                int frameSize = header + (int) length;
+                if (available < frameSize) {
+                    if (offset == start || pendingLength == 0) {
+                        // 提前为整帧预留空间，避免大帧在多次读取中反复扩容
+                        pending = ensureCapacity(pending, frameSize);
+                    }
+                    break;
+                }
+                int payload = offset + header;
+                if (masked) {
+                    for (int i = 0; i < length; i++) {
+                        array[payload + i] ^= array[payload - 4 + (i & 3)];
+                    }
+                }
+                frame((b0 & 0x80) != 0, (b0 & RSV1) != 0, b0 & 0x0F, array, payload, (int) length, handler);
+                offset += frameSize;
             }
+            return offset - start;
+        }
 
-            array[0] = payloadLength;
-            array[1] = realLacketSize;
+        private void frame(boolean fin, boolean rsv1, int opcode, byte[] array, int offset, int length, Handler handler) {
+            if (rsv1 && (deflate == null || opcode == OPCODE_CONTINUATION || opcode >= OPCODE_CLOSE)) {
+                throw new InstrumentException("Unexpected RSV1 bit on opcode: " + opcode);
+            }
+            switch (opcode) {
+                case OPCODE_TEXT:
+                case OPCODE_BINARY:
+                    if (fin) {
+                        fragmented = false;
+                        messageLength = 0;
+                        handler.onMessage(rsv1 ? deflate.inflate(array, offset, length, maxBufferSize) : ResponseSink.decode(array, offset, length));
+                    } else {
+                        fragmented = true;
+                        compressed = rsv1;
+                        messageLength = 0;
+                        appendMessage(array, offset, length);
+                    }
+                    break;
+                case OPCODE_CONTINUATION:
+                    if (!fragmented) {
+                        throw new InstrumentException("Continuation frame without a started message");
+                    }
+                    appendMessage(array, offset, length);
+                    if (fin) {
+                        String text = compressed ? deflate.inflate(message, 0, messageLength, maxBufferSize) : ResponseSink.decode(message, 0, messageLength);
+                        fragmented = false;
+                        messageLength = 0;
+                        if (message.length > RETAINED_BUFFER_SIZE) {
+                            message = new byte[0];
+                        }
+                        handler.onMessage(text);
+                    }
+                    break;
+                case OPCODE_PING:
+                    handler.onPing(ByteBuffer.wrap(Arrays.copyOfRange(array, offset, offset + length)));
+                    break;
+                case OPCODE_PONG:
+                    break;
+                case OPCODE_CLOSE:
+                    int code = length >= 2 ? ((array[offset] & 0xFF) << 8) | (array[offset + 1] & 0xFF) : Socket.NORMAL;
+                    String reason = length > 2 ? new String(array, offset + 2, length - 2, Charset.UTF_8) : Normal.EMPTY;
+                    handler.onClose(code, reason);
+                    break;
+                default:
+                    throw new InstrumentException("Unknown opcode: " + opcode);
+            }
         }
 
-        private ByteString translateSingle(ByteBuffer buffer) {
-            if (buffer == null)
-                throw new IllegalArgumentException();
-            int maxPacketsize = buffer.remaining();
-            this.realPacketSize = 2;
-
-            buffer.get( /*0*/);
-
-            byte b2 = buffer.get( /*1*/);
-            boolean mask = (b2 & -128) != 0;
-            int payloadLength = (byte) (b2 & ~(byte) 128);
-
-            if (!(payloadLength >= 0 && payloadLength <= 125)) {
-                int[] array = {payloadLength, realPacketSize};
-                translatePayload(array, buffer, payloadLength, realPacketSize);
-                payloadLength = array[0];
-                realPacketSize = array[1];
-            }
-            realPacketSize += (mask ? 4 : 0);
-            realPacketSize += payloadLength;
-
-            if (maxPacketsize < realPacketSize) {
-                Logger.trace("Incomplete frame: maxPacketsize < realPacketSize");
-                throw new InstrumentException("" + realPacketSize);
-            }
-            ByteBuffer payload = ByteBuffer.allocate(payloadLength);
-            if (mask) {
-                byte[] maskskey = new byte[4];
-                buffer.get(maskskey);
-                for (int i = 0; i < payloadLength; i++) {
-                    payload.put((byte) (buffer.get( /*payloadstart + i*/) ^ maskskey[i % 4]));
-                }
-            } else {
-                payload.put(buffer.array(), buffer.position(), payload.limit());
-                buffer.position(buffer.position() + payload.limit());
+        private void appendMessage(byte[] array, int offset, int length) {
+            if ((long) messageLength + length > maxBufferSize) {
+                throw new InstrumentException("Message too large");
             }
-            payload.flip();
-            return ByteString.of(payload);
+            message = ensureCapacity(message, messageLength + length);
+            System.arraycopy(array, offset, message, messageLength, length);
+            messageLength += length;
+        }
+
+        /**
+         * 帧处理器
+         */
+        interface Handler {
+
+            /**
+             * 收到完整的文本消息
+             *
+             * @param message 消息
+             */
+            void onMessage(String message);
+
+            /**
+             * 收到ping，需要回复pong
+             *
+             * @param payload ping的有效负载
+             */
+            void onPing(ByteBuffer payload);
+
+            /**
+             * 收到对端的关闭帧
+             *
+             * @param code   关闭码
+             * @param reason 原因
+             */
+            void onClose(int code, String reason);
+
         }
+
     }
 
     /**
@@ -349,11 +503,11 @@ public class SocketTransport implements Transport {
          * 连接已刷新并关闭
          */
         public static final int FLASHPOLICY = -3;
-
         /**
-         * Attribute来同步写操作
+         * 输出流的缓冲区大小，一批小帧合并成一次写出
          */
-        private final Object object = new Object();
+        private static final int OUTPUT_BUFFER_SIZE = 64 * 1024;
+
         /**
          * 这个套接字的SocketFactory
          */
@@ -373,7 +527,7 @@ public class SocketTransport implements Transport {
         /**
          * 需要发送到客户端的缓冲区队列
          */
-        public BlockingQueue<ByteBuffer> outQueue;
+        public OutboundQueue outQueue;
         /**
          * 需要处理的缓冲区队列
          */
@@ -430,6 +584,10 @@ public class SocketTransport implements Transport {
          * The latch for closeBlocking()
          */
         private CountDownLatch closeLatch = new CountDownLatch(1);
+        /**
+         * 连接关闭时的回调，取出后置空，保证只通知一次
+         */
+        private final AtomicReference<Runnable> closeListener = new AtomicReference<>();
         /**
          * 允许您停用Nagle算法的属性
          */
@@ -475,7 +633,7 @@ public class SocketTransport implements Transport {
             }
             this.protocol = protocol.newInstance();
             this.uri = serverUri;
-            this.outQueue = new LinkedBlockingQueue<>();
+            this.outQueue = new OutboundQueue();
             this.inQueue = new LinkedBlockingQueue<>();
             if (httpHeaders != null) {
                 headers = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
@@ -486,7 +644,14 @@ public class SocketTransport implements Transport {
             setReuseAddr(false);
         }
 
-        public static void translate(ByteBuffer buf) throws InstrumentException {
+        /**
+         * 解析握手响应
+         *
+         * @param buf 响应内容
+         * @return Sec-WebSocket-Extensions响应头的值，没有时返回null
+         * @throws InstrumentException 响应不是101或者格式不对
+         */
+        public static String translate(ByteBuffer buf) throws InstrumentException {
             String line = BufferKit.readLine(buf, Charset.UTF_8);
             if (line == null)
                 throw new InstrumentException("" + buf.capacity() + 128);
@@ -503,26 +668,43 @@ public class SocketTransport implements Transport {
                 throw new InstrumentException(String.format("Invalid status line received: %s Status line: %s", firstLineTokens[0], line));
             }
 
+            String extensions = null;
             line = BufferKit.readLine(buf, Charset.UTF_8);
             while (line != null && line.length() > 0) {
                 String[] pair = line.split(":", 2);
                 if (pair.length != 2)
                     throw new InstrumentException("Not an http header");
+                if (PerMessageDeflate.HEADER.equalsIgnoreCase(pair[0].trim())) {
+                    extensions = extensions == null ? pair[1].trim() : extensions + ", " + pair[1].trim();
+                }
                 line = BufferKit.readLine(buf, Charset.UTF_8);
             }
             if (line == null)
                 throw new InstrumentException();
+            return extensions;
         }
 
         public boolean send(String text) {
             if (text == null)
                 throw new IllegalArgumentException("Cannot send 'null' data to a WebSocketImpl.");
-            ByteBuffer byteBuffer = ByteBuffer.wrap(text.getBytes(Charset.UTF_8));
-            if (byteBuffer == null) {
-                throw new IllegalArgumentException();
-            }
-            write(protocol.createBinary(byteBuffer));
-            return true;
+            return send(text.getBytes(Charset.UTF_8));
+        }
+
+        public boolean send(byte[] payload) {
+            return send(payload, null);
+        }
+
+        /**
+         * 发送文本消息，同一会话的消息按发送顺序写出
+         *
+         * @param payload   UTF-8编码的消息，加掩码时会被原地修改
+         * @param sessionId 消息所属的会话，浏览器级别的消息为null
+         * @return false表示发送队列已满，消息被丢弃
+         */
+        public boolean send(byte[] payload, String sessionId) {
+            if (payload == null)
+                throw new IllegalArgumentException("Cannot send 'null' data to a WebSocketImpl.");
+            return outQueue.add(sessionId, protocol.createText(payload));
         }
 
         public boolean close(int code, String message) {
@@ -537,7 +719,8 @@ public class SocketTransport implements Transport {
          */
         public void decode(ByteBuffer byteBuffer) {
             assert (byteBuffer.hasRemaining());
-            Logger.trace("process({}): ({})", byteBuffer.remaining(), (byteBuffer.remaining() > 1000 ? "too big to display" : new String(byteBuffer.array(), byteBuffer.position(), byteBuffer.remaining())));
+            if (Logger.get().isTrace())
+                Logger.trace("process({}): ({})", byteBuffer.remaining(), (byteBuffer.remaining() > 1000 ? "too big to display" : new String(byteBuffer.array(), byteBuffer.position(), byteBuffer.remaining())));
 
             if (readyState != NOT_YET_CONNECTED) {
                 if (readyState == OPEN) {
@@ -572,7 +755,10 @@ public class SocketTransport implements Transport {
                 socketBuffer = tmpHandshakeBytes;
             }
             socketBuffer.mark();
-            translate(socketBuffer);
+            String extensions = translate(socketBuffer);
+            if (PerMessageDeflate.isEnabled()) {
+                protocol.setDeflate(PerMessageDeflate.accept(extensions));
+            }
             open();
             return true;
         }
@@ -626,7 +812,7 @@ public class SocketTransport implements Transport {
                 this.onWebsocketError(e);
             }
             if (this.protocol != null)
-                this.protocol.byteBuffer = null;
+                this.protocol.reset();
             readyState = CLOSED;
         }
 
@@ -641,7 +827,7 @@ public class SocketTransport implements Transport {
             flushandCloseState = true;
 
             if (this.protocol != null)
-                this.protocol.byteBuffer = null;
+                this.protocol.reset();
         }
 
         public void eot() {
@@ -669,6 +855,9 @@ public class SocketTransport implements Transport {
             map.put(Header.CONNECTION, Header.UPGRADE);
             map.put(Header.SEC_WEBSOCKET_KEY, RandomKit.randomString(16));
             map.put(Header.SEC_WEBSOCKET_VERSION, "13");
+            if (PerMessageDeflate.isEnabled()) {
+                map.put(PerMessageDeflate.HEADER, PerMessageDeflate.offer());
+            }
 
             StringBuilder bui = new StringBuilder(100);
             bui.append("GET ")
@@ -757,7 +946,7 @@ public class SocketTransport implements Transport {
                 }
 
                 istream = socket.getInputStream();
-                ostream = socket.getOutputStream();
+                ostream = new BufferedOutputStream(socket.getOutputStream(), OUTPUT_BUFFER_SIZE);
 
                 sendHandshake();
             } catch (Exception e) {
@@ -817,6 +1006,10 @@ public class SocketTransport implements Transport {
             close(code, reason, remote);
             connectLatch.countDown();
             closeLatch.countDown();
+            Runnable listener = closeListener.getAndSet(null);
+            if (listener != null) {
+                listener.run();
+            }
         }
 
         /**
@@ -874,7 +1067,7 @@ public class SocketTransport implements Transport {
                     this.connectReadThread.interrupt();
                     this.connectReadThread = null;
                 }
-                this.protocol.byteBuffer = null;
+                this.protocol.reset();
                 if (this.socket != null) {
                     this.socket.close();
                     this.socket = null;
@@ -913,15 +1106,27 @@ public class SocketTransport implements Transport {
         }
 
         private void decodeFrames(ByteBuffer socketBuffer) {
-            List<ByteString> frames = protocol.translate(socketBuffer);
-            for (ByteString f : frames) {
-                Logger.trace("Matched frame: {}", f);
-                try {
-                    this.onWebsocketMessage(BufferKit.readLine(ByteBuffer.wrap(f.internalArray())));
-                } catch (RuntimeException e) {
-                    this.onWebsocketError(e);
+            protocol.decode(socketBuffer, new Protocol.Handler() {
+                @Override
+                public void onMessage(String message) {
+                    try {
+                        onWebsocketMessage(message);
+                    } catch (RuntimeException e) {
+                        onWebsocketError(e);
+                    }
                 }
-            }
+
+                @Override
+                public void onPing(ByteBuffer payload) {
+                    outQueue.addPriority(protocol.createFrame(Protocol.OPCODE_PONG, payload));
+                }
+
+                @Override
+                public void onClose(int code, String reason) {
+                    outQueue.addPriority(protocol.createFrame(Protocol.OPCODE_CLOSE, ByteBuffer.wrap(new byte[]{(byte) (code >>> 8), (byte) code})));
+                    close(code, reason, true);
+                }
+            });
         }
 
         /**
@@ -930,9 +1135,7 @@ public class SocketTransport implements Transport {
          * @param byteBuffer 缓冲列表
          */
         private void write(ByteBuffer byteBuffer) {
-            synchronized (object) {
-                outQueue.add(byteBuffer);
-            }
+            outQueue.addPriority(byteBuffer);
         }
 
         private void open() {
@@ -967,28 +1170,34 @@ public class SocketTransport implements Transport {
         }
 
         /**
-         * 把数据写入输出流
+         * 把数据写入输出流，每次唤醒取出队列中的一批帧，写完之后只刷新一次
          */
         private void runWrite() {
+            List<ByteBuffer> batch = new ArrayList<>();
             try {
                 while (!java.lang.Thread.interrupted()) {
-                    ByteBuffer buffer = rfc.outQueue.take();
-                    rfc.ostream.write(buffer.array(), 0, buffer.limit());
-                    rfc.ostream.flush();
+                    rfc.outQueue.take(batch);
+                    write(batch);
                 }
             } catch (InterruptedException | IOException e) {
-                for (ByteBuffer buffer : rfc.outQueue) {
-                    try {
-                        rfc.ostream.write(buffer.array(), 0, buffer.limit());
-                        rfc.ostream.flush();
-                    } catch (IOException ioException) {
-                        ioException.printStackTrace();
-                    }
+                try {
+                    rfc.outQueue.poll(batch);
+                    write(batch);
+                } catch (IOException ioException) {
+                    Logger.error(ioException, ioException.getMessage());
                 }
                 java.lang.Thread.currentThread().interrupt();
             }
         }
 
+        private void write(List<ByteBuffer> batch) throws IOException {
+            for (ByteBuffer buffer : batch) {
+                rfc.ostream.write(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+            }
+            batch.clear();
+            rfc.ostream.flush();
+        }
+
         private void close() {
             try {
                 if (rfc.socket != null) {
@@ -25,6 +25,10 @@
  ********************************************************************************/
 package org.aoju.lancia.worker;
 
+import org.aoju.bus.core.lang.Charset;
+
+import java.util.function.Consumer;
+
 /**
  * 网络传送
  *
@@ -37,10 +41,55 @@ public interface Transport {
     default void send(String message) {
     }
 
+    /**
+     * 发送已经序列化为UTF-8的消息，省去字符串的中转
+     * 数组的所有权交给传输，websocket加掩码时会原地修改，调用方之后不能再使用
+     *
+     * @param message UTF-8编码的消息
+     */
+    default void send(byte[] message) {
+        send(new String(message, Charset.UTF_8));
+    }
+
+    /**
+     * 发送属于某个会话的消息，队列可以让其他会话的小消息越过排队的大消息，同一会话内保持发送顺序
+     *
+     * @param message   UTF-8编码的消息
+     * @param sessionId 消息所属的会话，浏览器级别的消息为null
+     */
+    default void send(byte[] message, String sessionId) {
+        send(message);
+    }
+
     default void call(String message) {
     }
 
     default void close() {
     }
 
+    /**
+     * 设置接收浏览器消息的消费者
+     *
+     * @param consumer 消息消费者，一般是{@link Connection}
+     */
+    default void addConsumer(Consumer<String> consumer) {
+    }
+
+    /**
+     * 设置传输被对端关闭或读取出错时的回调
+     *
+     * @param listener 关闭回调，一般是{@link Connection#onClose()}
+     */
+    default void addCloseListener(Runnable listener) {
+    }
+
+    /**
+     * 待写出消息的队列，可以查看排队的帧数和字节数
+     *
+     * @return 队列，没有队列的传输返回null
+     */
+    default OutboundQueue getOutboundQueue() {
+        return null;
+    }
+
 }
@@ -27,6 +27,11 @@ package org.aoju.lancia.worker;
 
 import org.aoju.bus.core.lang.exception.InstrumentException;
 import org.aoju.bus.logger.Logger;
+import org.aoju.lancia.Variables;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * 传输工厂
@@ -37,6 +42,11 @@ import org.aoju.bus.logger.Logger;
  */
 public class TransportFactory {
 
+    /**
+     * 录制文件的序号，每个连接录制到单独的文件
+     */
+    private static final AtomicInteger RECORD_SEQUENCE = new AtomicInteger();
+
     /**
      * 创建套接字传输协议
      *
@@ -44,8 +54,22 @@ public class TransportFactory {
      * @return WebSocketTransport/PipeTransport 客户端
      */
     public static Transport create(String browserWSEndpoint) {
+        return create(browserWSEndpoint, Boolean.getBoolean(Variables.TRANSPORT_NIO));
+    }
+
+    /**
+     * 创建套接字传输协议
+     *
+     * @param browserWSEndpoint 连接websocket的地址
+     * @param nio               是否使用共享selector的{@link NioTransport}
+     * @return WebSocketTransport/PipeTransport 客户端
+     */
+    public static Transport create(String browserWSEndpoint, boolean nio) {
         try {
-            return new SocketTransport(browserWSEndpoint);
+            if (nio) {
+                return record(new NioTransport(browserWSEndpoint));
+            }
+            return record(new SocketTransport(browserWSEndpoint));
         } catch (InstrumentException e) {
             Logger.warn(e.getMessage());
             return new PipeTransport();
@@ -53,4 +77,46 @@ public class TransportFactory {
 
     }
 
+    /**
+     * 创建管道传输协议
+     *
+     * @param pipeReader 浏览器写入消息的管道(fd 4)
+     * @param pipeWriter 浏览器读取消息的管道(fd 3)
+     * @return PipeTransport 客户端
+     */
+    public static Transport create(InputStream pipeReader, OutputStream pipeWriter) {
+        return record(new PipeTransport(pipeReader, pipeWriter));
+    }
+
+    /**
+     * 设置了{@link Variables#TRANSPORT_RECORD}时录制传输的消息
+     * 每个连接录制到单独的文件，在文件名和扩展名之间加上序号，例如cdp.jsonl.gz录制为cdp-1.jsonl.gz、cdp-2.jsonl.gz
+     *
+     * @param transport 传输
+     * @return 原传输或者录制传输
+     */
+    public static Transport record(Transport transport) {
+        String path = System.getProperty(Variables.TRANSPORT_RECORD);
+        if (path == null || path.isEmpty()) {
+            return transport;
+        }
+        return new RecordingTransport(transport, recordPath(path, RECORD_SEQUENCE.incrementAndGet()));
+    }
+
+    /**
+     * 在文件名和扩展名之间插入序号
+     *
+     * @param path     录制路径
+     * @param sequence 连接的序号
+     * @return 连接的录制文件路径
+     */
+    static String recordPath(String path, int sequence) {
+        int name = Math.max(path.lastIndexOf('/'), path.lastIndexOf('\\')) + 1;
+        int dot = path.indexOf('.', name + 1);
+        if (dot < 0) {
+            return path + "-" + sequence;
+        }
+        return path.substring(0, dot) + "-" + sequence + path.substring(dot);
+    }
+
 }
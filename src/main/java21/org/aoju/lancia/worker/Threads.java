@@ -0,0 +1,82 @@
+/*********************************************************************************
+ *                                                                               *
+ * The MIT License (MIT)                                                         *
+ *                                                                               *
+ * Copyright (c) 2015-2021 aoju.org and other contributors.                      *
+ *                                                                               *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy  *
+ * of this software and associated documentation files (the "Software"), to deal *
+ * in the Software without restriction, including without limitation the rights  *
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell     *
+ * copies of the Software, and to permit persons to whom the Software is         *
+ * furnished to do so, subject to the following conditions:                      *
+ *                                                                               *
+ * The above copyright notice and this permission notice shall be included in    *
+ * all copies or substantial portions of the Software.                           *
+ *                                                                               *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR    *
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,      *
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE   *
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER        *
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, *
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN     *
+ * THE SOFTWARE.                                                                 *
+ *                                                                               *
+ ********************************************************************************/
+package org.aoju.lancia.worker;
+
+import org.aoju.lancia.Variables;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.Executors;
+
+/**
+ * 虚拟线程的适配，JDK 21+的实现
+ * 设置{@link Variables#VIRTUAL_THREADS}为false时关闭
+ *
+ * @author Kimi Liu
+ * @version 1.2.8
+ * @since JDK 21+
+ */
+public final class Threads {
+
+    private static final boolean VIRTUAL = !"false".equalsIgnoreCase(System.getProperty(Variables.VIRTUAL_THREADS));
+
+    private Threads() {
+    }
+
+    /**
+     * @return 是否使用虚拟线程
+     */
+    public static boolean isVirtual() {
+        return VIRTUAL;
+    }
+
+    /**
+     * 每个任务一个虚拟线程的执行服务
+     *
+     * @param prefix 线程名前缀
+     * @return 执行服务，关闭了虚拟线程时返回null
+     */
+    public static ExecutorService virtualExecutor(String prefix) {
+        if (!VIRTUAL) {
+            return null;
+        }
+        return Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name(prefix, 1).factory());
+    }
+
+    /**
+     * 创建虚拟线程的线程工厂，交给有界的线程池使用
+     *
+     * @param prefix 线程名前缀
+     * @return 线程工厂，不支持或者关闭了虚拟线程时返回null
+     */
+    public static ThreadFactory virtualFactory(String prefix) {
+        if (!VIRTUAL) {
+            return null;
+        }
+        return Thread.ofVirtual().name(prefix, 1).factory();
+    }
+
+}